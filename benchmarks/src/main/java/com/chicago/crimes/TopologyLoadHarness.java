@@ -0,0 +1,434 @@
+package com.chicago.crimes;
+
+import com.chicago.crimes.bench.CrimeFixtures;
+import com.chicago.crimes.bench.LoadInput;
+import com.chicago.crimes.bench.SyntheticInput;
+import com.chicago.crimes.producer.CsvReplayInput;
+import com.chicago.crimes.producer.LatencyHistogram;
+import com.chicago.crimes.query.CrimesQueryServer;
+import com.chicago.crimes.utils.CommandLineOptions;
+import com.chicago.crimes.utils.CrimeDateParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Harness obciążeniowy bez brokera: topologia z {@link ChicagoCrimesStreamsApp#buildTopology} w TopologyTestDriver,
+ * zasilana rekordami syntetycznymi ({@link CrimeFixtures#timeline}) albo odtwarzanymi z plików CSV producenta.
+ * Każdy wariant (zestaw opcji aplikacji) jest uruchamiany osobno w każdym trybie opóźnienia, a wyniki są
+ * zestawiane obok siebie:
+ * - rekordy/s liczone z czasu samych wywołań pipeInput (TTD zatwierdza stan po każdym rekordzie),
+ * - szczyt sterty (suma szczytów pul) i przyrost sterty po GC na końcu przebiegu,
+ * - liczba wpisów i rozmiar na dysku każdego magazynu,
+ * - opóźnienie rekord -> wynik: czas wywołania pipeInput, w którym powstał wynik, oraz czas zdarzeń,
+ *   jaki upłynął od końca okna (miesiąca) do emisji - w trybie A zwykle 0, w trybie C co najmniej grace.
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.chicago.crimes.TopologyLoadHarness --records=2000000
+ *      --modes=A,C --variants="default;--engine=dense;--anomaly-mode=sliding --anomaly-lengths=7,14,30"
+ */
+public class TopologyLoadHarness {
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final double MB = 1024.0 * 1024.0;
+
+    public static void main(String[] args) throws Exception {
+        // Logi z każdego startu sterownika i ostrzeżenia o spóźnionych rekordach zagłuszałyby raport
+        if (System.getProperty("org.slf4j.simpleLogger.defaultLogLevel") == null) {
+            System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "error");
+        }
+        CommandLineOptions cli = CommandLineOptions.parse(args);
+        long records = cli.getLong("records", 1_000_000);
+        long warmupRecords = cli.getLong("warmup-records", 200_000);
+        int anomalyDays = cli.getInt("anomaly-days", 7);
+        double anomalyPercentage = cli.getDouble("anomaly-percentage", 40);
+        String[] modes = cli.get("modes", "A,C").split(",");
+        String[] variants = cli.get("variants", "default").split(";");
+        // TTD zatwierdza stan po każdym rekordzie, a przy tym zapisuje i synchronizuje (fsync) pliki checkpoint
+        // magazynów RocksDB - na dysku ten koszt zagłusza przetwarzanie, więc domyślnie stan trafia do tmpfs
+        Path stateRoot = Paths.get(cli.get("state-dir", Files.isDirectory(Paths.get("/dev/shm"))
+                ? "/dev/shm" : System.getProperty("java.io.tmpdir")));
+
+        if (cli.has("iucr")) {
+            ChicagoCrimesStreamsApp.loadIucrCodes(cli.get("iucr", null));
+        } else {
+            ChicagoCrimesStreamsApp.iucrDictionary = CrimeFixtures.dictionary();
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (String variant : variants) {
+            for (String mode : modes) {
+                Run run = new Run(variant.trim(), mode.trim(), anomalyDays, anomalyPercentage, stateRoot);
+                // Rozgrzewka JIT na tym samym wariancie, bez raportu
+                if (warmupRecords > 0) {
+                    try (LoadInput input = openInput(cli, warmupRecords)) {
+                        run.execute(input, warmupRecords);
+                    }
+                }
+                try (LoadInput input = openInput(cli, records)) {
+                    Result result = run.execute(input, records);
+                    result.print();
+                    results.add(result);
+                }
+            }
+        }
+        printSummary(results);
+    }
+
+    private static LoadInput openInput(CommandLineOptions cli, long records) throws IOException {
+        if (cli.has("input")) {
+            return new CsvReplayInput(Paths.get(cli.get("input", null)));
+        }
+        return new SyntheticInput(records, cli.getInt("days", 3 * 365), cli.getInt("disorder-minutes", 60),
+                cli.getLong("seed", 42));
+    }
+
+    private static void printSummary(List<Result> results) {
+        int width = results.stream().mapToInt(result -> result.variant.length()).max().orElse(0);
+        String name = "%-" + Math.max(width, "wariant".length()) + "s";
+        System.out.println();
+        // Opóźnienie wyniku w µs (czas wywołania), opóźnienie po końcu okna w godzinach czasu zdarzeń
+        System.out.println(String.format(name + " %-4s %12s %10s %10s %10s %10s %10s %12s %10s",
+                "wariant", "tryb", "rekordy/s", "wynik p50", "wynik p99", "zdarz. [h]", "szczyt MB", "po GC MB",
+                "wpisy", "dysk MB"));
+        for (Result result : results) {
+            long entries = result.totalEntries();
+            System.out.println(String.format(name + " %-4s %,12.0f %10d %10d %10.1f %10.1f %10.1f %12s %10.1f",
+                    result.variant, result.mode, result.recordsPerSecond(),
+                    result.outputMicros.percentile(50), result.outputMicros.percentile(99),
+                    result.eventDelayMinutes.percentile(50) / 60.0, result.heapPeakBytes / MB,
+                    result.heapRetainedBytes / MB, entries < 0 ? "-" : String.format("%,d", entries),
+                    result.totalDiskBytes() / MB));
+        }
+    }
+
+    /**
+     * Jeden wariant topologii w jednym trybie opóźnienia
+     */
+    private static final class Run {
+        private final String variant;
+        private final String mode;
+        private final int anomalyDays;
+        private final double anomalyPercentage;
+        private final Path stateRoot;
+
+        Run(String variant, String mode, int anomalyDays, double anomalyPercentage, Path stateRoot) {
+            this.variant = variant.isEmpty() ? "default" : variant;
+            this.mode = mode;
+            this.anomalyDays = anomalyDays;
+            this.anomalyPercentage = anomalyPercentage;
+            this.stateRoot = stateRoot;
+        }
+
+        Result execute(LoadInput input, long limit) throws IOException {
+            CommandLineOptions options = CommandLineOptions.parse(
+                    "default".equals(variant) ? new String[0] : variant.split("\\s+"));
+            StreamsBuilder builder = new StreamsBuilder();
+            ChicagoCrimesStreamsApp.buildTopology(builder, anomalyDays, anomalyPercentage, mode, options);
+            Topology topology = builder.build();
+
+            Path stateDir = Files.createTempDirectory(stateRoot, "topology-load-");
+            Properties props = ChicagoCrimesStreamsApp.createProperties("load-harness:9092", mode);
+            props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+
+            Result result = new Result(variant, mode);
+            long heapBefore = usedHeapAfterGc();
+            resetHeapPeaks();
+            try (TopologyTestDriver driver = new TopologyTestDriver(topology, props)) {
+                TestInputTopic<String, byte[]> crimes = driver.createInputTopic(ChicagoCrimesStreamsApp.INPUT_TOPIC,
+                        new StringSerializer(), new ByteArraySerializer());
+                TestOutputTopic<String, byte[]> aggregates = driver.createOutputTopic(
+                        ChicagoCrimesStreamsApp.AGGREGATES_TOPIC, new StringDeserializer(), new ByteArrayDeserializer());
+                TestOutputTopic<String, byte[]> anomalies = driver.createOutputTopic(
+                        ChicagoCrimesStreamsApp.ANOMALIES_TOPIC, new StringDeserializer(), new ByteArrayDeserializer());
+
+                Map<String, TestOutputTopic<byte[], byte[]>> internalTopics = new HashMap<>();
+                long streamTime = Long.MIN_VALUE;
+                long lastWallClock = System.nanoTime();
+                while (result.records < limit && input.next()) {
+                    long start = System.nanoTime();
+                    crimes.pipeInput(input.key(), input.value());
+                    long end = System.nanoTime();
+                    result.processed(end - start);
+                    if (input.eventTime() != CrimeDateParser.INVALID_TIME) {
+                        streamTime = Math.max(streamTime, input.eventTime());
+                    }
+                    result.drain(aggregates, end - start, streamTime, false);
+                    result.drain(anomalies, end - start, streamTime, true);
+
+                    // Zegar sterownika idzie za zegarem rzeczywistym - punktatory WALL_CLOCK_TIME (np. --coalesce-ms)
+                    if ((result.records & 1023) == 0) {
+                        long now = System.nanoTime();
+                        driver.advanceWallClockTime(Duration.ofNanos(now - lastWallClock));
+                        lastWallClock = System.nanoTime();
+                        result.punctuated(lastWallClock - now);
+                        result.drain(aggregates, lastWallClock - now, streamTime, false);
+                        result.drain(anomalies, lastWallClock - now, streamTime, true);
+                        discardInternalTopics(driver, internalTopics);
+                    }
+                }
+
+                result.heapPeakBytes = heapPeak();
+                result.heapRetainedBytes = usedHeapAfterGc() - heapBefore;
+                Map<String, StateStore> stores = driver.getAllStateStores();
+                for (String name : new TreeSet<>(CrimesQueryServer.storeNames(topology.describe()))) {
+                    result.stores.add(new StoreSize(name, countEntries(stores.get(name)), diskBytes(stateDir, name)));
+                }
+            } finally {
+                deleteRecursively(stateDir);
+            }
+            return result;
+        }
+    }
+
+    private static final class Result {
+        final String variant;
+        final String mode;
+        final LatencyHistogram processingMicros = new LatencyHistogram();
+        final LatencyHistogram outputLatency = new LatencyHistogram();
+        final LatencyHistogram eventDelay = new LatencyHistogram();
+        final List<StoreSize> stores = new ArrayList<>();
+        long records;
+        long processingNanos;
+        long aggregateOutputs;
+        long anomalyOutputs;
+        long heapPeakBytes;
+        long heapRetainedBytes;
+        LatencyHistogram.Snapshot outputMicros;
+        LatencyHistogram.Snapshot eventDelayMinutes;
+
+        Result(String variant, String mode) {
+            this.variant = variant;
+            this.mode = mode;
+        }
+
+        void processed(long nanos) {
+            records++;
+            processingNanos += nanos;
+            processingMicros.record(nanos / 1000);
+        }
+
+        void punctuated(long nanos) {
+            processingNanos += nanos;
+        }
+
+        /**
+         * Wynik powstał w trakcie mierzonego wywołania - jego czas jest górną granicą opóźnienia rekord -> wynik
+         */
+        void drain(TestOutputTopic<String, byte[]> topic, long nanos, long streamTime, boolean anomaly) {
+            while (!topic.isEmpty()) {
+                byte[] value = topic.readValue();
+                outputLatency.record(nanos / 1000);
+                eventDelay.record(Math.max(0, streamTime - resultEnd(value, anomaly)) / 60_000);
+                if (anomaly) {
+                    anomalyOutputs++;
+                } else {
+                    aggregateOutputs++;
+                }
+            }
+        }
+
+        double recordsPerSecond() {
+            return processingNanos == 0 ? 0 : records * 1e9 / processingNanos;
+        }
+
+        /**
+         * @return suma wpisów policzalnych magazynów albo -1, gdy żadnego nie da się policzyć
+         */
+        long totalEntries() {
+            if (stores.stream().allMatch(store -> store.entries < 0)) {
+                return -1;
+            }
+            return stores.stream().mapToLong(store -> Math.max(0, store.entries)).sum();
+        }
+
+        long totalDiskBytes() {
+            return stores.stream().mapToLong(store -> store.diskBytes).sum();
+        }
+
+        void print() {
+            LatencyHistogram.Snapshot processing = processingMicros.snapshot();
+            outputMicros = outputLatency.snapshot();
+            eventDelayMinutes = eventDelay.snapshot();
+            System.out.println();
+            System.out.println("=== wariant: " + variant + ", tryb " + mode + " ===");
+            System.out.println(String.format("  rekordy: %,d w %.2f s - %,.0f rekordów/s (pipeInput p50 %d µs, p99 %d µs, max %d µs)",
+                    records, processingNanos / 1e9, recordsPerSecond(), processing.percentile(50),
+                    processing.percentile(99), processing.max()));
+            System.out.println(String.format("  wyniki: %,d agregatów, %,d anomalii", aggregateOutputs, anomalyOutputs));
+            System.out.println(String.format("  rekord -> wynik (czas wywołania): p50 %d µs, p99 %d µs, p99.9 %d µs, max %d µs",
+                    outputMicros.percentile(50), outputMicros.percentile(99), outputMicros.percentile(99.9),
+                    outputMicros.max()));
+            System.out.println(String.format("  koniec okna -> emisja (czas zdarzeń): p50 %.1f h, p99 %.1f h, max %.1f h",
+                    eventDelayMinutes.percentile(50) / 60.0, eventDelayMinutes.percentile(99) / 60.0,
+                    eventDelayMinutes.max() / 60.0));
+            System.out.println(String.format("  sterta: szczyt %.1f MB, przyrost po GC %.1f MB",
+                    heapPeakBytes / MB, heapRetainedBytes / MB));
+            System.out.println("  magazyny:");
+            for (StoreSize store : stores) {
+                System.out.println(String.format("    %-50s %14s %10.1f MB na dysku", store.name,
+                        store.entries < 0 ? "-" : String.format("%,d wpisów", store.entries), store.diskBytes / MB));
+            }
+        }
+    }
+
+    private static final class StoreSize {
+        final String name;
+        final long entries;
+        final long diskBytes;
+
+        StoreSize(String name, long entries, long diskBytes) {
+            this.name = name;
+            this.entries = entries;
+            this.diskBytes = diskBytes;
+        }
+    }
+
+    /**
+     * TTD trzyma każdy rekord wysłany do changelogów - bez opróżniania sterta rośnie z liczbą rekordów
+     */
+    private static void discardInternalTopics(TopologyTestDriver driver,
+                                              Map<String, TestOutputTopic<byte[], byte[]>> topics) {
+        for (String topic : driver.producedTopicNames()) {
+            if (topic.equals(ChicagoCrimesStreamsApp.AGGREGATES_TOPIC)
+                    || topic.equals(ChicagoCrimesStreamsApp.ANOMALIES_TOPIC)) {
+                continue;
+            }
+            TestOutputTopic<byte[], byte[]> output = topics.computeIfAbsent(topic,
+                    name -> driver.createOutputTopic(name, new ByteArrayDeserializer(), new ByteArrayDeserializer()));
+            while (!output.isEmpty()) {
+                output.readRecord();
+            }
+        }
+    }
+
+    // Koniec miesiąca agregatu albo okna anomalii, w ms czasu zdarzeń. Nazwy pól występują jako klucze
+    // tylko w części payload (w schemacie są wartościami "field"), więc wystarczy pierwsze trafienie
+    private static long resultEnd(byte[] message, boolean anomaly) {
+        String field = anomaly ? "window_end" : "year_month";
+        try (JsonParser parser = JSON.createParser(message)) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                if (token == JsonToken.FIELD_NAME && field.equals(parser.getCurrentName())) {
+                    String value = parser.nextTextValue();
+                    if (anomaly) {
+                        return Instant.parse(value).toEpochMilli();
+                    }
+                    return YearMonth.parse(value).plusMonths(1).atDay(1)
+                            .atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable output message", e);
+        }
+        throw new IllegalStateException("Output message without " + field);
+    }
+
+    /**
+     * Magazyny klucz-wartość i okienne są liczone pełnym przejściem, pozostałe (bufory suppress,
+     * liczniki silnika dense) zwracają -1
+     */
+    private static long countEntries(StateStore store) {
+        long entries = 0;
+        if (store instanceof ReadOnlyKeyValueStore) {
+            try (KeyValueIterator<?, ?> iterator = ((ReadOnlyKeyValueStore<?, ?>) store).all()) {
+                for (; iterator.hasNext(); iterator.next()) {
+                    entries++;
+                }
+            }
+            return entries;
+        }
+        if (store instanceof ReadOnlyWindowStore) {
+            try (KeyValueIterator<?, ?> iterator = ((ReadOnlyWindowStore<?, ?>) store).all()) {
+                for (; iterator.hasNext(); iterator.next()) {
+                    entries++;
+                }
+            }
+            return entries;
+        }
+        return -1;
+    }
+
+    // Pliki w katalogach o nazwie magazynu (rocksdb/<nazwa> albo segmenty <nazwa>/<nazwa>.<segment>)
+    private static long diskBytes(Path stateDir, String storeName) throws IOException {
+        try (Stream<Path> files = Files.walk(stateDir)) {
+            return files.filter(file -> isInStore(stateDir.relativize(file), storeName))
+                    .mapToLong(file -> file.toFile().isFile() ? file.toFile().length() : 0)
+                    .sum();
+        }
+    }
+
+    private static boolean isInStore(Path relative, String storeName) {
+        for (int i = 0; i < relative.getNameCount() - 1; i++) {
+            if (relative.getName(i).toString().equals(storeName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static void resetHeapPeaks() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long heapPeak() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
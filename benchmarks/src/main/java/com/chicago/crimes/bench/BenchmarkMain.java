@@ -0,0 +1,24 @@
+package com.chicago.crimes.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Uruchamia benchmarki JMH zawsze z profilerem GC, więc obok przepustowości raportowana jest
+ * alokacja (gc.alloc.rate.norm - bajty na operację). Argumenty jak w JMH, np.:
+ *
+ * java -jar benchmarks/target/benchmarks.jar JsonSerde -f 1 -wi 3 -i 5
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
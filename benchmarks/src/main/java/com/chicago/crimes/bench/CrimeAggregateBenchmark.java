@@ -0,0 +1,62 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.iucr.IucrDictionary;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CrimeAggregate.update - samo zliczanie oraz razem z odczytem flagi indeksu FBI ze słownika IUCR,
+ * tak jak w agregatorze.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CrimeAggregateBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private CrimeRecord[] records;
+    private boolean[] fbiIndex;
+    private IucrDictionary dictionary;
+    private CrimeAggregate aggregate;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        records = CrimeFixtures.records(SIZE);
+        dictionary = CrimeFixtures.dictionary();
+        fbiIndex = new boolean[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            fbiIndex[i] = dictionary.isFbiIndex(records[i].getIucr());
+        }
+        aggregate = new CrimeAggregate("2015-09", "THEFT", "11");
+    }
+
+    @Benchmark
+    public CrimeAggregate update() {
+        next = (next + 1) & (SIZE - 1);
+        return aggregate.update(records[next], fbiIndex[next]);
+    }
+
+    @Benchmark
+    public CrimeAggregate lookupAndUpdate() {
+        next = (next + 1) & (SIZE - 1);
+        CrimeRecord crime = records[next];
+        return aggregate.update(crime, dictionary.isFbiIndex(crime.getIucr()));
+    }
+}
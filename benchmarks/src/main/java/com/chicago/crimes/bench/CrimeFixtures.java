@@ -0,0 +1,186 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.iucr.IucrDictionary;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.JsonSerde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+
+/**
+ * Deterministyczne dane testowe w schemacie Chicago (te same pola co crimes-input): najczęstsze
+ * kody IUCR z wagami zbliżonymi do rzeczywistych, istniejące dzielnice i community areas,
+ * współrzędne z obszaru miasta (ok. 1% pustych), daty z lat 2015-2017.
+ */
+public final class CrimeFixtures {
+
+    public static final String CSV_HEADER = "ID,Date,IUCR,Arrest,Domestic,District,ComArea,Latitude,Longitude";
+
+    // IUCR, kategoria (PRIMARY DESCRIPTION), indeks FBI, waga
+    private static final Object[][] IUCR_CODES = {
+            {"0486", "BATTERY", false, 90},
+            {"0820", "THEFT", true, 90},
+            {"0460", "BATTERY", false, 80},
+            {"1310", "CRIMINAL DAMAGE", false, 60},
+            {"0810", "THEFT", true, 50},
+            {"0560", "ASSAULT", false, 40},
+            {"0610", "BURGLARY", true, 40},
+            {"0910", "MOTOR VEHICLE THEFT", true, 30},
+            {"0890", "THEFT", true, 30},
+            {"1811", "NARCOTICS", false, 30},
+            {"2820", "OTHER OFFENSE", false, 20},
+            {"031A", "ROBBERY", true, 10},
+            {"0320", "ROBBERY", true, 10},
+            {"0430", "BATTERY", true, 10},
+            {"0870", "THEFT", true, 10},
+            {"141A", "WEAPONS VIOLATION", false, 10},
+            {"0497", "BATTERY", true, 5},
+            {"0265", "CRIM SEXUAL ASSAULT", true, 3},
+            {"0110", "HOMICIDE", true, 1},
+    };
+
+    private static final String[] DISTRICTS = {
+            "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12", "14", "15", "16", "17", "18", "19",
+            "20", "22", "24", "25"
+    };
+
+    private static final long FIRST_DAY = 16436; // 2015-01-01
+    private static final int DAYS = 3 * 365;
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final int TOTAL_WEIGHT = totalWeight();
+    private static final DateTimeFormatter DATE_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    private CrimeFixtures() {}
+
+    public static CrimeRecord[] records(int count) {
+        SplittableRandom random = new SplittableRandom(42);
+        CrimeRecord[] records = new CrimeRecord[count];
+        for (int i = 0; i < count; i++) {
+            records[i] = record(random, i, CrimeFixtures::date);
+        }
+        return records;
+    }
+
+    /**
+     * Rekordy w kolejności czasu zdarzeń, jak w kolejnych plikach part-*: {@code count} rekordów rozłożonych
+     * równo na {@code days} dni od 2015-01-01, każdy cofnięty losowo o najwyżej {@code disorderMinutes}
+     * (spóźnione rekordy). Generowane na bieżąco, bez trzymania całego zbioru w pamięci.
+     */
+    public static Iterator<CrimeRecord> timeline(long count, int days, int disorderMinutes, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double step = (double) days * MILLIS_PER_DAY / count;
+        long disorder = disorderMinutes * 60_000L;
+        return new Iterator<>() {
+            private long index;
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public CrimeRecord next() {
+                if (index >= count) {
+                    throw new NoSuchElementException();
+                }
+                long millis = FIRST_DAY * MILLIS_PER_DAY + (long) (index * step)
+                        - (disorder > 0 ? random.nextLong(disorder) : 0);
+                // Sekundy i milisekundy zerowe jak w danych źródłowych
+                String date = DATE_FORMAT.format(Instant.ofEpochMilli(millis - Math.floorMod(millis, 60_000L)));
+                return record(random, index++, unused -> date);
+            }
+        };
+    }
+
+    /**
+     * Wartości crimes-input tak, jak zapisuje je JsonSerde.
+     */
+    public static byte[][] json(CrimeRecord[] records) {
+        Serializer<CrimeRecord> serializer = new JsonSerde<>(CrimeRecord.class).serializer();
+        byte[][] json = new byte[records.length][];
+        for (int i = 0; i < records.length; i++) {
+            json[i] = serializer.serialize("crimes-input", records[i]);
+        }
+        return json;
+    }
+
+    /**
+     * Plik CSV w formacie wejściowym producenta (nagłówek + wiersze).
+     */
+    public static String csv(CrimeRecord[] records) {
+        StringBuilder out = new StringBuilder(records.length * 96).append(CSV_HEADER).append('\n');
+        for (CrimeRecord crime : records) {
+            out.append(crime.getId()).append(',')
+                    .append(crime.getDate()).append(',')
+                    .append(crime.getIucr()).append(',')
+                    .append(crime.isArrest()).append(',')
+                    .append(crime.isDomestic()).append(',')
+                    .append(crime.getDistrict()).append(',')
+                    .append(crime.getComArea()).append(',')
+                    .append(crime.getLatitude() == null ? "" : crime.getLatitude()).append(',')
+                    .append(crime.getLongitude() == null ? "" : crime.getLongitude()).append('\n');
+        }
+        return out.toString();
+    }
+
+    public static IucrDictionary dictionary() {
+        IucrDictionary.Builder builder = new IucrDictionary.Builder();
+        for (Object[] code : IUCR_CODES) {
+            builder.add((String) code[0], (String) code[1], (boolean) code[2]);
+        }
+        return builder.build();
+    }
+
+    // Kolejność losowań jak w pierwotnej wersji records() - te same dane dla tego samego ziarna
+    private static CrimeRecord record(SplittableRandom random, long index, Function<SplittableRandom, String> date) {
+        String iucr = pickIucr(random.nextInt(TOTAL_WEIGHT));
+        boolean domestic = iucr.equals("0486") || iucr.equals("0497") || random.nextInt(100) < 8;
+        boolean hasLocation = random.nextInt(100) != 0;
+        return new CrimeRecord(
+                String.valueOf(10_000_000 + index * 7 + random.nextInt(7)),
+                date.apply(random),
+                iucr,
+                random.nextInt(100) < 22,
+                domestic,
+                DISTRICTS[random.nextInt(DISTRICTS.length)],
+                String.valueOf(1 + random.nextInt(77)),
+                hasLocation ? round(41.645 + random.nextDouble() * 0.377) : null,
+                hasLocation ? round(-87.934 + random.nextDouble() * 0.409) : null);
+    }
+
+    private static int totalWeight() {
+        int total = 0;
+        for (Object[] code : IUCR_CODES) {
+            total += (int) code[3];
+        }
+        return total;
+    }
+
+    private static String pickIucr(int weight) {
+        for (Object[] code : IUCR_CODES) {
+            weight -= (int) code[3];
+            if (weight < 0) {
+                return (String) code[0];
+            }
+        }
+        return (String) IUCR_CODES[0][0];
+    }
+
+    // 2015-09-05T13:30:00.000Z - format pola Date
+    private static String date(SplittableRandom random) {
+        LocalDate day = LocalDate.ofEpochDay(FIRST_DAY + random.nextInt(DAYS));
+        return String.format("%sT%02d:%02d:00.000Z", day, random.nextInt(24), random.nextInt(4) * 15);
+    }
+
+    private static double round(double coordinate) {
+        return Math.round(coordinate * 1e9) / 1e9;
+    }
+}
@@ -0,0 +1,61 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.model.CrimeRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CrimeRecord.getYearMonth: pierwszy odczyt (parsowanie daty na nowym rekordzie) i kolejne
+ * odczyty, które tylko formatują zapamiętany rok-miesiąc.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CrimeRecordBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private CrimeRecord[] records;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        records = CrimeFixtures.records(SIZE);
+        for (CrimeRecord crime : records) {
+            crime.getYearMonthPacked();
+        }
+    }
+
+    @Benchmark
+    public String yearMonthFirstRead() {
+        next = (next + 1) & (SIZE - 1);
+        CrimeRecord crime = records[next];
+        return new CrimeRecord(crime.getId(), crime.getDate(), crime.getIucr(), crime.isArrest(), crime.isDomestic(),
+                crime.getDistrict(), crime.getComArea(), crime.getLatitude(), crime.getLongitude()).getYearMonth();
+    }
+
+    @Benchmark
+    public String yearMonthParsed() {
+        next = (next + 1) & (SIZE - 1);
+        return records[next].getYearMonth();
+    }
+
+    @Benchmark
+    public int yearMonthPacked() {
+        next = (next + 1) & (SIZE - 1);
+        return records[next].getYearMonthPacked();
+    }
+}
@@ -0,0 +1,72 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.model.AnomalyAlert;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.utils.JsonSchemaUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wiadomości wyjściowe ze schematem dla JDBC sink (crimes-aggregates, crimes-anomalies).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSchemaUtilsBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private CrimeAggregate[] aggregates;
+    private String[] keys;
+    private AnomalyAlert[] alerts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        CrimeRecord[] records = CrimeFixtures.records(SIZE);
+        SplittableRandom random = new SplittableRandom(7);
+        aggregates = new CrimeAggregate[SIZE];
+        keys = new String[SIZE];
+        alerts = new AnomalyAlert[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            CrimeRecord crime = records[i];
+            CrimeAggregate aggregate = new CrimeAggregate(crime.getYearMonth(), "THEFT", crime.getDistrict());
+            aggregate.setTotalCrimes(1 + random.nextInt(400));
+            aggregate.setArrestCount(random.nextInt((int) aggregate.getTotalCrimes()));
+            aggregate.setDomesticCount(random.nextInt((int) aggregate.getTotalCrimes()));
+            aggregate.setFbiIndexCount(random.nextInt((int) aggregate.getTotalCrimes()));
+            aggregates[i] = aggregate;
+            keys[i] = aggregate.getYearMonth() + "_" + aggregate.getPrimaryDescription() + "_" + aggregate.getDistrict();
+            long total = 50 + random.nextInt(900);
+            alerts[i] = new AnomalyAlert("2015-09-03T00:00:00Z", "2015-09-10T00:00:00Z", crime.getDistrict(),
+                    random.nextLong(total), total);
+        }
+    }
+
+    @Benchmark
+    public byte[] createAggregateMessage() {
+        next = (next + 1) & (SIZE - 1);
+        return JsonSchemaUtils.createAggregateMessage(aggregates[next], keys[next]);
+    }
+
+    @Benchmark
+    public byte[] createAnomalyMessage() {
+        next = (next + 1) & (SIZE - 1);
+        return JsonSchemaUtils.createAnomalyMessage(alerts[next], alerts[next].getDistrict());
+    }
+}
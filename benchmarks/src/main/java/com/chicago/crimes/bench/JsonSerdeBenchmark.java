@@ -0,0 +1,59 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.JsonSerde;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dekodowanie wartości crimes-input (pierwszy krok topologii) i kodowanie CrimeRecord.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSerdeBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private CrimeRecord[] records;
+    private byte[][] json;
+    private Deserializer<CrimeRecord> deserializer;
+    private Serializer<CrimeRecord> serializer;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        records = CrimeFixtures.records(SIZE);
+        json = CrimeFixtures.json(records);
+        JsonSerde<CrimeRecord> serde = new JsonSerde<>(CrimeRecord.class);
+        deserializer = serde.deserializer();
+        serializer = serde.serializer();
+    }
+
+    @Benchmark
+    public CrimeRecord deserialize() {
+        next = (next + 1) & (SIZE - 1);
+        return deserializer.deserialize("crimes-input", json[next]);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        next = (next + 1) & (SIZE - 1);
+        return serializer.serialize("crimes-input", records[next]);
+    }
+}
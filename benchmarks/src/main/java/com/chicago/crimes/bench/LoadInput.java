@@ -0,0 +1,28 @@
+package com.chicago.crimes.bench;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Źródło rekordów crimes-input dla harnessu obciążeniowego: klucz i wartość w postaci, w jakiej
+ * zapisuje je producent, oraz czas zdarzenia potrzebny do śledzenia czasu strumienia.
+ */
+public interface LoadInput extends Closeable {
+
+    /**
+     * @return false, gdy rekordów już nie ma
+     */
+    boolean next() throws IOException;
+
+    String key();
+
+    byte[] value();
+
+    /**
+     * @return czas zdarzenia w ms albo CrimeDateParser.INVALID_TIME
+     */
+    long eventTime();
+
+    @Override
+    default void close() throws IOException {}
+}
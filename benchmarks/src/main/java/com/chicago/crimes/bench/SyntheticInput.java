@@ -0,0 +1,51 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.JsonSerde;
+import com.chicago.crimes.utils.CrimeDateParser;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Iterator;
+
+/**
+ * Syntetyczne rekordy z {@link CrimeFixtures#timeline}, kluczowane dzielnicą jak u producenta.
+ */
+public final class SyntheticInput implements LoadInput {
+
+    private final Iterator<CrimeRecord> records;
+    private final Serializer<CrimeRecord> serializer = new JsonSerde<>(CrimeRecord.class).serializer();
+    private String key;
+    private byte[] value;
+    private long eventTime;
+
+    public SyntheticInput(long count, int days, int disorderMinutes, long seed) {
+        this.records = CrimeFixtures.timeline(count, days, disorderMinutes, seed);
+    }
+
+    @Override
+    public boolean next() {
+        if (!records.hasNext()) {
+            return false;
+        }
+        CrimeRecord crime = records.next();
+        key = crime.getDistrict();
+        value = serializer.serialize("crimes-input", crime);
+        eventTime = CrimeDateParser.parseEpochMillis(crime.getDate());
+        return true;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public byte[] value() {
+        return value;
+    }
+
+    @Override
+    public long eventTime() {
+        return eventTime;
+    }
+}
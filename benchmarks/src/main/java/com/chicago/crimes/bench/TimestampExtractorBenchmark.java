@@ -0,0 +1,80 @@
+package com.chicago.crimes.bench;
+
+import com.chicago.crimes.extractor.CrimeTimestampExtractor;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.JsonSerde;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CrimeTimestampExtractor.extract dla wartości już zdekodowanej (jak w topologii - CrimeRecord
+ * prosto z JsonSerde, przed pierwszym odczytem daty) oraz dla surowych String / byte[].
+ * deserializeAndExtract obejmuje też dekodowanie - od wyniku należy odjąć JsonSerdeBenchmark.deserialize.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampExtractorBenchmark {
+
+    private static final int SIZE = 4096;
+
+    private byte[][] json;
+    private ConsumerRecord<Object, Object>[] rawBytes;
+    private ConsumerRecord<Object, Object>[] rawStrings;
+    private Deserializer<CrimeRecord> deserializer;
+    private CrimeTimestampExtractor extractor;
+    private int next;
+
+    @Setup
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setUp() {
+        CrimeRecord[] records = CrimeFixtures.records(SIZE);
+        json = CrimeFixtures.json(records);
+        rawBytes = new ConsumerRecord[SIZE];
+        rawStrings = new ConsumerRecord[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            rawBytes[i] = new ConsumerRecord<>("crimes-input", 0, i, records[i].getDistrict(), json[i]);
+            rawStrings[i] = new ConsumerRecord<>("crimes-input", 0, i, records[i].getDistrict(),
+                    new String(json[i], StandardCharsets.UTF_8));
+        }
+        deserializer = new JsonSerde<>(CrimeRecord.class).deserializer();
+        extractor = new CrimeTimestampExtractor();
+        extractor.configure(Map.of());
+    }
+
+    @Benchmark
+    public long deserializeAndExtract() {
+        next = (next + 1) & (SIZE - 1);
+        CrimeRecord crime = deserializer.deserialize("crimes-input", json[next]);
+        return extractor.extract(new ConsumerRecord<>("crimes-input", 0, next, crime.getDistrict(), crime), -1);
+    }
+
+    @Benchmark
+    public long extractRawBytes() {
+        next = (next + 1) & (SIZE - 1);
+        return extractor.extract(rawBytes[next], -1);
+    }
+
+    @Benchmark
+    public long extractRawString() {
+        next = (next + 1) & (SIZE - 1);
+        return extractor.extract(rawStrings[next], -1);
+    }
+}
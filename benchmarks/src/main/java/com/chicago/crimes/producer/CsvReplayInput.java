@@ -0,0 +1,73 @@
+package com.chicago.crimes.producer;
+
+import com.chicago.crimes.bench.LoadInput;
+import com.chicago.crimes.utils.CrimeDateParser;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Odtwarza pliki CSV tą samą ścieżką co producent (MappedCsvReader + CrimeJsonWriter): pojedynczy plik
+ * albo wszystkie part-* z folderu, po kolei, bez Kafki.
+ */
+public final class CsvReplayInput implements LoadInput {
+
+    private final Iterator<Path> files;
+    private final CrimeJsonWriter writer = new CrimeJsonWriter();
+    private MappedCsvReader csv;
+    private CrimeCsvColumns columns;
+    private String key;
+    private byte[] value;
+    private long eventTime;
+
+    public CsvReplayInput(Path path) throws IOException {
+        List<Path> paths = Files.isDirectory(path) ? CrimesDataProducer.findPartFiles(path) : List.of(path);
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("No part-* files found in: " + path);
+        }
+        this.files = paths.iterator();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (csv == null || !csv.next()) {
+            close();
+            if (!files.hasNext()) {
+                return false;
+            }
+            csv = new MappedCsvReader(files.next(), 0, Long.MAX_VALUE);
+            columns = new CrimeCsvColumns(csv);
+        }
+        key = writer.key(csv, columns);
+        value = writer.write(csv, columns);
+        CharSequence date = csv.getChars(columns.date);
+        eventTime = date == null ? CrimeDateParser.INVALID_TIME : CrimeDateParser.parseEpochMillis(date);
+        return true;
+    }
+
+    @Override
+    public String key() {
+        return key;
+    }
+
+    @Override
+    public byte[] value() {
+        return value;
+    }
+
+    @Override
+    public long eventTime() {
+        return eventTime;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (csv != null) {
+            csv.close();
+            csv = null;
+        }
+    }
+}
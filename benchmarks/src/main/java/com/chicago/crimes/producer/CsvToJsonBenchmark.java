@@ -0,0 +1,64 @@
+package com.chicago.crimes.producer;
+
+import com.chicago.crimes.bench.CrimeFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ścieżka producenta CSV -> JSON: MappedCsvReader na pliku part-* i CrimeJsonWriter (klucz i wartość),
+ * bez wysyłki do Kafki. Wynik jest podawany na wiersz.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CsvToJsonBenchmark {
+
+    private static final int ROWS = 10_000;
+
+    private Path file;
+    private CrimeJsonWriter writer;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("part-bench-", ".csv");
+        Files.write(file, CrimeFixtures.csv(CrimeFixtures.records(ROWS)).getBytes(StandardCharsets.UTF_8));
+        writer = new CrimeJsonWriter();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void csvToJson(Blackhole blackhole) throws IOException {
+        try (MappedCsvReader csv = new MappedCsvReader(file, 0, Long.MAX_VALUE)) {
+            CrimeCsvColumns columns = new CrimeCsvColumns(csv);
+            while (csv.next()) {
+                blackhole.consume(writer.key(csv, columns));
+                blackhole.consume(writer.write(csv, columns));
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+#!/bin/bash
+
+echo "=== PUBLIKACJA KODÓW IUCR ==="
+
+IUCR_FILE=${1:-"/tmp/Chicago_Police_Department_-_Illinois_Uniform_Crime_Reporting__IUCR__Codes.csv"}
+IUCR_TOPIC=${2:-"iucr-codes"}
+
+echo "Plik: $IUCR_FILE, topic: $IUCR_TOPIC"
+
+# Sprawdź pliki
+if [ ! -f "/tmp/chicago-crimes-streams.jar" ]; then
+    echo "BŁĄD: Brak pliku chicago-crimes-streams.jar"
+    exit 1
+fi
+
+if [ ! -f "$IUCR_FILE" ]; then
+    echo "BŁĄD: Brak pliku IUCR"
+    exit 1
+fi
+
+# Opublikuj kody (tworzy skompaktowany topic, jeśli nie istnieje)
+java -cp /opt/kafka/libs/*:/tmp/chicago-crimes-streams.jar \
+    com.chicago.crimes.iucr.IucrCodesPublisher \
+    broker-1:19092 \
+    "$IUCR_FILE" \
+    --topic="$IUCR_TOPIC"
@@ -18,6 +18,7 @@ pkill -f "connect-standalone" 2>/dev/null
 ./kafka-topics.sh --bootstrap-server broker-1:19092 --delete --topic crimes-input 2>/dev/null
 ./kafka-topics.sh --bootstrap-server broker-1:19092 --delete --topic crimes-aggregates 2>/dev/null
 ./kafka-topics.sh --bootstrap-server broker-1:19092 --delete --topic crimes-anomalies 2>/dev/null
+./kafka-topics.sh --bootstrap-server broker-1:19092 --delete --topic crimes-dead-letter 2>/dev/null
 
 # Czekaj na usunięcie
 sleep 5
@@ -32,6 +33,9 @@ sleep 5
 ./kafka-topics.sh --bootstrap-server broker-1:19092 --create \
     --replication-factor 2 --partitions 3 --topic crimes-anomalies
 
+./kafka-topics.sh --bootstrap-server broker-1:19092 --create \
+    --replication-factor 2 --partitions 3 --topic crimes-dead-letter
+
 # Wyczyść stan lokalny
 rm -rf /tmp/kafka-streams* 2>/dev/null
 rm -rf /tmp/chicago-crimes-app* 2>/dev/null
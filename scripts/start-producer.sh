@@ -4,7 +4,8 @@ echo "=== URUCHAMIANIE PRODUCENTA ==="
 
 if [ $# -lt 2 ]; then
     echo "Użycie: $0 <folder-danych> <rekordy-na-sekundę>"
-    echo "Przykład: $0 /tmp/crimes-in-chicago_result/ 100"
+    echo "Przykład: $0 /tmp/crimes-in-chicago_result/ 100 [--workers=4] [--preserve-order=false] [--replay-speed=3600] [--metrics-interval=10]"
+    echo "Przykład: $0 generate 0 --workers=8 --records=100000000 [--seed=42] [--disorder-minutes=30] [--late-percent=1]"
     exit 1
 fi
 
@@ -14,7 +15,8 @@ RECORDS_PER_SECOND=$2
 echo "Folder: $DATA_FOLDER, Prędkość: $RECORDS_PER_SECOND rekordów/s"
 
 # Sprawdź pliki
-if [ ! -d "$DATA_FOLDER" ]; then
+# "generate" - dane syntetyczne zamiast plików
+if [ "$DATA_FOLDER" != "generate" ] && [ ! -d "$DATA_FOLDER" ]; then
     echo "BŁĄD: Folder $DATA_FOLDER nie istnieje"
     exit 1
 fi
@@ -24,9 +26,16 @@ if [ ! -f "/tmp/chicago-crimes-streams.jar" ]; then
     exit 1
 fi
 
+# Generator domyślnie czyta słownik IUCR z /tmp, jak start-streams.sh
+EXTRA_ARGS=("${@:3}")
+if [ "$DATA_FOLDER" == "generate" ] && [[ ! " ${EXTRA_ARGS[*]} " =~ " --iucr=" ]]; then
+    EXTRA_ARGS+=("--iucr=/tmp/Chicago_Police_Department_-_Illinois_Uniform_Crime_Reporting__IUCR__Codes.csv")
+fi
+
 # Uruchom producenta
 java -cp /opt/kafka/libs/*:/tmp/chicago-crimes-streams.jar \
     com.chicago.crimes.producer.CrimesDataProducer \
     broker-1:19092 \
     "$DATA_FOLDER" \
-    "$RECORDS_PER_SECOND"
+    "$RECORDS_PER_SECOND" \
+    "${EXTRA_ARGS[@]}"
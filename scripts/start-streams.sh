@@ -3,8 +3,18 @@
 echo "=== URUCHAMIANIE KAFKA STREAMS ==="
 
 if [ $# -lt 3 ]; then
-    echo "Użycie: $0 <dni-anomalii> <procent-anomalii> <tryb-delay>"
+    echo "Użycie: $0 <dni-anomalii> <procent-anomalii> <tryb-delay> [plik-iucr|topic:<topic-iucr>] [--opcja=wartość ...]"
     echo "Przykład: $0 7 60 A"
+    echo "Przykład: $0 7 60 A topic:iucr-codes"
+    echo "Przykład: $0 7 60 A --anomaly-mode=sliding --anomaly-lengths=7,14,30 --monthly-mode=calendar"
+    echo "Przykład: $0 7 60 A --coalesce-ms=1000 --coalesce-max-keys=10000"
+    echo "Przykład: $0 7 60 C --engine=dense"
+    echo "Przykład: $0 7 60 C --partitioning=district"
+    echo "Przykład: $0 7 60 A --metrics-port=9464 --metrics-recording-level=DEBUG"
+    echo "Przykład: $0 7 60 A --query-port=7070 --query-host=broker-1"
+    echo "Przykład: $0 7 60 A --state-store=in-memory"
+    echo "Przykład: $0 7 60 A --dead-letter-topic=crimes-dead-letter"
+    echo "Przykład: $0 7 60 C --rocksdb-cache-mb=256 --rocksdb-write-buffer-mb=64"
     exit 1
 fi
 
@@ -13,6 +23,16 @@ ANOMALY_PERCENTAGE=$2
 DELAY_MODE=$3
 IUCR_FILE="/tmp/Chicago_Police_Department_-_Illinois_Uniform_Crime_Reporting__IUCR__Codes.csv"
 
+# Opcjonalny czwarty parametr to źródło kodów IUCR, pozostałe (--nazwa=wartość) trafiają do aplikacji
+OPTIONS=()
+for ARG in "${@:4}"; do
+    if [[ "$ARG" == --* ]]; then
+        OPTIONS+=("$ARG")
+    else
+        IUCR_FILE=$ARG
+    fi
+done
+
 echo "Parametry: $ANOMALY_DAYS dni, $ANOMALY_PERCENTAGE%, tryb $DELAY_MODE"
 
 # Sprawdź pliki
@@ -21,7 +41,8 @@ if [ ! -f "/tmp/chicago-crimes-streams.jar" ]; then
     exit 1
 fi
 
-if [ ! -f "$IUCR_FILE" ]; then
+# Kody z topicu (topic:<nazwa>) nie wymagają lokalnego pliku
+if [[ "$IUCR_FILE" != topic:* ]] && [ ! -f "$IUCR_FILE" ]; then
     echo "BŁĄD: Brak pliku IUCR"
     exit 1
 fi
@@ -33,4 +54,5 @@ java -cp /opt/kafka/libs/*:/tmp/chicago-crimes-streams.jar \
     "$ANOMALY_DAYS" \
     "$ANOMALY_PERCENTAGE" \
     "$DELAY_MODE" \
-    "$IUCR_FILE"
+    "$IUCR_FILE" \
+    "${OPTIONS[@]}"
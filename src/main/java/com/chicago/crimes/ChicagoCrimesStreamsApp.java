@@ -1,70 +1,192 @@
 package com.chicago.crimes;
 
+import com.chicago.crimes.extractor.CrimeTimestampExtractor;
+import com.chicago.crimes.iucr.IucrDictionary;
+import com.chicago.crimes.iucr.IucrDictionaryUpdater;
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.CountingDeserializationExceptionHandler;
+import com.chicago.crimes.metrics.EmitLatencyProcessor;
+import com.chicago.crimes.metrics.IngestMetricsProcessor;
+import com.chicago.crimes.metrics.PrometheusMetricsServer;
+import com.chicago.crimes.metrics.SampledLogger;
 import com.chicago.crimes.model.*;
+import com.chicago.crimes.processor.CalendarMonthProcessor;
+import com.chicago.crimes.processor.CoalescingProcessor;
+import com.chicago.crimes.processor.DenseAnomalyProcessor;
+import com.chicago.crimes.processor.DenseMonthlyProcessor;
+import com.chicago.crimes.processor.SlidingAnomalyProcessor;
+import com.chicago.crimes.query.CrimesQueryServer;
+import com.chicago.crimes.query.StoreVersions;
+import com.chicago.crimes.rocksdb.BoundedRocksDBConfigSetter;
+import com.chicago.crimes.serde.CompactSerdes;
 import com.chicago.crimes.serde.JsonSerde;
+import com.chicago.crimes.serde.LenientCrimeRecordSerde;
+import com.chicago.crimes.utils.CommandLineOptions;
+import com.chicago.crimes.utils.DistrictPartitioningCheck;
 import com.chicago.crimes.utils.JsonSchemaUtils;
 import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.*;
 import org.apache.kafka.streams.kstream.*;
+import org.apache.kafka.streams.state.BuiltInDslStoreSuppliers;
+import org.apache.kafka.streams.state.DslStoreSuppliers;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.WindowStore;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.time.Duration;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Properties;
 
 public class ChicagoCrimesStreamsApp {
 
     private static final String APPLICATION_ID = "chicago-crimes-app";
-    private static final String INPUT_TOPIC = "crimes-input";
-    private static final String AGGREGATES_TOPIC = "crimes-aggregates";
-    private static final String ANOMALIES_TOPIC = "crimes-anomalies";
-
-    private static Map<String, IucrCode> iucrCodes = new HashMap<>();
+    static final String INPUT_TOPIC = "crimes-input";
+    static final String AGGREGATES_TOPIC = "crimes-aggregates";
+    static final String ANOMALIES_TOPIC = "crimes-anomalies";
+    private static final String DEAD_LETTER_TOPIC = "crimes-dead-letter";
+    private static final String IUCR_TOPIC_PREFIX = "topic:";
+    // Ile dni po końcu okna przyjmowane są spóźnione rekordy
+    private static final int GRACE_DAYS = 1;
+
+    // Niezmienny słownik współdzielony przez wątki strumieni; podmieniany w całości
+    static volatile IucrDictionary iucrDictionary = IucrDictionary.EMPTY;
+    private static final SampledLogger MIS_KEYED_LOG = new SampledLogger("partitioning", 10, Duration.ofMinutes(1));
+    // Wersje magazynów dla cache serwera zapytań (--query-port), podbijane przed zapisem
+    private static final StoreVersions CALENDAR_VERSIONS = StoreVersions.of(CalendarMonthProcessor.STORE_NAME);
+    private static final StoreVersions MONTHLY_WINDOW_VERSIONS = StoreVersions.of(CrimesQueryServer.MONTHLY_WINDOW_STORE);
+    private static final StoreVersions ANOMALY_WINDOW_VERSIONS = StoreVersions.of(CrimesQueryServer.ANOMALY_WINDOW_STORE);
 
     public static void main(String[] args) {
-        if (args.length < 4) { // POPRAWKA: Dodano parametr dla pliku IUCR
-            System.err.println("Usage: java ChicagoCrimesStreamsApp <bootstrap-servers> <anomaly-days> <anomaly-percentage> <delay-mode> [iucr-csv-path]");
+        CommandLineOptions cli = CommandLineOptions.parse(args);
+        if (cli.positionalCount() < 4) { // POPRAWKA: Dodano parametr dla pliku IUCR
+            System.err.println("Usage: java ChicagoCrimesStreamsApp <bootstrap-servers> <anomaly-days> <anomaly-percentage> <delay-mode>" +
+                    " [iucr-csv-path|topic:<iucr-topic>] [--monthly-mode=calendar|window]" +
+                    " [--anomaly-mode=tumbling|sliding] [--anomaly-lengths=7,14,30] [--final-emit=on-window-close|suppress]" +
+                    " [--coalesce-ms=<ms>] [--coalesce-max-keys=<n>] [--engine=dsl|dense]" +
+                    " [--partitioning=repartition|district] [--metrics-port=<port>] [--metrics-recording-level=INFO|DEBUG]" +
+                    " [--query-port=<port>] [--query-host=<host>] [--query-cache-size=<n>] [--query-cache-ms=<ms>]" +
+                    " [--state-store=rocksdb|in-memory] [--dead-letter-topic=<topic>|none]" +
+                    " [--rocksdb-cache-mb=<mb>] [--rocksdb-write-buffer-mb=<mb>]");
             System.exit(1);
         }
 
-        String bootstrapServers = args[0];
-        int anomalyDays = Integer.parseInt(args[1]);
-        double anomalyPercentage = Double.parseDouble(args[2]);
-        String delayMode = args[3];
-        String iucrCsvPath = args.length > 4 ? args[4] : "Chicago_Police_Department_-_Illinois_Uniform_Crime_Reporting__IUCR__Codes.csv";
+        String bootstrapServers = cli.positional(0);
+        int anomalyDays = Integer.parseInt(cli.positional(1));
+        double anomalyPercentage = Double.parseDouble(cli.positional(2));
+        String delayMode = cli.positional(3);
+        String iucrSource = cli.positional(4, "Chicago_Police_Department_-_Illinois_Uniform_Crime_Reporting__IUCR__Codes.csv");
+
+        // Kody IUCR ze skompaktowanego topicu (aktualizowane na żywo) albo z lokalnego pliku CSV
+        String iucrTopic = null;
+        if (iucrSource.startsWith(IUCR_TOPIC_PREFIX)) {
+            iucrTopic = iucrSource.substring(IUCR_TOPIC_PREFIX.length());
+            // Globalny magazyn jest odtwarzany dopiero po starcie strumieni
+            System.out.println("Kody IUCR zostaną załadowane z topicu " + iucrTopic);
+        } else {
+            // POPRAWKA: Załaduj kody IUCR z rzeczywistego pliku
+            loadIucrCodes(iucrSource);
+        }
 
-        // POPRAWKA: Załaduj kody IUCR z rzeczywistego pliku
-        loadIucrCodes(iucrCsvPath);
+        // Topologia bez repartycji jest poprawna tylko dla wejścia kluczowanego dzielnicą
+        if (isDistrictPartitioned(cli)) {
+            DistrictPartitioningCheck.verify(bootstrapServers, INPUT_TOPIC,
+                    cli.getInt("partition-check-sample", 1000), Duration.ofSeconds(30));
+        }
 
         Properties props = createProperties(bootstrapServers, delayMode);
+        int metricsPort = cli.getInt("metrics-port", 0);
+        if (metricsPort > 0) {
+            // Oryginalny czas przyjęcia rekordu jest potrzebny do pomiaru opóźnienia emisji
+            props.put(CrimeTimestampExtractor.ARRIVAL_HEADER_CONFIG, true);
+        }
+        // Bufory suppress i statystyki RocksDB są rejestrowane dopiero na poziomie DEBUG
+        props.put(StreamsConfig.METRICS_RECORDING_LEVEL_CONFIG, cli.get("metrics-recording-level", "INFO"));
+        int queryPort = cli.getInt("query-port", 0);
+        HostInfo queryHost = new HostInfo(cli.get("query-host", "localhost"), queryPort);
+        if (queryPort > 0) {
+            // Adres ogłaszany innym instancjom w metadanych - na jego podstawie kierowane są zapytania
+            props.put(StreamsConfig.APPLICATION_SERVER_CONFIG, queryHost.host() + ":" + queryHost.port());
+        }
+        // Jeden limit pamięci RocksDB dla wszystkich magazynów (0 = domyślne ustawienia Kafka Streams na magazyn)
+        long rocksDbCacheMb = cli.getLong("rocksdb-cache-mb", 256);
+        if (rocksDbCacheMb > 0) {
+            long cacheBytes = rocksDbCacheMb * 1024 * 1024;
+            long writeBufferBytes = cli.getLong("rocksdb-write-buffer-mb", 64) * 1024 * 1024;
+            BoundedRocksDBConfigSetter.validate(cacheBytes, writeBufferBytes);
+            props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, BoundedRocksDBConfigSetter.class);
+            props.put(BoundedRocksDBConfigSetter.CACHE_BYTES_CONFIG, cacheBytes);
+            props.put(BoundedRocksDBConfigSetter.WRITE_BUFFER_BYTES_CONFIG, writeBufferBytes);
+        }
         StreamsBuilder builder = new StreamsBuilder();
 
-        buildTopology(builder, anomalyDays, anomalyPercentage, delayMode);
+        if (iucrTopic != null) {
+            IucrDictionaryUpdater.addGlobalStore(builder, iucrTopic, ChicagoCrimesStreamsApp::updateIucrDictionary);
+        }
+        buildTopology(builder, anomalyDays, anomalyPercentage, delayMode, cli);
 
-        KafkaStreams streams = new KafkaStreams(builder.build(), props);
+        Topology topology = builder.build();
+        KafkaStreams streams = new KafkaStreams(topology, props);
+        PrometheusMetricsServer metricsServer = metricsPort > 0 ? startMetricsServer(metricsPort, streams) : null;
+        CrimesQueryServer queryServer = queryPort > 0
+                ? startQueryServer(queryHost, streams, topology, anomalyPercentage, cli) : null;
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Shutting down Chicago Crimes Streams App...");
             streams.close(Duration.ofSeconds(10));
+            if (metricsServer != null) {
+                metricsServer.close();
+            }
+            if (queryServer != null) {
+                queryServer.close();
+            }
         }));
 
         System.out.println("Starting Chicago Crimes Streams App...");
-        System.out.println("Topology: " + builder.build().describe());
+        System.out.println("Topology: " + topology.describe());
 
         streams.start();
     }
 
-    private static Properties createProperties(String bootstrapServers, String delayMode) {
+    private static PrometheusMetricsServer startMetricsServer(int port, KafkaStreams streams) {
+        try {
+            PrometheusMetricsServer server = new PrometheusMetricsServer(port, streams::metrics);
+            server.start();
+            return server;
+        } catch (IOException e) {
+            System.err.println("Nie można uruchomić endpointu metryk na porcie " + port + ": " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static CrimesQueryServer startQueryServer(HostInfo host, KafkaStreams streams, Topology topology,
+                                                      double anomalyPercentage, CommandLineOptions options) {
+        try {
+            CrimesQueryServer server = new CrimesQueryServer(streams, host,
+                    CrimesQueryServer.storeNames(topology.describe()),
+                    categoryId -> iucrDictionary.categoryName(categoryId), anomalyPercentage,
+                    options.getInt("query-cache-size", 1000), options.getLong("query-cache-ms", 1000));
+            server.start();
+            return server;
+        } catch (IOException e) {
+            System.err.println("Nie można uruchomić serwera zapytań na porcie " + host.port() + ": " + e.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    static Properties createProperties(String bootstrapServers, String delayMode) {
         Properties props = new Properties();
         props.put(StreamsConfig.APPLICATION_ID_CONFIG, APPLICATION_ID);
         props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(StreamsConfig.DEFAULT_KEY_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_VALUE_SERDE_CLASS_CONFIG, Serdes.String().getClass());
         props.put(StreamsConfig.DEFAULT_TIMESTAMP_EXTRACTOR_CLASS_CONFIG,
-                com.chicago.crimes.extractor.CrimeTimestampExtractor.class);
+                CrimeTimestampExtractor.class);
+        // Niepoprawny JSON na wejściu jest logowany, liczony i pomijany zamiast zatrzymywać wątek
+        props.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG,
+                CountingDeserializationExceptionHandler.class);
 
         return props;
     }
@@ -77,72 +199,246 @@ public class ChicagoCrimesStreamsApp {
         }
     }
 
-    private static void buildTopology(StreamsBuilder builder, int anomalyDays, double anomalyPercentage, String delayMode) {
-        KStream<String, String> crimeEvents = builder.stream(INPUT_TOPIC);
+    /**
+     * Przy emisji po zamknięciu okna magazyn okien sam wysyła wyniki końcowe i suppress nie jest potrzebny
+     */
+    private static <K, V> KStream<Windowed<K>, V> finalResults(KTable<Windowed<K>, V> windows, String delayMode,
+                                                               boolean emitOnWindowClose) {
+        if (emitOnWindowClose) {
+            return windows.toStream();
+        }
+        return windows.suppress(getSuppressStrategy(delayMode)).toStream();
+    }
+
+    /**
+     * Pakietowa - tę samą topologię uruchamia harness obciążeniowy z modułu benchmarks (TopologyLoadHarness)
+     */
+    static void buildTopology(StreamsBuilder builder, int anomalyDays, double anomalyPercentage, String delayMode,
+                              CommandLineOptions options) {
+        // Jedno dekodowanie na rekord: ekstraktor czasu czyta już zdeserializowany CrimeRecord
+        KStream<String, CrimeRecord> crimeEvents = builder.stream(INPUT_TOPIC,
+                Consumed.with(Serdes.String(), new LenientCrimeRecordSerde()));
+
+        // Niepoprawny JSON, rekordy bez dzielnicy albo z niepoprawną datą są pomijane, liczone w metrykach
+        // i kierowane do tematu martwych rekordów z przyczyną w nagłówkach (none wyłącza temat)
+        String deadLetterTopic = options.get("dead-letter-topic", DEAD_LETTER_TOPIC);
+        boolean deadLetters = !"none".equals(deadLetterTopic);
+        KStream<String, CrimeRecord> ingested = crimeEvents.processValues(
+                () -> new IngestMetricsProcessor(deadLetters), Named.as("ingest"));
+        // Filtr jest zawsze, żeby generowane nazwy magazynów i tematów repartycji nie zależały od tematu
+        KStream<String, CrimeRecord> parsedCrimes = ingested.filter(
+                (key, crime) -> IngestMetricsProcessor.rejectionOf(crime) == null, Named.as("ingest-accepted"));
+
+        // Tryb C na oknach DSL: wyniki końcowe z magazynu okien zamiast bufora suppress w pamięci
+        String finalEmit = options.get("final-emit", "on-window-close");
+        if (!"on-window-close".equals(finalEmit) && !"suppress".equals(finalEmit)) {
+            throw new IllegalArgumentException("Unknown final emit strategy: " + finalEmit);
+        }
+        boolean emitOnWindowClose = !"A".equals(delayMode) && "on-window-close".equals(finalEmit);
+
+        // Producent kluczuje rekordy dzielnicą - obie gałęzie mogą wtedy liczyć lokalnie w partycji wejściowej
+        boolean districtPartitioned = isDistrictPartitioned(options);
+        if (districtPartitioned) {
+            parsedCrimes = parsedCrimes.filter(ChicagoCrimesStreamsApp::isKeyedByDistrict);
+        }
+
+        KStream<String, byte[]> aggregates;
+        KStream<String, byte[]> anomalies;
+        String engine = options.get("engine", "dsl");
+        String monthlyMode = options.get("monthly-mode", "calendar");
+        String anomalyMode = options.get("anomaly-mode", "tumbling");
+        DslStoreSuppliers storeType = storeType(options.get("state-store", "rocksdb"));
+        if ("dense".equals(engine)) {
+            if (!"calendar".equals(monthlyMode) || !"tumbling".equals(anomalyMode)) {
+                throw new IllegalArgumentException("Dense engine supports only --monthly-mode=calendar" +
+                        " and --anomaly-mode=tumbling");
+            }
+            KStream<String, CrimeRecord> byDistrict = byDistrict(parsedCrimes, districtPartitioned);
+            aggregates = buildDenseMonthlyAggregates(byDistrict, delayMode);
+            anomalies = buildDenseAnomalyDetection(byDistrict, anomalyDays, anomalyPercentage, delayMode);
+        } else if ("dsl".equals(engine)) {
+            if ("calendar".equals(monthlyMode)) {
+                aggregates = buildCalendarMonthlyAggregates(parsedCrimes, delayMode, districtPartitioned, storeType);
+            } else if ("window".equals(monthlyMode) && districtPartitioned) {
+                throw new IllegalArgumentException("--monthly-mode=window regroups by category and always" +
+                        " repartitions; use --monthly-mode=calendar with --partitioning=district");
+            } else if ("window".equals(monthlyMode)) {
+                aggregates = buildMonthlyAggregates(parsedCrimes, delayMode, emitOnWindowClose, storeType);
+            } else {
+                throw new IllegalArgumentException("Unknown monthly mode: " + monthlyMode);
+            }
+            if ("sliding".equals(anomalyMode)) {
+                int[] lengths = parseDays(options.get("anomaly-lengths", String.valueOf(anomalyDays)));
+                anomalies = buildSlidingAnomalyDetection(byDistrict(parsedCrimes, districtPartitioned), lengths,
+                        anomalyPercentage, delayMode, storeType);
+            } else if ("tumbling".equals(anomalyMode)) {
+                anomalies = buildAnomalyDetection(parsedCrimes, anomalyDays, anomalyPercentage, delayMode,
+                        emitOnWindowClose, districtPartitioned, storeType);
+            } else {
+                throw new IllegalArgumentException("Unknown anomaly mode: " + anomalyMode);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+        writeOutputs(aggregates, anomalies, delayMode, options);
+
+        // Zapis przez producenta zadania - offsety wejścia nie wyprzedzą rekordów martwych. Gałąź jest
+        // dodawana na końcu, więc nie przesuwa generowanych nazw pozostałych węzłów
+        if (deadLetters) {
+            ingested.filter((key, crime) -> IngestMetricsProcessor.rejectionOf(crime) != null,
+                            Named.as("ingest-rejected"))
+                    .mapValues(IngestMetricsProcessor::deadLetterValue, Named.as("dead-letter-value"))
+                    .to(deadLetterTopic, Produced.with(Serdes.String(), Serdes.ByteArray()).withName("dead-letter-sink"));
+        }
+    }
 
-        KStream<String, CrimeRecord> parsedCrimes = crimeEvents
-                .mapValues(json -> parseJson(json, CrimeRecord.class))
-                .filter((key, crime) -> crime != null && crime.getDistrict() != null);
+    private static void writeOutputs(KStream<String, byte[]> aggregates, KStream<String, byte[]> anomalies,
+                                     String delayMode, CommandLineOptions options) {
+        // Tryb A: kolejne aktualizacje tego samego klucza są łączone i wysyłane co interwał
+        long coalesceMs = options.getLong("coalesce-ms", 0);
+        if (coalesceMs > 0 && !"A".equals(delayMode)) {
+            throw new IllegalArgumentException("--coalesce-ms applies only to delay mode A; mode " + delayMode +
+                    " emits final results only");
+        }
+        if (coalesceMs > 0) {
+            Duration interval = Duration.ofMillis(coalesceMs);
+            int maxKeys = options.getInt("coalesce-max-keys", 10_000);
+            aggregates = aggregates.process(CoalescingProcessor.supplier(AGGREGATES_TOPIC, interval, maxKeys));
+            anomalies = anomalies.process(CoalescingProcessor.supplier(ANOMALIES_TOPIC, interval, maxKeys));
+        }
 
-        buildMonthlyAggregates(parsedCrimes, delayMode);
-        buildAnomalyDetection(parsedCrimes, anomalyDays, anomalyPercentage, delayMode);
+        aggregates
+                .processValues(() -> new EmitLatencyProcessor(AGGREGATES_TOPIC))
+                .to(AGGREGATES_TOPIC, Produced.with(Serdes.String(), Serdes.ByteArray()));
+        anomalies
+                .processValues(() -> new EmitLatencyProcessor(ANOMALIES_TOPIC))
+                .to(ANOMALIES_TOPIC, Produced.with(Serdes.String(), Serdes.ByteArray()));
     }
 
-    private static void buildMonthlyAggregates(KStream<String, CrimeRecord> crimes, String delayMode) {
-        crimes
-                .map((key, crime) -> {
-                    String aggregateKey = String.format("%s_%s",
-                            getIucrPrimaryDescription(crime.getIucr()),
-                            crime.getDistrict());
-                    return KeyValue.pair(aggregateKey, crime);
-                })
-                .groupByKey(Grouped.with(Serdes.String(), new JsonSerde<>(CrimeRecord.class)))
-                .windowedBy(TimeWindows.ofSizeAndGrace(Duration.ofDays(30), Duration.ofDays(1)))
+    private static KStream<String, byte[]> buildMonthlyAggregates(KStream<String, CrimeRecord> crimes, String delayMode,
+                                               boolean emitOnWindowClose, DslStoreSuppliers storeType) {
+        KTable<Windowed<CategoryDistrictKey>, CrimeAggregate> windows = crimes
+                .map((key, crime) -> KeyValue.pair(monthlyKey(crime), crime))
+                .groupByKey(Grouped.with(CompactSerdes.categoryDistrictKey(), CompactSerdes.crimeRecord()))
+                .windowedBy(TimeWindows.ofSizeAndGrace(Duration.ofDays(30), Duration.ofDays(GRACE_DAYS)))
+                .emitStrategy(emitOnWindowClose ? EmitStrategy.onWindowClose() : EmitStrategy.onWindowUpdate())
                 .aggregate(
                         () -> new CrimeAggregate(),
                         (key, crime, aggregate) -> {
-                            String[] keyParts = key.split("_", 2);
+                            // Opisy potrzebne do kluczy wyjściowych są ustawiane raz, przy pierwszym rekordzie
                             if (aggregate.getYearMonth() == null) {
                                 aggregate.setYearMonth(crime.getYearMonth());
-                                aggregate.setPrimaryDescription(keyParts[0]);
-                                aggregate.setDistrict(keyParts[1]);
+                                aggregate.setPrimaryDescription(iucrDictionary.categoryName(key.getCategoryId()));
+                                aggregate.setDistrict(crime.getDistrict());
                             }
                             boolean isFbiIndex = isIucrFbiIndex(crime.getIucr());
+                            MONTHLY_WINDOW_VERSIONS.updated(crime.getYearMonthPacked());
                             return aggregate.update(crime, isFbiIndex);
                         },
-                        Materialized.with(Serdes.String(), new JsonSerde<>(CrimeAggregate.class))
-                )
-                .suppress(getSuppressStrategy(delayMode))
-                .toStream()
-                .map((windowedKey, aggregate) -> {
+                        Materialized.<CategoryDistrictKey, CrimeAggregate, WindowStore<Bytes, byte[]>>as(
+                                        CrimesQueryServer.MONTHLY_WINDOW_STORE)
+                                .withKeySerde(CompactSerdes.categoryDistrictKey())
+                                .withValueSerde(CompactSerdes.crimeAggregate())
+                                .withStoreType(storeType)
+                );
+
+        return emitAggregates(finalResults(windows, delayMode, emitOnWindowClose));
+    }
+
+    /**
+     * Agregaty w miesiącach kalendarzowych: magazyn adresowany (rok-miesiąc, kategoria, dzielnica)
+     */
+    private static KStream<String, byte[]> buildCalendarMonthlyAggregates(KStream<String, CrimeRecord> crimes,
+                                                                          String delayMode, boolean districtPartitioned,
+                                                                          DslStoreSuppliers storeType) {
+        KStream<CategoryDistrictKey, CrimeRecord> keyed = crimes
+                .map((key, crime) -> KeyValue.pair(monthlyKey(crime), crime));
+        // Kategoria jest częścią klucza magazynu, a nie partycjonowania - wystarczy, że dzielnica jest w jednej partycji
+        if (!districtPartitioned) {
+            keyed = keyed.repartition(Repartitioned.with(CompactSerdes.categoryDistrictKey(), CompactSerdes.crimeRecord()));
+        }
+        KStream<MonthlyAggregateKey, CrimeAggregate> months = keyed
+                .peek((key, crime) -> CALENDAR_VERSIONS.updated(crime.getYearMonthPacked()))
+                .process(CalendarMonthProcessor.supplier(GRACE_DAYS, !"A".equals(delayMode),
+                        crime -> isIucrFbiIndex(crime.getIucr()),
+                        categoryId -> iucrDictionary.categoryName(categoryId), storeType));
+
+        return emitAggregates(months);
+    }
+
+    /**
+     * Silnik "dense": agregaty miesięczne i okna anomalii w tablicach long[] zamiast magazynów DSL.
+     * Oba procesory czytają ten sam strumień partycjonowany po dzielnicy.
+     */
+    private static KStream<String, byte[]> buildDenseMonthlyAggregates(KStream<String, CrimeRecord> byDistrict,
+                                                                      String delayMode) {
+        return emitAggregates(byDistrict.process(DenseMonthlyProcessor.supplier(GRACE_DAYS, !"A".equals(delayMode),
+                crime -> isIucrFbiIndex(crime.getIucr()),
+                crime -> IucrDictionary.categoryId(iucrDictionary.lookup(crime.getIucr())),
+                categoryId -> iucrDictionary.categoryName(categoryId))));
+    }
+
+    private static KStream<String, byte[]> buildDenseAnomalyDetection(KStream<String, CrimeRecord> byDistrict,
+                                                                      int days, double threshold, String delayMode) {
+        return emitAnomalies(byDistrict.process(DenseAnomalyProcessor.supplier(days, GRACE_DAYS,
+                !"A".equals(delayMode), crime -> isIucrFbiIndex(crime.getIucr()))), threshold);
+    }
+
+    private static <K> KStream<String, byte[]> emitAggregates(KStream<K, CrimeAggregate> aggregates) {
+        return aggregates
+                .map((key, aggregate) -> {
                     String outputKey = String.format("%s_%s_%s",
                             aggregate.getYearMonth(),
                             aggregate.getPrimaryDescription(),
                             aggregate.getDistrict());
-                    String messageWithSchema = JsonSchemaUtils.createAggregateMessage(aggregate, outputKey);
+                    byte[] messageWithSchema = JsonSchemaUtils.createAggregateMessage(aggregate, outputKey);
                     return KeyValue.pair(outputKey, messageWithSchema);
-                })
-                .to(AGGREGATES_TOPIC, Produced.with(Serdes.String(), Serdes.String()));
+                });
     }
 
-    private static void buildAnomalyDetection(KStream<String, CrimeRecord> crimes, int days, double threshold, String delayMode) {
-        crimes
-                .selectKey((key, crime) -> crime.getDistrict())
-                .groupByKey(Grouped.with(Serdes.String(), new JsonSerde<>(CrimeRecord.class)))
-                .windowedBy(TimeWindows.ofSizeAndGrace(Duration.ofDays(days), Duration.ofDays(1)))
+    private static KStream<String, byte[]> buildAnomalyDetection(KStream<String, CrimeRecord> crimes, int days, double threshold,
+                                              String delayMode, boolean emitOnWindowClose, boolean districtPartitioned,
+                                              DslStoreSuppliers storeType) {
+        KStream<String, CrimeRecord> keyed = districtPartitioned ? crimes : crimes.selectKey((key, crime) -> crime.getDistrict());
+        KTable<Windowed<String>, DistrictCrimeCounts> windows = keyed
+                .groupByKey(Grouped.with(Serdes.String(), CompactSerdes.crimeRecord()))
+                .windowedBy(TimeWindows.ofSizeAndGrace(Duration.ofDays(days), Duration.ofDays(GRACE_DAYS)))
+                .emitStrategy(emitOnWindowClose ? EmitStrategy.onWindowClose() : EmitStrategy.onWindowUpdate())
                 .aggregate(
                         () -> new DistrictCrimeCounts(),
                         (district, crime, counts) -> {
+                            ANOMALY_WINDOW_VERSIONS.updated(district);
                             counts.incrementTotal();
                             if (isIucrFbiIndex(crime.getIucr())) {
                                 counts.incrementFbiIndex();
                             }
                             return counts;
                         },
-                        Materialized.with(Serdes.String(), new JsonSerde<>(DistrictCrimeCounts.class))
-                )
-                .suppress(getSuppressStrategy(delayMode))
-                .toStream()
+                        Materialized.<String, DistrictCrimeCounts, WindowStore<Bytes, byte[]>>as(
+                                        CrimesQueryServer.ANOMALY_WINDOW_STORE)
+                                .withKeySerde(Serdes.String())
+                                .withValueSerde(CompactSerdes.districtCrimeCounts())
+                                .withStoreType(storeType)
+                );
+
+        return emitAnomalies(finalResults(windows, delayMode, emitOnWindowClose), threshold);
+    }
+
+    /**
+     * Okna przesuwne z jednodniowych paneli: jeden magazyn paneli na dzielnicę obsługuje wszystkie długości okien
+     */
+    private static KStream<String, byte[]> buildSlidingAnomalyDetection(KStream<String, CrimeRecord> byDistrict, int[] lengths,
+                                                     double threshold, String delayMode, DslStoreSuppliers storeType) {
+        KStream<Windowed<String>, DistrictCrimeCounts> windows = byDistrict
+                .process(SlidingAnomalyProcessor.supplier(lengths, GRACE_DAYS, !"A".equals(delayMode),
+                        crime -> isIucrFbiIndex(crime.getIucr()), storeType));
+
+        return emitAnomalies(windows, threshold);
+    }
+
+    private static KStream<String, byte[]> emitAnomalies(KStream<Windowed<String>, DistrictCrimeCounts> windows,
+                                                         double threshold) {
+        return windows
                 .filter((windowedDistrict, counts) -> {
                     double percentage = counts.getTotalCrimes() > 0 ?
                             (double) counts.getFbiIndexCrimes() / counts.getTotalCrimes() * 100 : 0;
@@ -156,107 +452,118 @@ public class ChicagoCrimesStreamsApp {
                     AnomalyAlert alert = new AnomalyAlert(windowStart, windowEnd, district,
                             counts.getFbiIndexCrimes(), counts.getTotalCrimes());
 
-                    String messageWithSchema = JsonSchemaUtils.createAnomalyMessage(alert, district);
+                    byte[] messageWithSchema = JsonSchemaUtils.createAnomalyMessage(alert, district);
                     return KeyValue.pair(district, messageWithSchema);
-                })
-                .to(ANOMALIES_TOPIC, Produced.with(Serdes.String(), Serdes.String()));
+                });
     }
 
-    // POPRAWKA: Rzeczywiste ładowanie z pliku CSV
-    private static void loadIucrCodes(String csvFile) {
-        try (BufferedReader br = new BufferedReader(new FileReader(csvFile))) {
-            String line;
-            boolean firstLine = true;
-
-            while ((line = br.readLine()) != null) {
-                if (firstLine) {
-                    firstLine = false;
-                    continue; // Pomiń nagłówek
-                }
-
-                String[] values = parseCSVLine(line);
-                if (values.length >= 4) {
-                    String iucr = values[0].trim();
-                    if (iucr.matches("\\d+")) { // Sprawdź czy to są tylko cyfry
-                        iucr = String.format("%04d", Integer.parseInt(iucr));
-                    }
-                    String primaryDescription = values[1].trim();
-                    String secondaryDescription = values[2].trim();
-                    String indexCode = values[3].trim();
-
-                    iucrCodes.put(iucr, new IucrCode(iucr, primaryDescription, secondaryDescription, indexCode));
-                }
-            }
+    /**
+     * Strumień z kluczem = dzielnica, partycjonowany po dzielnicy
+     */
+    private static KStream<String, CrimeRecord> byDistrict(KStream<String, CrimeRecord> crimes, boolean districtPartitioned) {
+        if (districtPartitioned) {
+            return crimes;
+        }
+        return crimes
+                .selectKey((key, crime) -> crime.getDistrict())
+                .repartition(Repartitioned.with(Serdes.String(), CompactSerdes.crimeRecord()));
+    }
 
-            System.out.println("Załadowano " + iucrCodes.size() + " kodów IUCR");
+    /**
+     * Magazyny okien DSL i procesorów własnych: RocksDB (domyślnie) albo w pamięci - te drugie nie mają
+     * lokalnej kopii na dysku i po restarcie są w całości odtwarzane z changelogu
+     */
+    private static DslStoreSuppliers storeType(String stateStore) {
+        if ("rocksdb".equals(stateStore)) {
+            return new BuiltInDslStoreSuppliers.RocksDBDslStoreSuppliers();
+        } else if ("in-memory".equals(stateStore)) {
+            return new BuiltInDslStoreSuppliers.InMemoryDslStoreSuppliers();
+        }
+        throw new IllegalArgumentException("Unknown state store type: " + stateStore);
+    }
 
-        } catch (IOException e) {
-            System.err.println("Błąd ładowania kodów IUCR: " + e.getMessage());
-            // loadBasicIucrCodes(); // Fallback
+    private static boolean isDistrictPartitioned(CommandLineOptions options) {
+        String partitioning = options.get("partitioning", "repartition");
+        if (!"repartition".equals(partitioning) && !"district".equals(partitioning)) {
+            throw new IllegalArgumentException("Unknown partitioning: " + partitioning);
         }
+        return "district".equals(partitioning);
     }
 
-    // POPRAWKA: Dodano fallback dla podstawowych kodów
-    private static void loadBasicIucrCodes() {
-        iucrCodes.put("110", new IucrCode("110", "HOMICIDE", "FIRST DEGREE MURDER", "I"));
-        iucrCodes.put("130", new IucrCode("130", "HOMICIDE", "SECOND DEGREE MURDER", "I"));
-        iucrCodes.put("261", new IucrCode("261", "CRIM SEXUAL ASSAULT", "AGG CRIMINAL SEXUAL ASSAULT", "I"));
-        iucrCodes.put("486", new IucrCode("486", "BATTERY", "DOMESTIC BATTERY SIMPLE", "N"));
-        System.out.println("Załadowano podstawowe kody IUCR (fallback)");
+    /**
+     * Rekord z kluczem innym niż dzielnica mógł trafić do złej partycji - liczenie go lokalnie dałoby
+     * wynik rozdzielony między zadania, więc jest pomijany
+     */
+    private static boolean isKeyedByDistrict(String key, CrimeRecord crime) {
+        if (crime.getDistrict().equals(key)) {
+            return true;
+        }
+        AppCounters.misKeyedRecord();
+        MIS_KEYED_LOG.log("Pomijam rekord " + crime.getId() + " z kluczem \"" + key +
+                "\" innym niż dzielnica " + crime.getDistrict() + " (--partitioning=district)");
+        return false;
     }
 
-    // Metody pomocnicze
-    private static <T> T parseJson(String json, Class<T> clazz) {
-        try {
-            return JsonSerde.objectMapper.readValue(json, clazz);
-        } catch (Exception e) {
-            System.err.println("Error parsing JSON: " + e.getMessage());
-            return null;
+    // "7,14,30" -> {7, 14, 30}
+    private static int[] parseDays(String list) {
+        String[] parts = list.split(",");
+        int[] days = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            days[i] = Integer.parseInt(parts[i].trim());
         }
+        return days;
     }
 
-    private static String[] parseCSVLine(String line) {
-        // Prosta implementacja - można ulepszyć obsługę cudzysłowów
-        return line.split(",");
+    /**
+     * Klucz agregacji miesięcznej - dzielnica nienumeryczna jest w nim zapisana jako tekst
+     */
+    private static CategoryDistrictKey monthlyKey(CrimeRecord crime) {
+        int categoryId = IucrDictionary.categoryId(iucrDictionary.lookup(crime.getIucr()));
+        return CategoryDistrictKey.of(categoryId, crime.getDistrict());
+    }
+
+    // POPRAWKA: Rzeczywiste ładowanie z pliku CSV
+    static void loadIucrCodes(String csvFile) {
+        try {
+            iucrDictionary = IucrDictionary.load(Paths.get(csvFile));
+            System.out.println("Załadowano " + iucrDictionary.size() + " kodów IUCR (" +
+                    iucrDictionary.categoryCount() + " kategorii)");
+
+        } catch (IOException e) {
+            System.err.println("Błąd ładowania kodów IUCR: " + e.getMessage());
+        }
     }
 
-    private static String getIucrPrimaryDescription(String iucr) {
-        IucrCode code = iucrCodes.get(iucr);
-        return code != null ? code.getPrimaryDescription() : "UNKNOWN";
+    private static void updateIucrDictionary(IucrDictionary dictionary) {
+        // Pusty topic daje najpierw pusty słownik - komunikat dopiero przy pierwszych kodach
+        boolean initial = iucrDictionary.size() == 0;
+        iucrDictionary = dictionary;
+        if (initial && dictionary.size() > 0) {
+            System.out.println("Załadowano " + dictionary.size() + " kodów IUCR z topicu (" +
+                    dictionary.categoryCount() + " kategorii)");
+        }
     }
 
+    // Metody pomocnicze
     private static boolean isIucrFbiIndex(String iucr) {
-        IucrCode code = iucrCodes.get(iucr);
-        return code != null && "I".equals(code.getIndexCode());
+        return iucrDictionary.isFbiIndex(iucr);
     }
 
     public static class DistrictCrimeCounts {
         private long totalCrimes = 0;
         private long fbiIndexCrimes = 0;
 
+        public DistrictCrimeCounts() {}
+
+        public DistrictCrimeCounts(long totalCrimes, long fbiIndexCrimes) {
+            this.totalCrimes = totalCrimes;
+            this.fbiIndexCrimes = fbiIndexCrimes;
+        }
+
         public void incrementTotal() { totalCrimes++; }
         public void incrementFbiIndex() { fbiIndexCrimes++; }
 
         public long getTotalCrimes() { return totalCrimes; }
         public long getFbiIndexCrimes() { return fbiIndexCrimes; }
     }
-
-    public static class IucrCode {
-        private String iucr;
-        private String primaryDescription;
-        private String secondaryDescription;
-        private String indexCode;
-
-        public IucrCode(String iucr, String primaryDescription, String secondaryDescription, String indexCode) {
-            this.iucr = iucr;
-            this.primaryDescription = primaryDescription;
-            this.secondaryDescription = secondaryDescription;
-            this.indexCode = indexCode;
-        }
-
-        public String getIucr() { return iucr; }
-        public String getPrimaryDescription() { return primaryDescription; }
-        public String getSecondaryDescription() { return secondaryDescription; }
-        public String getIndexCode() { return indexCode; }
-    }
 }
@@ -1,51 +1,126 @@
 package com.chicago.crimes.extractor;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.EmitLatencyProcessor;
+import com.chicago.crimes.metrics.SampledLogger;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.utils.CrimeDateParser;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Configurable;
+import org.apache.kafka.common.header.Headers;
 import org.apache.kafka.streams.processor.TimestampExtractor;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
 
-public class CrimeTimestampExtractor implements TimestampExtractor {
+/**
+ * Czas zdarzenia z pola "Date". Przy typowanym źródle (Serde&lt;CrimeRecord&gt;) wartość jest już
+ * zdekodowana, więc rekord nie jest parsowany drugi raz. Dla surowych wartości (String / byte[])
+ * pole jest wyciągane strumieniowo, bez budowania drzewa JsonNode.
+ *
+ * Przy {@link #ARRIVAL_HEADER_CONFIG} = true oryginalny znacznik czasu rekordu (czas wysłania
+ * albo zapisu w brokerze) jest zapamiętywany w nagłówku przed zastąpieniem go czasem zdarzenia -
+ * na jego podstawie mierzone jest opóźnienie emisji wyników.
+ *
+ * Rekordy bez poprawnej daty dostają czas partycji (na świeżej partycji, gdzie ten wynosi -1, zero)
+ * i są tylko liczone (timestamp-fallback-total) - pomija je i przekazuje do tematu martwych rekordów
+ * IngestMetricsProcessor. Czas nigdy nie jest ujemny, więc Kafka Streams nie odrzuca ich wcześniej
+ * z ostrzeżeniem, i nigdy nie wyprzedza czasu partycji, więc nie zamyka okien.
+ */
+public class CrimeTimestampExtractor implements TimestampExtractor, Configurable {
 
-    private static final ObjectMapper objectMapper = new ObjectMapper();
-    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    public static final String ARRIVAL_HEADER_CONFIG = "chicago.crimes.arrival.header";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String DATE_FIELD = "Date";
+    private static final SampledLogger LOG = new SampledLogger("timestamp-extractor", 10, Duration.ofMinutes(1));
+
+    private boolean stampArrival;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        stampArrival = Boolean.parseBoolean(String.valueOf(configs.get(ARRIVAL_HEADER_CONFIG)));
+    }
 
     @Override
     public long extract(ConsumerRecord<Object, Object> record, long partitionTime) {
+        if (stampArrival) {
+            stampArrival(record);
+        }
         try {
-            // Parsuj JSON z wartości rekordu
-            String jsonValue = (String) record.value();
-            JsonNode jsonNode = objectMapper.readTree(jsonValue);
-
-            // Wyciągnij pole "Date"
-            String dateStr = jsonNode.get("Date").asText();
+            long timestamp = eventTimeOf(record.value());
+            if (timestamp == CrimeDateParser.INVALID_TIME) {
+                AppCounters.timestampFallback();
+                return fallbackTime(partitionTime);
+            }
+            return timestamp;
 
-            // Sparsuj datę do LocalDateTime
-            LocalDateTime dateTime = parseDateTime(dateStr);
+        } catch (Exception e) {
+            AppCounters.timestampFallback();
+            LOG.log("Błąd ekstraktowania timestamp z rekordu " + record.topic() + "-" + record.partition() + "@" +
+                    record.offset() + ", używam partitionTime " + partitionTime + ": " + e.getMessage());
+            return fallbackTime(partitionTime);
+        }
+    }
 
-            // Konwertuj do epoch milliseconds (UTC)
-            long timestamp = dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    /**
+     * Czas partycji, a przed pierwszym rekordem partycji (-1) zero. Nie timestamp wiadomości - przy
+     * odtwarzaniu historii to czas wysyłki, który przesunąłby czas strumienia i zamknął wszystkie okna.
+     */
+    private static long fallbackTime(long partitionTime) {
+        return Math.max(partitionTime, 0L);
+    }
 
-            // System.out.println("Extracted timestamp: " + dateStr + " -> " + timestamp + " (" + dateTime + ")");
-            return timestamp;
+    /**
+     * Tylko przy pierwszym odczycie - rekordy z tematów repartycji mają już nagłówek z wejścia,
+     * a ich własny znacznik czasu to czas zdarzenia.
+     */
+    private static void stampArrival(ConsumerRecord<Object, Object> record) {
+        Headers headers = record.headers();
+        if (record.timestamp() >= 0 && headers.lastHeader(EmitLatencyProcessor.ARRIVAL_HEADER) == null) {
+            headers.add(EmitLatencyProcessor.ARRIVAL_HEADER, EmitLatencyProcessor.encodeArrival(record.timestamp()));
+        }
+    }
 
-        } catch (Exception e) {
-            System.err.println("Błąd ekstraktowania timestamp z rekordu: " + e.getMessage());
-            System.err.println("Używam partitionTime: " + partitionTime);
-            return partitionTime; // Fallback na timestamp wiadomości Kafka
+    private static long eventTimeOf(Object value) throws IOException {
+        if (value instanceof CrimeRecord) {
+            // Wynik parsowania zostaje zapamiętany na rekordzie i użyty ponownie w agregacjach
+            return ((CrimeRecord) value).getEventTimeMillis();
         }
+        if (value instanceof byte[]) {
+            try (JsonParser parser = JSON_FACTORY.createParser((byte[]) value)) {
+                return CrimeDateParser.parseEpochMillis(readDateField(parser));
+            }
+        }
+        if (value instanceof String) {
+            try (JsonParser parser = JSON_FACTORY.createParser((String) value)) {
+                return CrimeDateParser.parseEpochMillis(readDateField(parser));
+            }
+        }
+        throw new IllegalArgumentException("Unsupported record value type: " +
+                (value == null ? "null" : value.getClass().getName()));
     }
 
-    private LocalDateTime parseDateTime(String dateStr) {
-        try {
-            return LocalDateTime.parse(dateStr, ISO_FORMATTER);
-        } catch (Exception e) {
-                System.err.println("Nie można sparsować daty: " + dateStr);
-                return LocalDateTime.now();
+    /**
+     * Przechodzi po tokenach obiektu najwyższego poziomu aż do pola "Date",
+     * pomijając zagnieżdżone struktury bez ich materializacji.
+     */
+    static String readDateField(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Expected JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (DATE_FIELD.equals(name)) {
+                return token == JsonToken.VALUE_STRING ? parser.getText() : null;
+            }
+            parser.skipChildren();
         }
+        throw new IOException("Missing \"" + DATE_FIELD + "\" field");
     }
 }
@@ -0,0 +1,158 @@
+package com.chicago.crimes.iucr;
+
+import com.chicago.crimes.model.IucrCode;
+import com.chicago.crimes.serde.JsonSerde;
+import com.chicago.crimes.utils.CommandLineOptions;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.TopicConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Publikuje kody IUCR z pliku CSV na skompaktowany topic czytany przez aplikację strumieniową.
+ * Wysyłane są tylko zmienione wpisy, a kody usunięte z pliku dostają tombstone. Identyfikatory
+ * kategorii już obecnych na topicu są zachowywane, nowe kategorie dostają kolejne wolne numery -
+ * dzięki temu klucze stanu oparte na categoryId pozostają ważne po aktualizacji słownika.
+ */
+public class IucrCodesPublisher {
+    public static final String DEFAULT_TOPIC = "iucr-codes";
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = CommandLineOptions.parse(args);
+        if (cli.positionalCount() < 2) {
+            System.err.println("Usage: java IucrCodesPublisher <bootstrap-servers> <iucr-csv-path> [--topic=" + DEFAULT_TOPIC + "]");
+            System.exit(1);
+        }
+
+        String bootstrapServers = cli.positional(0);
+        String csvPath = cli.positional(1);
+        String topic = cli.get("topic", DEFAULT_TOPIC);
+
+        createTopicIfMissing(bootstrapServers, topic);
+
+        Map<String, IucrCode> published = readTopic(bootstrapServers, topic);
+        System.out.println("Na topicu " + topic + " jest " + published.size() + " kodów IUCR");
+
+        List<IucrCode> codes = IucrDictionary.readCsv(Paths.get(csvPath));
+        assignCategoryIds(codes, published.values());
+
+        Properties props = new Properties();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+
+        int changed = 0;
+        int removed = 0;
+        try (KafkaProducer<String, IucrCode> producer = new KafkaProducer<>(props,
+                new StringSerializer(), new JsonSerde.JsonSerializer<>())) {
+            Set<String> current = new HashSet<>();
+            for (IucrCode code : codes) {
+                current.add(code.getIucr());
+                if (!code.equals(published.get(code.getIucr()))) {
+                    producer.send(new ProducerRecord<>(topic, code.getIucr(), code));
+                    changed++;
+                }
+            }
+            for (String iucr : published.keySet()) {
+                if (!current.contains(iucr)) {
+                    producer.send(new ProducerRecord<>(topic, iucr, null));
+                    removed++;
+                }
+            }
+            producer.flush();
+        }
+
+        System.out.println("Opublikowano " + changed + " zmienionych kodów, usunięto " + removed +
+                " (plik: " + codes.size() + " kodów)");
+    }
+
+    /**
+     * Nadaje categoryId: istniejące z topicu, nowe kategorie od największego użytego + 1.
+     */
+    static void assignCategoryIds(List<IucrCode> codes, Collection<IucrCode> published) {
+        Map<String, Integer> ids = new HashMap<>();
+        int maxId = IucrDictionary.UNKNOWN_CATEGORY;
+        for (IucrCode code : published) {
+            if (code.getCategoryId() > IucrDictionary.UNKNOWN_CATEGORY) {
+                ids.putIfAbsent(code.getPrimaryDescription(), code.getCategoryId());
+                maxId = Math.max(maxId, code.getCategoryId());
+            }
+        }
+        for (IucrCode code : codes) {
+            Integer id = ids.get(code.getPrimaryDescription());
+            if (id == null) {
+                id = ++maxId;
+                ids.put(code.getPrimaryDescription(), id);
+            }
+            code.setCategoryId(id);
+        }
+    }
+
+    private static void createTopicIfMissing(String bootstrapServers, String topic) throws Exception {
+        Properties props = new Properties();
+        props.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        try (Admin admin = Admin.create(props)) {
+            if (admin.listTopics().names().get().contains(topic)) {
+                return;
+            }
+            // Jedna partycja: słownik jest mały, a globalny magazyn i tak czyta cały topic
+            NewTopic newTopic = new NewTopic(topic, Optional.of(1), Optional.empty())
+                    .configs(Map.of(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT));
+            admin.createTopics(List.of(newTopic)).all().get();
+            System.out.println("Utworzono skompaktowany topic " + topic);
+        }
+    }
+
+    /**
+     * Czyta bieżący stan topicu (ostatnia wartość dla każdego klucza) od początku do końca.
+     */
+    private static Map<String, IucrCode> readTopic(String bootstrapServers, String topic) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        Map<String, IucrCode> state = new HashMap<>();
+        try (KafkaConsumer<String, IucrCode> consumer = new KafkaConsumer<>(props,
+                new StringDeserializer(), new JsonSerde.JsonDeserializer<>(IucrCode.class))) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : consumer.partitionsFor(topic)) {
+                partitions.add(new TopicPartition(topic, info.partition()));
+            }
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+
+            while (!reachedEnd(consumer, endOffsets)) {
+                for (ConsumerRecord<String, IucrCode> record : consumer.poll(Duration.ofMillis(500))) {
+                    if (record.value() == null) {
+                        state.remove(record.key());
+                    } else {
+                        state.put(record.key(), record.value());
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    private static boolean reachedEnd(KafkaConsumer<?, ?> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
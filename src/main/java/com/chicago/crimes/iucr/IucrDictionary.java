@@ -0,0 +1,286 @@
+package com.chicago.crimes.iucr;
+
+import com.chicago.crimes.model.IucrCode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Niezmienny słownik kodów IUCR. Kod w postaci trzech cyfr i cyfry albo wielkiej litery
+ * ("0486", "041A") jest zamieniany na indeks tablicy, więc wyszukiwanie nie liczy hashy Stringów.
+ * Jedno wyszukiwanie zwraca spakowany wpis z identyfikatorem kategorii (PRIMARY DESCRIPTION)
+ * i bitem FBI index. Nazwy kategorii są przechowywane raz, pod małymi liczbami całkowitymi.
+ *
+ * Instancja nie zmienia się po zbudowaniu, więc może być współdzielona przez wątki strumieni.
+ */
+public final class IucrDictionary {
+
+    /** Kategoria kodów nieobecnych w słowniku. */
+    public static final int UNKNOWN_CATEGORY = 0;
+    public static final String UNKNOWN_DESCRIPTION = "UNKNOWN";
+
+    public static final IucrDictionary EMPTY = new Builder().build();
+
+    // 1000 prefiksów cyfrowych x 36 możliwych ostatnich znaków (0-9, A-Z)
+    private static final int SLOTS = 1000 * 36;
+    private static final int FBI_INDEX_BIT = 1;
+
+    // Wpis = categoryId << 1 | bit FBI; 0 oznacza brak kodu (UNKNOWN, nie FBI)
+    private final int[] entries;
+    // Kody spoza układu tablicy (np. dłuższe niż 4 znaki) - w praktyce pusta
+    private final Map<String, Integer> overflow;
+    private final String[] categories;
+    private final int size;
+
+    private IucrDictionary(int[] entries, Map<String, Integer> overflow, String[] categories, int size) {
+        this.entries = entries;
+        this.overflow = overflow;
+        this.categories = categories;
+        this.size = size;
+    }
+
+    /**
+     * Wczytuje słownik z pliku CSV w formacie Chicago Police Department
+     * (IUCR, PRIMARY DESCRIPTION, SECONDARY DESCRIPTION, INDEX CODE), z obsługą pól w cudzysłowach.
+     */
+    public static IucrDictionary load(Path csvFile) throws IOException {
+        Builder builder = new Builder();
+        for (IucrCode code : readCsv(csvFile)) {
+            builder.add(code.getIucr(), code.getPrimaryDescription(), code.isFbiIndex());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Czyta wiersze pliku CSV z kodami IUCR (kody znormalizowane, pola bez białych znaków
+     * na brzegach, categoryId nieustawione).
+     */
+    public static List<IucrCode> readCsv(Path csvFile) throws IOException {
+        List<IucrCode> codes = new ArrayList<>();
+        CsvMapper mapper = new CsvMapper().enable(CsvParser.Feature.WRAP_AS_ARRAY);
+        try (Reader reader = Files.newBufferedReader(csvFile, StandardCharsets.UTF_8);
+             MappingIterator<String[]> rows = mapper.readerFor(String[].class).readValues(reader)) {
+            if (!rows.hasNext()) {
+                return codes;
+            }
+            String[] header = rows.next();
+            int codeColumn = columnIndex(header, "IUCR", 0);
+            int descriptionColumn = columnIndex(header, "PRIMARY DESCRIPTION", 1);
+            int secondaryColumn = columnIndex(header, "SECONDARY DESCRIPTION", 2);
+            int indexColumn = columnIndex(header, "INDEX CODE", 3);
+            int required = Math.max(Math.max(codeColumn, secondaryColumn), Math.max(descriptionColumn, indexColumn));
+
+            while (rows.hasNext()) {
+                String[] row = rows.next();
+                if (row.length <= required || row[codeColumn].trim().isEmpty()) {
+                    continue;
+                }
+                codes.add(new IucrCode(normalizeCode(row[codeColumn]), row[descriptionColumn].trim(),
+                        row[secondaryColumn].trim(), row[indexColumn].trim()));
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Normalizuje kod IUCR: kody numeryczne są dopełniane zerami do 4 cyfr ("486" -> "0486").
+     */
+    public static String normalizeCode(String iucr) {
+        String code = iucr.trim();
+        if (code.isEmpty() || code.length() >= 4) {
+            return code;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            if (code.charAt(i) < '0' || code.charAt(i) > '9') {
+                return code;
+            }
+        }
+        return "0000".substring(code.length()) + code;
+    }
+
+    /**
+     * @return spakowany wpis dla kodu: {@link #categoryId(int)} i {@link #isFbiIndex(int)}
+     */
+    public int lookup(String iucr) {
+        if (iucr == null) {
+            return 0;
+        }
+        int slot = slotOf(iucr);
+        if (slot >= 0) {
+            return entries[slot];
+        }
+        if (overflow.isEmpty()) {
+            return 0;
+        }
+        return overflow.getOrDefault(iucr, 0);
+    }
+
+    public static int categoryId(int entry) {
+        return entry >>> 1;
+    }
+
+    public static boolean isFbiIndex(int entry) {
+        return (entry & FBI_INDEX_BIT) != 0;
+    }
+
+    public String categoryName(int categoryId) {
+        return categoryId > 0 && categoryId < categories.length ? categories[categoryId] : UNKNOWN_DESCRIPTION;
+    }
+
+    public String primaryDescription(String iucr) {
+        return categories[categoryId(lookup(iucr))];
+    }
+
+    public boolean isFbiIndex(String iucr) {
+        return isFbiIndex(lookup(iucr));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int categoryCount() {
+        return categories.length - 1;
+    }
+
+    /**
+     * @return indeks w tablicy albo -1 dla kodu spoza układu 3 cyfry + cyfra/litera
+     */
+    private static int slotOf(String code) {
+        if (code.length() != 4) {
+            return -1;
+        }
+        int prefix = 0;
+        for (int i = 0; i < 3; i++) {
+            int digit = code.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            prefix = prefix * 10 + digit;
+        }
+        char last = code.charAt(3);
+        int suffix;
+        if (last >= '0' && last <= '9') {
+            suffix = last - '0';
+        } else if (last >= 'A' && last <= 'Z') {
+            suffix = 10 + last - 'A';
+        } else {
+            return -1;
+        }
+        return prefix * 36 + suffix;
+    }
+
+    private static int columnIndex(String[] header, String name, int defaultIndex) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return defaultIndex;
+    }
+
+    /**
+     * Buduje słownik. Identyfikatory kategorii są nadawane w kolejności pierwszego wystąpienia,
+     * chyba że zostały wcześniej ustalone przez {@link #category(String, int)}.
+     */
+    public static class Builder {
+        private final int[] entries = new int[SLOTS];
+        private final Map<String, Integer> overflow = new HashMap<>();
+        private final Map<String, Integer> categoryIds = new HashMap<>();
+        private final List<String> categories = new ArrayList<>(Collections.singletonList(UNKNOWN_DESCRIPTION));
+        private int size;
+
+        public Builder() {
+            categoryIds.put(UNKNOWN_DESCRIPTION, UNKNOWN_CATEGORY);
+        }
+
+        /**
+         * Rejestruje kategorię pod podanym identyfikatorem (np. odczytanym z istniejących danych).
+         */
+        public Builder category(String name, int id) {
+            if (id <= UNKNOWN_CATEGORY) {
+                throw new IllegalArgumentException("Category id must be positive: " + id);
+            }
+            while (categories.size() <= id) {
+                categories.add(null);
+            }
+            String existing = categories.get(id);
+            if (existing != null && !existing.equals(name)) {
+                throw new IllegalArgumentException("Category id " + id + " already used by " + existing);
+            }
+            categories.set(id, name);
+            categoryIds.put(name, id);
+            return this;
+        }
+
+        /**
+         * @return identyfikator kategorii, nadawany przy pierwszym użyciu nazwy
+         */
+        public int categoryId(String name) {
+            Integer id = categoryIds.get(name);
+            if (id == null) {
+                id = categories.size();
+                categories.add(name);
+                categoryIds.put(name, id);
+            }
+            return id;
+        }
+
+        public Builder add(String iucr, String primaryDescription, boolean fbiIndex) {
+            String code = normalizeCode(iucr);
+            if (code.isEmpty()) {
+                return this;
+            }
+            int entry = categoryId(primaryDescription.trim()) << 1 | (fbiIndex ? FBI_INDEX_BIT : 0);
+            int slot = slotOf(code);
+            boolean added;
+            if (slot >= 0) {
+                added = entries[slot] == 0;
+                entries[slot] = entry;
+            } else {
+                added = overflow.put(code, entry) == null;
+            }
+            if (added) {
+                size++;
+            }
+            return this;
+        }
+
+        public Builder remove(String iucr) {
+            String code = normalizeCode(iucr);
+            int slot = slotOf(code);
+            boolean removed;
+            if (slot >= 0) {
+                removed = entries[slot] != 0;
+                entries[slot] = 0;
+            } else {
+                removed = overflow.remove(code) != null;
+            }
+            if (removed) {
+                size--;
+            }
+            return this;
+        }
+
+        public IucrDictionary build() {
+            String[] names = categories.toArray(new String[0]);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == null) {
+                    names[i] = UNKNOWN_DESCRIPTION;
+                }
+            }
+            return new IucrDictionary(entries.clone(), new HashMap<>(overflow), names, size);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.chicago.crimes.iucr;
+
+import com.chicago.crimes.model.IucrCode;
+import com.chicago.crimes.serde.JsonSerde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.processor.WallclockTimestampExtractor;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+
+import java.util.function.Consumer;
+
+/**
+ * Procesor globalnego magazynu z kodami IUCR. Magazyn jest odtwarzany ze skompaktowanego topicu
+ * przy starcie (init() buduje z niego słownik), a każda późniejsza zmiana na topicu tworzy nową
+ * niezmienną instancję IucrDictionary przekazywaną do słuchacza - bez restartu aplikacji.
+ */
+public class IucrDictionaryUpdater implements Processor<String, IucrCode, Void, Void> {
+
+    public static final String STORE_NAME = "iucr-codes-store";
+
+    private final Consumer<IucrDictionary> listener;
+    private KeyValueStore<String, IucrCode> store;
+    private IucrDictionary.Builder builder;
+
+    public IucrDictionaryUpdater(Consumer<IucrDictionary> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Dołącza topic z kodami IUCR do topologii jako globalny magazyn (czytany w całości przez każdą instancję).
+     */
+    public static void addGlobalStore(StreamsBuilder streamsBuilder, String topic, Consumer<IucrDictionary> listener) {
+        streamsBuilder.addGlobalStore(
+                Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(STORE_NAME),
+                                Serdes.String(), new JsonSerde<>(IucrCode.class))
+                        .withLoggingDisabled(),
+                topic,
+                // Kody IUCR nie mają czasu zdarzenia - bez tego użyty zostałby domyślny CrimeTimestampExtractor
+                Consumed.with(Serdes.String(), new JsonSerde<>(IucrCode.class))
+                        .withTimestampExtractor(new WallclockTimestampExtractor()),
+                () -> new IucrDictionaryUpdater(listener));
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        store = context.getStateStore(STORE_NAME);
+        builder = new IucrDictionary.Builder();
+        try (KeyValueIterator<String, IucrCode> all = store.all()) {
+            while (all.hasNext()) {
+                KeyValue<String, IucrCode> entry = all.next();
+                apply(entry.key, entry.value);
+            }
+        }
+        publish();
+    }
+
+    @Override
+    public void process(Record<String, IucrCode> record) {
+        if (record.key() == null) {
+            return;
+        }
+        if (record.value() == null) {
+            store.delete(record.key());
+        } else {
+            store.put(record.key(), record.value());
+        }
+        apply(record.key(), record.value());
+        publish();
+    }
+
+    private void apply(String iucr, IucrCode code) {
+        if (code == null) {
+            builder.remove(iucr);
+            return;
+        }
+        try {
+            if (code.getCategoryId() > 0) {
+                builder.category(code.getPrimaryDescription(), code.getCategoryId());
+            }
+            builder.add(iucr, code.getPrimaryDescription(), code.isFbiIndex());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Pomijam kod IUCR " + iucr + ": " + e.getMessage());
+        }
+    }
+
+    // Kopiowanie przy zapisie: wątki strumieni widzą zawsze spójną, niezmienną instancję
+    private void publish() {
+        listener.accept(builder.build());
+    }
+}
@@ -0,0 +1,95 @@
+package com.chicago.crimes.metrics;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.MeasurableStat;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.streams.StreamsMetrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Liczniki zdarzeń zachodzących poza procesorami (ekstraktor czasu, obsługa błędów deserializacji),
+ * gdzie nie ma dostępu do StreamsMetrics. Procesory rejestrują je jako metryki Kafka Streams
+ * (grupa {@link #GROUP}), więc są widoczne w KafkaStreams.metrics() razem z pozostałymi.
+ */
+public final class AppCounters {
+
+    public static final String GROUP = "chicago-crimes-metrics";
+
+    private static final LongAdder TIMESTAMP_FALLBACKS = new LongAdder();
+    private static final LongAdder PARSE_FAILURES = new LongAdder();
+    private static final LongAdder LATE_RECORDS = new LongAdder();
+    private static final LongAdder MIS_KEYED_RECORDS = new LongAdder();
+    private static final Map<DeadLetterQueue.Reason, LongAdder> DEAD_LETTERS = new EnumMap<>(DeadLetterQueue.Reason.class);
+
+    static {
+        for (DeadLetterQueue.Reason reason : DeadLetterQueue.Reason.values()) {
+            DEAD_LETTERS.put(reason, new LongAdder());
+        }
+    }
+
+    private AppCounters() {}
+
+    /** Rekord bez poprawnej daty - użyto czasu partycji. */
+    public static void timestampFallback() {
+        TIMESTAMP_FALLBACKS.increment();
+    }
+
+    /** Wartość wejściowa, której nie udało się zdeserializować. */
+    public static void parseFailure() {
+        PARSE_FAILURES.increment();
+    }
+
+    /** Spóźniony rekord dla zamkniętego miesiąca albo okna, pominięty przez procesor. */
+    public static void lateRecord() {
+        LATE_RECORDS.increment();
+    }
+
+    /** Rekord z kluczem innym niż dzielnica, pominięty przy --partitioning=district. */
+    public static void misKeyedRecord() {
+        MIS_KEYED_RECORDS.increment();
+    }
+
+    /** Rekord skierowany do tematu martwych rekordów. */
+    public static void deadLettered(DeadLetterQueue.Reason reason) {
+        DEAD_LETTERS.get(reason).increment();
+    }
+
+    /**
+     * Rejestruje liczniki w rejestrze metryk aplikacji - kolejne wywołania nic nie zmieniają.
+     */
+    static void register(StreamsMetrics metrics) {
+        Sensor sensor = metrics.addSensor("chicago-crimes-input-errors", Sensor.RecordingLevel.INFO);
+        sensor.add(new MetricName("timestamp-fallback-total", GROUP,
+                "Rekordy, dla których użyto czasu partycji zamiast pola Date", Map.of()), gauge(TIMESTAMP_FALLBACKS));
+        sensor.add(new MetricName("parse-failure-total", GROUP,
+                "Wartości wejściowe pominięte z powodu błędu deserializacji", Map.of()), gauge(PARSE_FAILURES));
+        sensor.add(new MetricName("late-record-total", GROUP,
+                "Spóźnione rekordy pominięte dla zamkniętych miesięcy i okien", Map.of()), gauge(LATE_RECORDS));
+        sensor.add(new MetricName("mis-keyed-record-total", GROUP,
+                "Rekordy z kluczem innym niż dzielnica pominięte przy --partitioning=district", Map.of()),
+                gauge(MIS_KEYED_RECORDS));
+        for (Map.Entry<DeadLetterQueue.Reason, LongAdder> entry : DEAD_LETTERS.entrySet()) {
+            sensor.add(new MetricName("dead-letter-" + entry.getKey().metricName() + "-total", GROUP,
+                    "Rekordy skierowane do tematu martwych rekordów: " + entry.getKey().metricName(), Map.of()),
+                    gauge(entry.getValue()));
+        }
+    }
+
+    private static MeasurableStat gauge(LongAdder counter) {
+        return new MeasurableStat() {
+            @Override
+            public void record(MetricConfig config, double value, long timeMs) {
+                // wartość pochodzi z licznika, nie z sensora
+            }
+
+            @Override
+            public double measure(MetricConfig config, long now) {
+                return counter.sum();
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package com.chicago.crimes.metrics;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.streams.errors.DeserializationExceptionHandler;
+import org.apache.kafka.streams.processor.ProcessorContext;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Pomija rekordy, których nie udało się zdeserializować: liczy je (parse-failure-total) i loguje tylko próbkę.
+ * Wartości crimes-input tu nie trafiają (LenientCrimeRecordSerde nie rzuca wyjątków), więc do tematu
+ * martwych rekordów kieruje je topologia - tutaj zostają tylko klucze i pozostałe tematy, np. słownik IUCR.
+ */
+public class CountingDeserializationExceptionHandler implements DeserializationExceptionHandler {
+
+    private static final SampledLogger LOG = new SampledLogger("deserialization", 10, Duration.ofMinutes(1));
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+
+    @Override
+    public DeserializationHandlerResponse handle(ProcessorContext context, ConsumerRecord<byte[], byte[]> record,
+                                                 Exception exception) {
+        AppCounters.parseFailure();
+        String error = exception.getCause() != null ? exception.getCause().getMessage() : exception.getMessage();
+        LOG.log("Pomijam rekord " + record.topic() + "-" + record.partition() + "@" + record.offset() +
+                " z błędem deserializacji: " + error);
+        return DeserializationHandlerResponse.CONTINUE;
+    }
+}
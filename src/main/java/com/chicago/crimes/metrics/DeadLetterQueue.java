@@ -0,0 +1,57 @@
+package com.chicago.crimes.metrics;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Temat martwych rekordów: odrzucone wejście trafia tam w postaci, w jakiej zostało odczytane,
+ * z przyczyną i źródłem (temat, partycja, offset) w nagłówkach. Zapis idzie przez ujście topologii
+ * (gałąź odrzuconych rekordów za {@link IngestMetricsProcessor}), więc producent zadania wysyła go
+ * przed zatwierdzeniem offsetów wejścia - błąd zapisu zatrzymuje zadanie jak przy pozostałych tematach
+ * zamiast gubić rekord po cichu.
+ */
+public final class DeadLetterQueue {
+
+    public static final String REASON_HEADER = "dead-letter-reason";
+    public static final String ERROR_HEADER = "dead-letter-error";
+    public static final String SOURCE_HEADER = "dead-letter-source";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    /**
+     * Klasy odrzuconych rekordów - każda ma własny licznik w {@link AppCounters}
+     */
+    public enum Reason {
+        PARSE_ERROR("parse-error"),
+        NULL_DISTRICT("null-district"),
+        INVALID_DATE("invalid-date");
+
+        private final String metricName;
+
+        Reason(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String metricName() {
+            return metricName;
+        }
+    }
+
+    private DeadLetterQueue() {}
+
+    /**
+     * Kopia nagłówków rekordu z dopisaną przyczyną, błędem (skróconym) i źródłem
+     */
+    static Headers headers(Headers original, Reason reason, String error, String source) {
+        Headers headers = new RecordHeaders(original == null ? null : original.toArray());
+        headers.add(REASON_HEADER, reason.name().getBytes(StandardCharsets.UTF_8));
+        if (error != null) {
+            String truncated = error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+            headers.add(ERROR_HEADER, truncated.getBytes(StandardCharsets.UTF_8));
+        }
+        headers.add(SOURCE_HEADER, source.getBytes(StandardCharsets.UTF_8));
+        return headers;
+    }
+}
@@ -0,0 +1,69 @@
+package com.chicago.crimes.metrics;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ostatni krok przed zapisem do topicu wyjściowego: mierzy opóźnienie od przyjęcia rekordu
+ * wejściowego przez Kafkę (nagłówek {@link #ARRIVAL_HEADER} ustawiany przez ekstraktor czasu) do
+ * emisji wyniku i usuwa nagłówek z wiadomości wyjściowej. Sensor w grupie stream-emit-metrics:
+ * e2e-latency-avg/max (ms) oraz e2e-rate/total.
+ *
+ * Wyniki emitowane z punctuatora (zamknięcie miesiąca, bufor łączenia aktualizacji) nie mają
+ * rekordu wejściowego, więc nie są mierzone.
+ */
+public class EmitLatencyProcessor implements FixedKeyProcessor<String, byte[], byte[]> {
+
+    /** Znacznik czasu rekordu wejściowego (ms, big-endian) nadany przez producenta albo brokera. */
+    public static final String ARRIVAL_HEADER = "chicago-crimes-arrival-ms";
+
+    private final String topic;
+
+    private FixedKeyProcessorContext<String, byte[]> context;
+    private Sensor latency;
+
+    public EmitLatencyProcessor(String topic) {
+        this.topic = topic;
+    }
+
+    public static byte[] encodeArrival(long timestamp) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(timestamp).array();
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, byte[]> context) {
+        this.context = context;
+        latency = context.metrics().addLatencyRateTotalSensor("emit", topic + "-" + context.taskId(), "e2e",
+                Sensor.RecordingLevel.INFO);
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, byte[]> record) {
+        Header arrival = record.headers().lastHeader(ARRIVAL_HEADER);
+        if (arrival == null) {
+            context.forward(record);
+            return;
+        }
+        latency.record(System.currentTimeMillis() - ByteBuffer.wrap(arrival.value()).getLong());
+        // Nagłówki są współdzielone z innymi gałęziami tego samego rekordu - usuwany jest z kopii
+        Headers headers = new RecordHeaders();
+        for (Header header : record.headers()) {
+            if (!ARRIVAL_HEADER.equals(header.key())) {
+                headers.add(header);
+            }
+        }
+        context.forward(record.withHeaders(headers));
+    }
+
+    @Override
+    public void close() {
+        context.metrics().removeSensor(latency);
+    }
+}
@@ -0,0 +1,128 @@
+package com.chicago.crimes.metrics;
+
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.JsonSerde;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.StreamsMetrics;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessor;
+import org.apache.kafka.streams.processor.api.FixedKeyProcessorContext;
+import org.apache.kafka.streams.processor.api.FixedKeyRecord;
+import org.apache.kafka.streams.processor.api.RecordMetadata;
+
+import java.time.Duration;
+
+/**
+ * Pierwszy krok topologii: przepuszcza rekordy z dzielnicą i poprawną datą, a pozostałe liczy
+ * w sensorach (grupa stream-ingest-metrics): records-rate/total, dropped-parse-error-rate/total,
+ * dropped-null-district-rate/total i dropped-invalid-date-rate/total. Przy włączonym temacie martwych
+ * rekordów odrzucone rekordy są przekazywane dalej z przyczyną w nagłówkach ({@link DeadLetterQueue}) -
+ * topologia oddziela je przez {@link #rejectionOf(CrimeRecord)} i zapisuje jako {@link #deadLetterValue(CrimeRecord)};
+ * bez niego są pomijane.
+ */
+public class IngestMetricsProcessor implements FixedKeyProcessor<String, CrimeRecord, CrimeRecord> {
+
+    private static final String SCOPE = "ingest";
+    private static final SampledLogger LOG = new SampledLogger("ingest", 10, Duration.ofMinutes(1));
+    private static final Serializer<CrimeRecord> SERIALIZER = new JsonSerde.JsonSerializer<>();
+
+    private final boolean forwardRejected;
+
+    private FixedKeyProcessorContext<String, CrimeRecord> context;
+    private Sensor records;
+    private Sensor droppedParseError;
+    private Sensor droppedNullDistrict;
+    private Sensor droppedInvalidDate;
+
+    /**
+     * @param forwardRejected czy przekazywać odrzucone rekordy do gałęzi tematu martwych rekordów
+     */
+    public IngestMetricsProcessor(boolean forwardRejected) {
+        this.forwardRejected = forwardRejected;
+    }
+
+    /**
+     * @return przyczyna odrzucenia albo null dla poprawnego rekordu
+     */
+    public static DeadLetterQueue.Reason rejectionOf(CrimeRecord crime) {
+        if (crime != null && crime.isUnparseable()) {
+            return DeadLetterQueue.Reason.PARSE_ERROR;
+        }
+        if (crime == null || crime.getDistrict() == null) {
+            return DeadLetterQueue.Reason.NULL_DISTRICT;
+        }
+        if (!crime.hasValidDate()) {
+            return DeadLetterQueue.Reason.INVALID_DATE;
+        }
+        return null;
+    }
+
+    /**
+     * Wartość dla tematu martwych rekordów: niepoprawny JSON w postaci surowych bajtów, pozostałe jako JSON pól
+     */
+    public static byte[] deadLetterValue(CrimeRecord crime) {
+        if (crime != null && crime.isUnparseable()) {
+            return crime.getRawValue();
+        }
+        return SERIALIZER.serialize(null, crime);
+    }
+
+    @Override
+    public void init(FixedKeyProcessorContext<String, CrimeRecord> context) {
+        this.context = context;
+        StreamsMetrics metrics = context.metrics();
+        String entity = "crimes-input-" + context.taskId();
+        records = metrics.addRateTotalSensor(SCOPE, entity, "records", Sensor.RecordingLevel.INFO);
+        droppedParseError = metrics.addRateTotalSensor(SCOPE, entity, "dropped-parse-error",
+                Sensor.RecordingLevel.INFO);
+        droppedNullDistrict = metrics.addRateTotalSensor(SCOPE, entity, "dropped-null-district",
+                Sensor.RecordingLevel.INFO);
+        droppedInvalidDate = metrics.addRateTotalSensor(SCOPE, entity, "dropped-invalid-date",
+                Sensor.RecordingLevel.INFO);
+        AppCounters.register(metrics);
+    }
+
+    @Override
+    public void process(FixedKeyRecord<String, CrimeRecord> record) {
+        records.record();
+        CrimeRecord crime = record.value();
+        DeadLetterQueue.Reason reason = rejectionOf(crime);
+        if (reason == null) {
+            context.forward(record);
+            return;
+        }
+        String error = null;
+        switch (reason) {
+            case PARSE_ERROR:
+                droppedParseError.record();
+                AppCounters.parseFailure();
+                error = crime.getParseError();
+                break;
+            case NULL_DISTRICT:
+                droppedNullDistrict.record();
+                break;
+            case INVALID_DATE:
+                droppedInvalidDate.record();
+                error = "Unparseable Date: " + crime.getDate();
+                break;
+        }
+        RecordMetadata source = context.recordMetadata().orElse(null);
+        String location = source == null ? "?" : source.topic() + "-" + source.partition() + "@" + source.offset();
+        LOG.log("Pomijam rekord " + location + " (" + reason + ")" + (error == null ? "" : ": " + error));
+        if (forwardRejected) {
+            AppCounters.deadLettered(reason);
+            // Czas odrzucenia zamiast czasu zdarzenia - retencja tematu nie usuwa wtedy od razu rekordów z historii
+            context.forward(record.withHeaders(DeadLetterQueue.headers(record.headers(), reason, error, location))
+                    .withTimestamp(context.currentSystemTimeMs()));
+        }
+    }
+
+    @Override
+    public void close() {
+        StreamsMetrics metrics = context.metrics();
+        metrics.removeSensor(records);
+        metrics.removeSensor(droppedParseError);
+        metrics.removeSensor(droppedNullDistrict);
+        metrics.removeSensor(droppedInvalidDate);
+    }
+}
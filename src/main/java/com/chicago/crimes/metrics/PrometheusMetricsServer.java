@@ -0,0 +1,138 @@
+package com.chicago.crimes.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Endpoint GET /metrics w formacie tekstowym Prometheusa (wbudowany HttpServer z JDK).
+ * Publikuje wszystkie liczbowe metryki z rejestru Kafka Streams: wątki i zadania, magazyny
+ * (w tym właściwości RocksDB), bufory suppress, lag konsumenta per partycja oraz sensory aplikacji.
+ * Nazwa metryki to grupa i nazwa z podkreśleniami (np. stream_thread_metrics_process_rate),
+ * a tagi stają się etykietami.
+ *
+ * curl http://localhost:9464/metrics
+ */
+public class PrometheusMetricsServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Supplier<Map<MetricName, ? extends Metric>> metrics;
+
+    public PrometheusMetricsServer(int port, Supplier<Map<MetricName, ? extends Metric>> metrics) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("Metryki: http://localhost:" + server.getAddress().getPort() + "/metrics");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        byte[] body = render(metrics.get()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    static String render(Map<MetricName, ? extends Metric> metrics) {
+        // Prometheus wymaga, żeby próbki jednej metryki były zgrupowane pod jednym # TYPE
+        Map<String, List<String>> samples = new TreeMap<>();
+        for (Map.Entry<MetricName, ? extends Metric> entry : metrics.entrySet()) {
+            Object value = entry.getValue().metricValue();
+            if (!(value instanceof Number)) {
+                continue;
+            }
+            MetricName name = entry.getKey();
+            String metric = sanitize(name.group() + "_" + name.name());
+            samples.computeIfAbsent(metric, m -> new ArrayList<>())
+                    .add(metric + labels(name.tags()) + " " + format(((Number) value).doubleValue()));
+        }
+
+        StringBuilder out = new StringBuilder(64 * 1024);
+        for (Map.Entry<String, List<String>> entry : samples.entrySet()) {
+            String metric = entry.getKey();
+            out.append("# TYPE ").append(metric).append(metric.endsWith("_total") ? " counter\n" : " gauge\n");
+            for (String sample : entry.getValue()) {
+                out.append(sample).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private static String labels(Map<String, String> tags) {
+        if (tags.isEmpty()) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder("{");
+        for (Map.Entry<String, String> tag : new TreeMap<>(tags).entrySet()) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            out.append(sanitize(tag.getKey())).append("=\"");
+            String value = tag.getValue() == null ? "" : tag.getValue();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if (c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+        return out.append('}').toString();
+    }
+
+    private static String sanitize(String name) {
+        StringBuilder out = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || (i > 0 && c >= '0' && c <= '9');
+            out.append(valid ? c : '_');
+        }
+        return out.toString();
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,47 @@
+package com.chicago.crimes.metrics;
+
+import java.time.Duration;
+
+/**
+ * Ograniczone logowanie błędów z gorącej ścieżki: najwyżej perInterval komunikatów na przedział,
+ * pozostałe są tylko liczone i podsumowane jedną linią przy następnym komunikacie po upływie
+ * przedziału. Zalew błędnych rekordów nie spowalnia wątku synchronicznym zapisem na konsolę.
+ */
+public final class SampledLogger {
+
+    private final String name;
+    private final int perInterval;
+    private final long intervalMillis;
+
+    private long windowStart;
+    private int logged;
+    private long suppressed;
+
+    public SampledLogger(String name, int perInterval, Duration interval) {
+        this.name = name;
+        this.perInterval = perInterval;
+        this.intervalMillis = interval.toMillis();
+    }
+
+    public void log(String message) {
+        long now = System.currentTimeMillis();
+        long skipped = 0;
+        synchronized (this) {
+            if (now - windowStart >= intervalMillis) {
+                skipped = suppressed;
+                windowStart = now;
+                logged = 0;
+                suppressed = 0;
+            }
+            if (logged >= perInterval) {
+                suppressed++;
+                return;
+            }
+            logged++;
+        }
+        if (skipped > 0) {
+            System.err.println("[" + name + "] Pominięto " + skipped + " podobnych komunikatów");
+        }
+        System.err.println("[" + name + "] " + message);
+    }
+}
@@ -0,0 +1,99 @@
+package com.chicago.crimes.model;
+
+import java.util.Objects;
+
+/**
+ * Klucz agregacji miesięcznej: identyfikator kategorii IUCR (IucrDictionary) i zakodowany numer
+ * dzielnicy. Zastępuje klucz tekstowy "kategoria_dzielnica" - Stringi wyjściowe są budowane
+ * dopiero przy emisji wyników. Dzielnica, której nie da się zakodować liczbowo, ma identyfikator
+ * {@link #INVALID_DISTRICT} i jest przenoszona w kluczu jako tekst.
+ */
+public final class CategoryDistrictKey {
+    /** Wartość {@link #encodeDistrict(String)} dla dzielnicy, której nie da się zakodować. */
+    public static final int INVALID_DISTRICT = -1;
+
+    private static final int MAX_DIGITS = 7;
+    private static final int LENGTH_SHIFT = 24;
+
+    private final int categoryId;
+    private final int districtId;
+    // Tylko dla districtId == INVALID_DISTRICT
+    private final String district;
+
+    public CategoryDistrictKey(int categoryId, int districtId) {
+        this(categoryId, districtId, null);
+    }
+
+    /**
+     * @param district nazwa dzielnicy - zapamiętywana tylko dla {@link #INVALID_DISTRICT}
+     */
+    public CategoryDistrictKey(int categoryId, int districtId, String district) {
+        this.categoryId = categoryId;
+        this.districtId = districtId;
+        this.district = districtId == INVALID_DISTRICT ? Objects.requireNonNull(district, "district") : null;
+    }
+
+    public static CategoryDistrictKey of(int categoryId, String district) {
+        return new CategoryDistrictKey(categoryId, encodeDistrict(district), district);
+    }
+
+    /**
+     * Koduje numer dzielnicy złożony z 0-7 cyfr jako (liczba cyfr << 24) | wartość, więc
+     * "7" i "007" pozostają różnymi, odwracalnymi identyfikatorami.
+     *
+     * @return identyfikator albo {@link #INVALID_DISTRICT} dla wartości nienumerycznej
+     */
+    public static int encodeDistrict(String district) {
+        int length = district.length();
+        if (length > MAX_DIGITS) {
+            return INVALID_DISTRICT;
+        }
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = district.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_DISTRICT;
+            }
+            value = value * 10 + digit;
+        }
+        return length << LENGTH_SHIFT | value;
+    }
+
+    public static String decodeDistrict(int districtId) {
+        int length = districtId >>> LENGTH_SHIFT;
+        if (districtId < 0 || length > MAX_DIGITS) {
+            return null;
+        }
+        if (length == 0) {
+            return "";
+        }
+        String digits = Integer.toString(districtId & ((1 << LENGTH_SHIFT) - 1));
+        return digits.length() >= length ? digits : "0".repeat(length - digits.length()) + digits;
+    }
+
+    public int getCategoryId() { return categoryId; }
+    public int getDistrictId() { return districtId; }
+
+    public String getDistrict() {
+        return district != null ? district : decodeDistrict(districtId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CategoryDistrictKey)) return false;
+        CategoryDistrictKey other = (CategoryDistrictKey) o;
+        return categoryId == other.categoryId && districtId == other.districtId
+                && Objects.equals(district, other.district);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * categoryId + districtId) * 31 + Objects.hashCode(district);
+    }
+
+    @Override
+    public String toString() {
+        return categoryId + "/" + getDistrict();
+    }
+}
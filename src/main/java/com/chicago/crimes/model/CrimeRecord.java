@@ -1,9 +1,10 @@
 package com.chicago.crimes.model;
 
+import com.chicago.crimes.utils.CrimeDateParser;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
 
 public class CrimeRecord {
     @JsonProperty("ID")
@@ -33,6 +34,15 @@ public class CrimeRecord {
     @JsonProperty("Longitude")
     private Double longitude;
 
+    // Czas zdarzenia liczony leniwie z pola Date i zapamiętywany na rekordzie
+    private transient boolean eventTimeParsed;
+    private transient long eventTimeMillis;
+    private transient int yearMonthPacked;
+
+    // Wartość wejściowa, której nie udało się zdekodować (LenientCrimeRecordSerde) - rekord bez pól
+    private transient byte[] rawValue;
+    private transient String parseError;
+
     // Konstruktory
     public CrimeRecord() {}
 
@@ -50,12 +60,35 @@ public class CrimeRecord {
         this.longitude = longitude;
     }
 
+    /**
+     * Znacznik błędu deserializacji: zamiast wyjątku (logowanego przez Kafka Streams dla każdego rekordu)
+     * topologia dostaje rekord z surową wartością, który IngestMetricsProcessor kieruje do tematu martwych rekordów
+     */
+    public static CrimeRecord unparseable(byte[] rawValue, String parseError) {
+        CrimeRecord record = new CrimeRecord();
+        record.rawValue = rawValue;
+        record.parseError = parseError;
+        return record;
+    }
+
+    @JsonIgnore
+    public boolean isUnparseable() { return rawValue != null; }
+
+    @JsonIgnore
+    public byte[] getRawValue() { return rawValue; }
+
+    @JsonIgnore
+    public String getParseError() { return parseError; }
+
     // Gettery i settery
     public String getId() { return id; }
     public void setId(String id) { this.id = id; }
 
     public String getDate() { return date; }
-    public void setDate(String date) { this.date = date; }
+    public void setDate(String date) {
+        this.date = date;
+        this.eventTimeParsed = false;
+    }
 
     public String getIucr() { return iucr; }
     public void setIucr(String iucr) { this.iucr = iucr; }
@@ -78,16 +111,57 @@ public class CrimeRecord {
     public Double getLongitude() { return longitude; }
     public void setLongitude(Double longitude) { this.longitude = longitude; }
 
+    /**
+     * @return czas zdarzenia w ms od epoki (UTC) albo {@link CrimeDateParser#INVALID_TIME}
+     */
+    @JsonIgnore
+    public long getEventTimeMillis() {
+        ensureEventTimeParsed();
+        return eventTimeMillis;
+    }
+
+    /**
+     * @return rok * 100 + miesiąc albo {@link CrimeDateParser#INVALID_YEAR_MONTH}
+     */
+    @JsonIgnore
+    public int getYearMonthPacked() {
+        ensureEventTimeParsed();
+        return yearMonthPacked;
+    }
+
+    @JsonIgnore
+    public boolean hasValidDate() {
+        return getEventTimeMillis() != CrimeDateParser.INVALID_TIME;
+    }
+
+    /**
+     * @return data zdarzenia albo null, jeśli pole Date ma niepoprawny format
+     */
     @JsonIgnore
     public LocalDateTime getDateTime() {
-        try {
-            return LocalDateTime.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"));
-        } catch (Exception e) {
-            return LocalDateTime.now();
+        long millis = getEventTimeMillis();
+        if (millis == CrimeDateParser.INVALID_TIME) {
+            return null;
         }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
     }
+
+    /**
+     * @return "yyyy-MM" albo null, jeśli pole Date ma niepoprawny format
+     */
     @JsonIgnore
     public String getYearMonth() {
-        return getDateTime().format(DateTimeFormatter.ofPattern("yyyy-MM"));
+        return CrimeDateParser.formatYearMonth(getYearMonthPacked());
+    }
+
+    private void ensureEventTimeParsed() {
+        if (!eventTimeParsed) {
+            eventTimeMillis = CrimeDateParser.parseEpochMillis(date);
+            yearMonthPacked = eventTimeMillis == CrimeDateParser.INVALID_TIME
+                    ? CrimeDateParser.INVALID_YEAR_MONTH
+                    : CrimeDateParser.parseYearMonth(date);
+            eventTimeParsed = true;
+        }
     }
 }
@@ -0,0 +1,75 @@
+package com.chicago.crimes.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * Wpis słownika IUCR publikowany na skompaktowanym topicu (klucz = kod IUCR).
+ * categoryId jest stały dla danej kategorii (PRIMARY DESCRIPTION) między kolejnymi publikacjami.
+ */
+public class IucrCode {
+    @JsonProperty("iucr")
+    private String iucr;
+
+    @JsonProperty("primaryDescription")
+    private String primaryDescription;
+
+    @JsonProperty("secondaryDescription")
+    private String secondaryDescription;
+
+    @JsonProperty("indexCode")
+    private String indexCode;
+
+    @JsonProperty("categoryId")
+    private int categoryId;
+
+    // Konstruktory
+    public IucrCode() {}
+
+    public IucrCode(String iucr, String primaryDescription, String secondaryDescription, String indexCode) {
+        this.iucr = iucr;
+        this.primaryDescription = primaryDescription;
+        this.secondaryDescription = secondaryDescription;
+        this.indexCode = indexCode;
+    }
+
+    @JsonIgnore
+    public boolean isFbiIndex() {
+        return "I".equals(indexCode);
+    }
+
+    // Gettery i settery
+    public String getIucr() { return iucr; }
+    public void setIucr(String iucr) { this.iucr = iucr; }
+
+    public String getPrimaryDescription() { return primaryDescription; }
+    public void setPrimaryDescription(String primaryDescription) { this.primaryDescription = primaryDescription; }
+
+    public String getSecondaryDescription() { return secondaryDescription; }
+    public void setSecondaryDescription(String secondaryDescription) { this.secondaryDescription = secondaryDescription; }
+
+    public String getIndexCode() { return indexCode; }
+    public void setIndexCode(String indexCode) { this.indexCode = indexCode; }
+
+    public int getCategoryId() { return categoryId; }
+    public void setCategoryId(int categoryId) { this.categoryId = categoryId; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof IucrCode)) return false;
+        IucrCode other = (IucrCode) o;
+        return categoryId == other.categoryId
+                && Objects.equals(iucr, other.iucr)
+                && Objects.equals(primaryDescription, other.primaryDescription)
+                && Objects.equals(secondaryDescription, other.secondaryDescription)
+                && Objects.equals(indexCode, other.indexCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(iucr, primaryDescription, secondaryDescription, indexCode, categoryId);
+    }
+}
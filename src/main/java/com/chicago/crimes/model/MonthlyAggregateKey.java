@@ -0,0 +1,62 @@
+package com.chicago.crimes.model;
+
+import java.util.Objects;
+
+/**
+ * Klucz magazynu agregatów miesięcznych: spakowany rok-miesiąc (rok * 100 + miesiąc),
+ * identyfikator kategorii IUCR i zakodowana dzielnica (CategoryDistrictKey), z nazwą dzielnicy
+ * nienumerycznej. Rok-miesiąc jest pierwszy, więc klucze jednego miesiąca leżą obok siebie w magazynie.
+ */
+public final class MonthlyAggregateKey {
+    private final int yearMonth;
+    private final int categoryId;
+    private final int districtId;
+    // Tylko dla districtId == CategoryDistrictKey.INVALID_DISTRICT
+    private final String district;
+
+    public MonthlyAggregateKey(int yearMonth, int categoryId, int districtId) {
+        this(yearMonth, categoryId, districtId, null);
+    }
+
+    /**
+     * @param district nazwa dzielnicy - zapamiętywana tylko dla {@link CategoryDistrictKey#INVALID_DISTRICT}
+     */
+    public MonthlyAggregateKey(int yearMonth, int categoryId, int districtId, String district) {
+        this.yearMonth = yearMonth;
+        this.categoryId = categoryId;
+        this.districtId = districtId;
+        this.district = districtId == CategoryDistrictKey.INVALID_DISTRICT
+                ? Objects.requireNonNull(district, "district") : null;
+    }
+
+    public MonthlyAggregateKey(int yearMonth, CategoryDistrictKey key) {
+        this(yearMonth, key.getCategoryId(), key.getDistrictId(), key.getDistrict());
+    }
+
+    public int getYearMonth() { return yearMonth; }
+    public int getCategoryId() { return categoryId; }
+    public int getDistrictId() { return districtId; }
+
+    public String getDistrict() {
+        return district != null ? district : CategoryDistrictKey.decodeDistrict(districtId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MonthlyAggregateKey)) return false;
+        MonthlyAggregateKey other = (MonthlyAggregateKey) o;
+        return yearMonth == other.yearMonth && categoryId == other.categoryId && districtId == other.districtId
+                && Objects.equals(district, other.district);
+    }
+
+    @Override
+    public int hashCode() {
+        return ((31 * yearMonth + categoryId) * 31 + districtId) * 31 + Objects.hashCode(district);
+    }
+
+    @Override
+    public String toString() {
+        return yearMonth + "/" + categoryId + "/" + getDistrict();
+    }
+}
@@ -0,0 +1,23 @@
+package com.chicago.crimes.processor;
+
+import org.apache.kafka.streams.kstream.Window;
+
+/**
+ * Okno [start, end) emitowane przez procesory anomalii. Kafka Streams udostępnia publicznie tylko
+ * abstrakcyjne {@link Window} - TimeWindow jest klasą wewnętrzną.
+ */
+final class AnomalyWindow extends Window {
+
+    AnomalyWindow(long startMs, long endMs) {
+        super(startMs, endMs);
+    }
+
+    @Override
+    public boolean overlap(Window other) {
+        if (getClass() != other.getClass()) {
+            throw new IllegalArgumentException("Cannot compare windows of different type: " +
+                    other.getClass().getName());
+        }
+        return start() < other.end() && other.start() < end();
+    }
+}
@@ -0,0 +1,156 @@
+package com.chicago.crimes.processor;
+
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.SampledLogger;
+import com.chicago.crimes.model.CategoryDistrictKey;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.model.MonthlyAggregateKey;
+import com.chicago.crimes.serde.CompactSerdes;
+import com.chicago.crimes.utils.CrimeDateParser;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.DslKeyValueParams;
+import org.apache.kafka.streams.state.DslStoreSuppliers;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+/**
+ * Agregaty w miesiącach kalendarzowych (UTC): każdy rekord trafia do dokładnie jednego miesiąca
+ * według pola Date. Magazyn jest adresowany kluczem (rok-miesiąc, kategoria, dzielnica), a miesiąc
+ * zamyka się, gdy czas strumienia przekroczy jego koniec o grace. Punctuator usuwa zamknięte miesiące
+ * (w trybie C najpierw emitując ich wyniki końcowe); rekordy dla zamkniętych miesięcy są pomijane.
+ *
+ * W magazynie trzymane są same liczniki - opisy (rok-miesiąc, kategoria, dzielnica) są
+ * uzupełniane z klucza dopiero przy emisji.
+ */
+public class CalendarMonthProcessor implements Processor<CategoryDistrictKey, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> {
+
+    public static final String STORE_NAME = "monthly-aggregates";
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final SampledLogger LOG = new SampledLogger("calendar-month", 10, Duration.ofMinutes(1));
+    private static final Duration PUNCTUATE_INTERVAL = Duration.ofHours(1);
+
+    private final long graceMillis;
+    private final boolean emitOnMonthClose;
+    private final Predicate<CrimeRecord> fbiIndex;
+    private final IntFunction<String> categoryName;
+
+    private ProcessorContext<MonthlyAggregateKey, CrimeAggregate> context;
+    private KeyValueStore<MonthlyAggregateKey, CrimeAggregate> store;
+
+    public CalendarMonthProcessor(int graceDays, boolean emitOnMonthClose,
+                                  Predicate<CrimeRecord> fbiIndex, IntFunction<String> categoryName) {
+        this.graceMillis = graceDays * DAY_MS;
+        this.emitOnMonthClose = emitOnMonthClose;
+        this.fbiIndex = fbiIndex;
+        this.categoryName = categoryName;
+    }
+
+    /**
+     * @param storeType RocksDB albo magazyn w pamięci - jak magazyny DSL (--state-store)
+     */
+    public static ProcessorSupplier<CategoryDistrictKey, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> supplier(
+            int graceDays, boolean emitOnMonthClose, Predicate<CrimeRecord> fbiIndex, IntFunction<String> categoryName,
+            DslStoreSuppliers storeType) {
+        return new ProcessorSupplier<>() {
+            @Override
+            public Processor<CategoryDistrictKey, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> get() {
+                return new CalendarMonthProcessor(graceDays, emitOnMonthClose, fbiIndex, categoryName);
+            }
+
+            @Override
+            public Set<StoreBuilder<?>> stores() {
+                return Set.of(Stores.keyValueStoreBuilder(
+                        storeType.keyValueStore(new DslKeyValueParams(STORE_NAME, false)),
+                        CompactSerdes.monthlyAggregateKey(), CompactSerdes.crimeAggregate()));
+            }
+        };
+    }
+
+    @Override
+    public void init(ProcessorContext<MonthlyAggregateKey, CrimeAggregate> context) {
+        this.context = context;
+        this.store = context.getStateStore(STORE_NAME);
+        context.schedule(PUNCTUATE_INTERVAL, PunctuationType.STREAM_TIME, this::closeMonths);
+    }
+
+    @Override
+    public void process(Record<CategoryDistrictKey, CrimeRecord> record) {
+        CrimeRecord crime = record.value();
+        if (record.key() == null || crime == null) {
+            return;
+        }
+        int yearMonth = crime.getYearMonthPacked();
+        if (yearMonth == CrimeDateParser.INVALID_YEAR_MONTH) {
+            return;
+        }
+        if (isClosed(yearMonth, context.currentStreamTimeMs())) {
+            AppCounters.lateRecord();
+            LOG.log("Pomijam spóźniony rekord " + crime.getId() + " dla zamkniętego miesiąca " +
+                    CrimeDateParser.formatYearMonth(yearMonth));
+            return;
+        }
+
+        MonthlyAggregateKey key = new MonthlyAggregateKey(yearMonth, record.key());
+        CrimeAggregate aggregate = store.get(key);
+        if (aggregate == null) {
+            aggregate = new CrimeAggregate();
+        }
+        aggregate.update(crime, fbiIndex.test(crime));
+        store.put(key, aggregate);
+
+        if (!emitOnMonthClose) {
+            forward(key, aggregate, record.timestamp(), record.headers());
+        }
+    }
+
+    /**
+     * Klucze są uporządkowane po miesiącu, więc przegląd kończy się na pierwszym otwartym miesiącu.
+     */
+    private void closeMonths(long streamTime) {
+        List<MonthlyAggregateKey> closed = new ArrayList<>();
+        try (KeyValueIterator<MonthlyAggregateKey, CrimeAggregate> all = store.all()) {
+            while (all.hasNext()) {
+                KeyValue<MonthlyAggregateKey, CrimeAggregate> entry = all.next();
+                if (!isClosed(entry.key.getYearMonth(), streamTime)) {
+                    break;
+                }
+                if (emitOnMonthClose) {
+                    forward(entry.key, entry.value, streamTime, null);
+                }
+                closed.add(entry.key);
+            }
+        }
+        for (MonthlyAggregateKey key : closed) {
+            store.delete(key);
+        }
+    }
+
+    private boolean isClosed(int yearMonth, long streamTime) {
+        long monthEnd = CrimeDateParser.monthStartMillis(CrimeDateParser.nextYearMonth(yearMonth));
+        return streamTime >= monthEnd + graceMillis;
+    }
+
+    private void forward(MonthlyAggregateKey key, CrimeAggregate aggregate, long timestamp, Headers headers) {
+        aggregate.setYearMonth(CrimeDateParser.formatYearMonth(key.getYearMonth()));
+        aggregate.setPrimaryDescription(categoryName.apply(key.getCategoryId()));
+        aggregate.setDistrict(key.getDistrict());
+        context.forward(new Record<>(key, aggregate, timestamp, headers));
+    }
+}
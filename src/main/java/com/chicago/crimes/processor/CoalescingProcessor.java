@@ -0,0 +1,156 @@
+package com.chicago.crimes.processor;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Value;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsMetrics;
+import org.apache.kafka.streams.processor.Cancellable;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Łączy kolejne aktualizacje tego samego klucza wyjściowego: zapamiętuje tylko ostatnią wiadomość
+ * i wysyła bufor w całości co zadany interwał czasu zegarowego albo wcześniej, gdy liczba kluczy
+ * osiągnie limit. JDBC sink robi upsert po kluczu rekordu, więc tabela docelowa kończy w tym samym
+ * stanie, a liczba zapisów spada do jednego na klucz na interwał.
+ *
+ * Bufor to magazyn w pamięci z changelogiem - po restarcie niewysłane wiadomości są odtwarzane.
+ * Metryki (grupa stream-coalescing-metrics): input-rate/total, output-rate/total oraz
+ * coalescing-ratio, czyli liczba przyjętych aktualizacji na jedną wysłaną wiadomość.
+ */
+public class CoalescingProcessor implements Processor<String, byte[], String, byte[]> {
+
+    private static final String METRICS_SCOPE = "coalescing";
+    private static final String METRICS_GROUP = "stream-" + METRICS_SCOPE + "-metrics";
+
+    private final String storeName;
+    private final Duration interval;
+    private final int maxKeys;
+
+    private ProcessorContext<String, byte[]> context;
+    private KeyValueStore<String, byte[]> buffer;
+    private Cancellable punctuator;
+    private long bufferedKeys;
+
+    private Sensor inputSensor;
+    private Sensor outputSensor;
+    private Sensor ratioSensor;
+    private long inputTotal;
+    private long outputTotal;
+
+    public CoalescingProcessor(String storeName, Duration interval, int maxKeys) {
+        this.storeName = storeName;
+        this.interval = interval;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @param name prefiks nazwy magazynu bufora - musi być unikalny w topologii
+     */
+    public static ProcessorSupplier<String, byte[], String, byte[]> supplier(String name, Duration interval, int maxKeys) {
+        if (interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("Coalescing interval must be positive: " + interval);
+        }
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("Coalescing buffer limit must be positive: " + maxKeys);
+        }
+        String storeName = name + "-coalesce-buffer";
+        return new ProcessorSupplier<>() {
+            @Override
+            public Processor<String, byte[], String, byte[]> get() {
+                return new CoalescingProcessor(storeName, interval, maxKeys);
+            }
+
+            @Override
+            public Set<StoreBuilder<?>> stores() {
+                return Set.of(Stores.keyValueStoreBuilder(Stores.inMemoryKeyValueStore(storeName),
+                        Serdes.String(), Serdes.ByteArray()));
+            }
+        };
+    }
+
+    @Override
+    public void init(ProcessorContext<String, byte[]> context) {
+        this.context = context;
+        this.buffer = context.getStateStore(storeName);
+        // Magazyn w pamięci zna dokładną liczbę wpisów, także po odtworzeniu z changelogu
+        this.bufferedKeys = buffer.approximateNumEntries();
+        this.punctuator = context.schedule(interval, PunctuationType.WALL_CLOCK_TIME, timestamp -> flush());
+
+        StreamsMetrics metrics = context.metrics();
+        String entity = storeName + "-" + context.taskId();
+        inputSensor = metrics.addRateTotalSensor(METRICS_SCOPE, entity, "input", Sensor.RecordingLevel.INFO);
+        outputSensor = metrics.addRateTotalSensor(METRICS_SCOPE, entity, "output", Sensor.RecordingLevel.INFO);
+        ratioSensor = metrics.addSensor(entity + "-coalescing-ratio", Sensor.RecordingLevel.INFO);
+        ratioSensor.add(new MetricName("coalescing-ratio", METRICS_GROUP,
+                "Aktualizacje przyjęte na jedną wysłaną wiadomość",
+                Map.of("thread-id", Thread.currentThread().getName(), METRICS_SCOPE + "-id", entity)), new Value());
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        if (record.key() == null) {
+            context.forward(record);
+            return;
+        }
+        inputTotal++;
+        inputSensor.record();
+        if (buffer.get(record.key()) == null) {
+            bufferedKeys++;
+        }
+        buffer.put(record.key(), record.value());
+        // Wczesne opróżnienie przy zapełnionym buforze ogranicza pamięć przy dużej liczbie kluczy
+        if (bufferedKeys >= maxKeys) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        long timestamp = context.currentStreamTimeMs();
+        // Po restarcie z odtworzonym buforem czas strumienia jest nieznany (-1) aż do pierwszego rekordu
+        if (bufferedKeys == 0 || timestamp < 0) {
+            return;
+        }
+        List<String> sent = new ArrayList<>();
+        try (KeyValueIterator<String, byte[]> all = buffer.all()) {
+            while (all.hasNext()) {
+                KeyValue<String, byte[]> entry = all.next();
+                context.forward(new Record<>(entry.key, entry.value, timestamp));
+                outputSensor.record();
+                sent.add(entry.key);
+            }
+        }
+        for (String key : sent) {
+            buffer.delete(key);
+        }
+        bufferedKeys = 0;
+        outputTotal += sent.size();
+        ratioSensor.record((double) inputTotal / outputTotal);
+    }
+
+    @Override
+    public void close() {
+        if (punctuator != null) {
+            punctuator.cancel();
+        }
+        StreamsMetrics metrics = context.metrics();
+        metrics.removeSensor(inputSensor);
+        metrics.removeSensor(outputSensor);
+        metrics.removeSensor(ratioSensor);
+    }
+}
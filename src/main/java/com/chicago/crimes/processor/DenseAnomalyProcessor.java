@@ -0,0 +1,210 @@
+package com.chicago.crimes.processor;
+
+import com.chicago.crimes.ChicagoCrimesStreamsApp.DistrictCrimeCounts;
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.SampledLogger;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.CompactSerdes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.kstream.WindowedSerdes;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Okna rozłączne (tumbling) N-dniowe dla dzielnic liczone w tablicach long[]: dla każdego otwartego
+ * okna jedna tablica z parą liczników (total, fbiIndex) na dzielnicę. Wejście musi być
+ * partycjonowane po dzielnicy (klucz rekordu = dzielnica).
+ *
+ * Semantyka jak w TimeWindows.ofSizeAndGrace: rekord trafia do okna według swojego znacznika
+ * czasu, okno zamyka się, gdy czas strumienia minie jego koniec o grace, a rekordy dla zamkniętych
+ * okien są pomijane. Tryb A emituje liczniki po każdym rekordzie, tryb C - przy zamknięciu okna.
+ * Liczniki zmienionej dzielnicy trafiają przy każdym rekordzie do magazynu {@link #STORE_NAME} z cache
+ * ({@link CounterCheckpointStore}).
+ */
+public class DenseAnomalyProcessor implements Processor<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> {
+
+    public static final String STORE_NAME = "dense-anomaly-checkpoint";
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final SampledLogger LOG = new SampledLogger("dense-anomaly", 10, Duration.ofMinutes(1));
+
+    private final long sizeMillis;
+    private final long graceMillis;
+    private final boolean emitOnWindowClose;
+    private final Predicate<CrimeRecord> fbiIndex;
+
+    private ProcessorContext<Windowed<String>, DistrictCrimeCounts> context;
+    private KeyValueStore<Windowed<String>, DistrictCrimeCounts> checkpoints;
+
+    private final Map<String, Integer> districtSlots = new HashMap<>();
+    private String[] districtNames = new String[32];
+    private int districtCount;
+
+    // Początek okna -> liczniki; ostatnio używane okno i najbliższe zamknięcie bez boxingu na każdy rekord
+    private final TreeMap<Long, WindowCounters> windows = new TreeMap<>();
+    private long lastWindowStart = Long.MIN_VALUE;
+    private WindowCounters lastWindow;
+    private long nextClose = Long.MAX_VALUE;
+
+    public DenseAnomalyProcessor(int days, int graceDays, boolean emitOnWindowClose, Predicate<CrimeRecord> fbiIndex) {
+        this.sizeMillis = days * DAY_MS;
+        this.graceMillis = graceDays * DAY_MS;
+        this.emitOnWindowClose = emitOnWindowClose;
+        this.fbiIndex = fbiIndex;
+    }
+
+    public static ProcessorSupplier<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> supplier(
+            int days, int graceDays, boolean emitOnWindowClose, Predicate<CrimeRecord> fbiIndex) {
+        if (days <= 0) {
+            throw new IllegalArgumentException("Window length must be positive: " + days);
+        }
+        return new ProcessorSupplier<>() {
+            @Override
+            public Processor<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> get() {
+                return new DenseAnomalyProcessor(days, graceDays, emitOnWindowClose, fbiIndex);
+            }
+
+            @Override
+            public Set<StoreBuilder<?>> stores() {
+                return Set.of(CounterCheckpointStore.builder(STORE_NAME,
+                        WindowedSerdes.timeWindowedSerdeFrom(String.class, days * DAY_MS),
+                        CompactSerdes.districtCrimeCounts()));
+            }
+        };
+    }
+
+    @Override
+    public void init(ProcessorContext<Windowed<String>, DistrictCrimeCounts> context) {
+        this.context = context;
+        this.checkpoints = context.getStateStore(STORE_NAME);
+
+        for (KeyValue<Windowed<String>, DistrictCrimeCounts> entry : CounterCheckpointStore.entries(checkpoints)) {
+            int slot = districtSlot(entry.key.key());
+            long[] counts = window(entry.key.window().start()).counts(slot);
+            counts[slot * 2] = entry.value.getTotalCrimes();
+            counts[slot * 2 + 1] = entry.value.getFbiIndexCrimes();
+        }
+    }
+
+    @Override
+    public void process(Record<String, CrimeRecord> record) {
+        String district = record.key();
+        CrimeRecord crime = record.value();
+        if (district == null || crime == null) {
+            return;
+        }
+        long streamTime = context.currentStreamTimeMs();
+        if (streamTime >= nextClose) {
+            closeWindows(streamTime);
+        }
+        long windowStart = record.timestamp() - Math.floorMod(record.timestamp(), sizeMillis);
+        if (windowStart + sizeMillis + graceMillis <= streamTime) {
+            AppCounters.lateRecord();
+            LOG.log("Pomijam spóźniony rekord " + crime.getId() + " dzielnicy " + district +
+                    " dla zamkniętego okna " + Instant.ofEpochMilli(windowStart) + " - " +
+                    Instant.ofEpochMilli(windowStart + sizeMillis));
+            return;
+        }
+
+        int slot = districtSlot(district);
+        WindowCounters window = window(windowStart);
+        long[] counts = window.counts(slot);
+        counts[slot * 2]++;
+        if (fbiIndex.test(crime)) {
+            counts[slot * 2 + 1]++;
+        }
+
+        Windowed<String> key = windowedKey(windowStart, slot);
+        DistrictCrimeCounts value = new DistrictCrimeCounts(counts[slot * 2], counts[slot * 2 + 1]);
+        checkpoints.put(key, value);
+        if (!emitOnWindowClose) {
+            context.forward(new Record<>(key, value, record.timestamp(), record.headers()));
+        }
+    }
+
+    private void closeWindows(long streamTime) {
+        Iterator<Map.Entry<Long, WindowCounters>> it = windows.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, WindowCounters> entry = it.next();
+            long windowStart = entry.getKey();
+            if (windowStart + sizeMillis + graceMillis > streamTime) {
+                break;
+            }
+            long[] counts = entry.getValue().counts;
+            for (int slot = 0; slot < counts.length / 2; slot++) {
+                if (counts[slot * 2] == 0) {
+                    continue;
+                }
+                Windowed<String> key = windowedKey(windowStart, slot);
+                if (emitOnWindowClose) {
+                    context.forward(new Record<>(key,
+                            new DistrictCrimeCounts(counts[slot * 2], counts[slot * 2 + 1]), streamTime, null));
+                }
+                checkpoints.delete(key);
+            }
+            it.remove();
+        }
+        lastWindowStart = Long.MIN_VALUE;
+        lastWindow = null;
+        nextClose = windows.isEmpty() ? Long.MAX_VALUE : windows.firstKey() + sizeMillis + graceMillis;
+    }
+
+    private WindowCounters window(long windowStart) {
+        if (windowStart != lastWindowStart) {
+            lastWindow = windows.get(windowStart);
+            if (lastWindow == null) {
+                lastWindow = new WindowCounters();
+                windows.put(windowStart, lastWindow);
+                nextClose = Math.min(nextClose, windowStart + sizeMillis + graceMillis);
+            }
+            lastWindowStart = windowStart;
+        }
+        return lastWindow;
+    }
+
+    private int districtSlot(String district) {
+        Integer slot = districtSlots.get(district);
+        if (slot != null) {
+            return slot;
+        }
+        if (districtCount == districtNames.length) {
+            districtNames = Arrays.copyOf(districtNames, districtCount * 2);
+        }
+        districtNames[districtCount] = district;
+        districtSlots.put(district, districtCount);
+        return districtCount++;
+    }
+
+    private Windowed<String> windowedKey(long windowStart, int slot) {
+        return new Windowed<>(districtNames[slot], new AnomalyWindow(windowStart, windowStart + sizeMillis));
+    }
+
+    /**
+     * Liczniki jednego okna: para (total, fbiIndex) na dzielnicę.
+     */
+    private static class WindowCounters {
+        long[] counts = new long[64];
+
+        long[] counts(int slot) {
+            if (slot * 2 + 1 >= counts.length) {
+                counts = Arrays.copyOf(counts, Math.max(slot * 2 + 2, counts.length * 2));
+            }
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.chicago.crimes.processor;
+
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.SampledLogger;
+import com.chicago.crimes.model.CategoryDistrictKey;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.model.MonthlyAggregateKey;
+import com.chicago.crimes.serde.CompactSerdes;
+import com.chicago.crimes.utils.CrimeDateParser;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Agregaty w miesiącach kalendarzowych liczone w tablicach long[] zamiast w magazynie klucz-wartość.
+ * Dla każdego otwartego miesiąca trzymany jest wiersz liczników na dzielnicę, indeksowany
+ * kategorią IUCR (cztery liczniki na kategorię). Wejście musi być partycjonowane po dzielnicy
+ * (klucz rekordu = dzielnica).
+ *
+ * Semantyka jak w {@link CalendarMonthProcessor}: miesiąc zamyka się, gdy czas strumienia
+ * przekroczy jego koniec o grace, tryb A emituje agregat po każdym rekordzie, tryb C - wyniki
+ * końcowe przy zamknięciu. Zmieniona komórka trafia przy każdym rekordzie do magazynu {@link #STORE_NAME}
+ * z cache ({@link CounterCheckpointStore}), a z jego changelogu liczniki są odtwarzane po restarcie.
+ */
+public class DenseMonthlyProcessor implements Processor<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> {
+
+    public static final String STORE_NAME = "dense-monthly-checkpoint";
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final SampledLogger LOG = new SampledLogger("dense-monthly", 10, Duration.ofMinutes(1));
+    // Liczniki jednej kategorii: total, arrest, domestic, fbiIndex
+    private static final int FIELDS = 4;
+
+    private final long graceMillis;
+    private final boolean emitOnMonthClose;
+    private final Predicate<CrimeRecord> fbiIndex;
+    private final ToIntFunction<CrimeRecord> categoryOf;
+    private final IntFunction<String> categoryName;
+
+    private ProcessorContext<MonthlyAggregateKey, CrimeAggregate> context;
+    private KeyValueStore<MonthlyAggregateKey, CrimeAggregate> checkpoints;
+
+    // Dzielnica -> indeks wiersza; nienumeryczna ma identyfikator INVALID_DISTRICT i klucz z nazwą
+    private final Map<String, Integer> districtSlots = new HashMap<>();
+    private String[] districtNames = new String[32];
+    private int[] districtIds = new int[32];
+    private int districtCount;
+
+    private final TreeMap<Integer, MonthCounters> months = new TreeMap<>();
+    // Ostatnio używany miesiąc i najbliższy czas zamknięcia - bez boxingu i iteracji na każdy rekord
+    private int lastYearMonth = CrimeDateParser.INVALID_YEAR_MONTH;
+    private MonthCounters lastMonth;
+    private long nextClose = Long.MAX_VALUE;
+
+    public DenseMonthlyProcessor(int graceDays, boolean emitOnMonthClose, Predicate<CrimeRecord> fbiIndex,
+                                 ToIntFunction<CrimeRecord> categoryOf, IntFunction<String> categoryName) {
+        this.graceMillis = graceDays * DAY_MS;
+        this.emitOnMonthClose = emitOnMonthClose;
+        this.fbiIndex = fbiIndex;
+        this.categoryOf = categoryOf;
+        this.categoryName = categoryName;
+    }
+
+    public static ProcessorSupplier<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> supplier(
+            int graceDays, boolean emitOnMonthClose, Predicate<CrimeRecord> fbiIndex,
+            ToIntFunction<CrimeRecord> categoryOf, IntFunction<String> categoryName) {
+        return new ProcessorSupplier<>() {
+            @Override
+            public Processor<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> get() {
+                return new DenseMonthlyProcessor(graceDays, emitOnMonthClose, fbiIndex, categoryOf, categoryName);
+            }
+
+            @Override
+            public Set<StoreBuilder<?>> stores() {
+                return Set.of(CounterCheckpointStore.builder(STORE_NAME,
+                        CompactSerdes.monthlyAggregateKey(), CompactSerdes.crimeAggregate()));
+            }
+        };
+    }
+
+    @Override
+    public void init(ProcessorContext<MonthlyAggregateKey, CrimeAggregate> context) {
+        this.context = context;
+        this.checkpoints = context.getStateStore(STORE_NAME);
+
+        for (KeyValue<MonthlyAggregateKey, CrimeAggregate> entry : CounterCheckpointStore.entries(checkpoints)) {
+            MonthlyAggregateKey key = entry.key;
+            int slot = districtSlot(key.getDistrict());
+            long[] row = month(key.getYearMonth()).row(slot, key.getCategoryId());
+            int base = key.getCategoryId() * FIELDS;
+            row[base] = entry.value.getTotalCrimes();
+            row[base + 1] = entry.value.getArrestCount();
+            row[base + 2] = entry.value.getDomesticCount();
+            row[base + 3] = entry.value.getFbiIndexCount();
+        }
+    }
+
+    @Override
+    public void process(Record<String, CrimeRecord> record) {
+        String district = record.key();
+        CrimeRecord crime = record.value();
+        if (district == null || crime == null) {
+            return;
+        }
+        int yearMonth = crime.getYearMonthPacked();
+        if (yearMonth == CrimeDateParser.INVALID_YEAR_MONTH) {
+            return;
+        }
+        long streamTime = context.currentStreamTimeMs();
+        if (streamTime >= nextClose) {
+            closeMonths(streamTime);
+        }
+        if (isClosed(yearMonth, streamTime)) {
+            AppCounters.lateRecord();
+            LOG.log("Pomijam spóźniony rekord " + crime.getId() + " dla zamkniętego miesiąca " +
+                    CrimeDateParser.formatYearMonth(yearMonth));
+            return;
+        }
+        int slot = districtSlot(district);
+
+        int category = categoryOf.applyAsInt(crime);
+        MonthCounters month = month(yearMonth);
+        long[] row = month.row(slot, category);
+        int base = category * FIELDS;
+        row[base]++;
+        if (crime.isArrest()) {
+            row[base + 1]++;
+        }
+        if (crime.isDomestic()) {
+            row[base + 2]++;
+        }
+        if (fbiIndex.test(crime)) {
+            row[base + 3]++;
+        }
+
+        MonthlyAggregateKey key = key(yearMonth, category, slot);
+        CrimeAggregate aggregate = counters(row, category);
+        checkpoints.put(key, aggregate);
+        if (!emitOnMonthClose) {
+            forward(key, yearMonth, slot, category, aggregate, record.timestamp(), record.headers());
+        }
+    }
+
+    /**
+     * Miesiące są uporządkowane, więc sprawdzenie kończy się na pierwszym otwartym.
+     */
+    private void closeMonths(long streamTime) {
+        Iterator<Map.Entry<Integer, MonthCounters>> it = months.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, MonthCounters> entry = it.next();
+            int yearMonth = entry.getKey();
+            if (!isClosed(yearMonth, streamTime)) {
+                break;
+            }
+            MonthCounters month = entry.getValue();
+            for (int slot = 0; slot < month.rows.length; slot++) {
+                long[] row = month.rows[slot];
+                for (int category = 0; row != null && category < row.length / FIELDS; category++) {
+                    if (row[category * FIELDS] == 0) {
+                        continue;
+                    }
+                    MonthlyAggregateKey key = key(yearMonth, category, slot);
+                    if (emitOnMonthClose) {
+                        forward(key, yearMonth, slot, category, counters(row, category), streamTime, null);
+                    }
+                    checkpoints.delete(key);
+                }
+            }
+            it.remove();
+        }
+        lastYearMonth = CrimeDateParser.INVALID_YEAR_MONTH;
+        lastMonth = null;
+        nextClose = months.isEmpty() ? Long.MAX_VALUE : closeTime(months.firstKey());
+    }
+
+    private MonthCounters month(int yearMonth) {
+        if (yearMonth != lastYearMonth) {
+            lastMonth = months.get(yearMonth);
+            if (lastMonth == null) {
+                lastMonth = new MonthCounters();
+                months.put(yearMonth, lastMonth);
+                nextClose = Math.min(nextClose, closeTime(yearMonth));
+            }
+            lastYearMonth = yearMonth;
+        }
+        return lastMonth;
+    }
+
+    private boolean isClosed(int yearMonth, long streamTime) {
+        return streamTime >= closeTime(yearMonth);
+    }
+
+    private long closeTime(int yearMonth) {
+        return CrimeDateParser.monthStartMillis(CrimeDateParser.nextYearMonth(yearMonth)) + graceMillis;
+    }
+
+    private int districtSlot(String district) {
+        Integer slot = districtSlots.get(district);
+        if (slot != null) {
+            return slot;
+        }
+        int districtId = CategoryDistrictKey.encodeDistrict(district);
+        if (districtCount == districtIds.length) {
+            districtIds = Arrays.copyOf(districtIds, districtCount * 2);
+            districtNames = Arrays.copyOf(districtNames, districtCount * 2);
+        }
+        districtIds[districtCount] = districtId;
+        districtNames[districtCount] = district;
+        districtSlots.put(district, districtCount);
+        return districtCount++;
+    }
+
+    /**
+     * Magazyn serializuje wartość przy put, więc ten sam obiekt może być uzupełniony i wysłany dalej.
+     */
+    private void forward(MonthlyAggregateKey key, int yearMonth, int slot, int category, CrimeAggregate aggregate,
+                         long timestamp, Headers headers) {
+        aggregate.setYearMonth(CrimeDateParser.formatYearMonth(yearMonth));
+        aggregate.setPrimaryDescription(categoryName.apply(category));
+        aggregate.setDistrict(districtNames[slot]);
+        context.forward(new Record<>(key, aggregate, timestamp, headers));
+    }
+
+    private MonthlyAggregateKey key(int yearMonth, int category, int slot) {
+        return new MonthlyAggregateKey(yearMonth, category, districtIds[slot], districtNames[slot]);
+    }
+
+    private static CrimeAggregate counters(long[] row, int category) {
+        int base = category * FIELDS;
+        CrimeAggregate aggregate = new CrimeAggregate();
+        aggregate.setTotalCrimes(row[base]);
+        aggregate.setArrestCount(row[base + 1]);
+        aggregate.setDomesticCount(row[base + 2]);
+        aggregate.setFbiIndexCount(row[base + 3]);
+        return aggregate;
+    }
+
+    /**
+     * Liczniki jednego miesiąca: wiersz na dzielnicę, rozszerzany, gdy pojawi się nowa dzielnica
+     * albo kategoria o wyższym identyfikatorze.
+     */
+    private static class MonthCounters {
+        long[][] rows = new long[0][];
+
+        long[] row(int slot, int category) {
+            if (slot >= rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(slot + 1, rows.length * 2));
+            }
+            long[] row = rows[slot];
+            int needed = (category + 1) * FIELDS;
+            if (row == null || row.length < needed) {
+                row = row == null ? new long[Math.max(needed, 64 * FIELDS)]
+                        : Arrays.copyOf(row, Math.max(needed, row.length * 2));
+                rows[slot] = row;
+            }
+            return row;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.chicago.crimes.processor;
+
+import com.chicago.crimes.ChicagoCrimesStreamsApp.DistrictCrimeCounts;
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.SampledLogger;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.CompactSerdes;
+import com.chicago.crimes.utils.CrimeDateParser;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.DslKeyValueParams;
+import org.apache.kafka.streams.state.DslStoreSuppliers;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Okna przesuwne N-dniowe dla dzielnic, złożone z jednodniowych paneli. Dla każdej dzielnicy
+ * przechowywane są panele z ostatnich max(N) dni oraz bieżące sumy okien kończących się
+ * najnowszym dniem (headDay). Nowy dzień dodaje panel, a panele wypadające z okna są odejmowane,
+ * więc koszt rekordu nie zależy od długości okna. Kilka długości (np. 7, 14, 30) korzysta
+ * z tych samych paneli.
+ *
+ * Okno kończące się dniem D zamyka się, gdy czas strumienia minie koniec tego dnia o grace, a rekordy
+ * z dni o zamkniętych oknach są pomijane. Tryb A emituje okna po każdym rekordzie, tryb C - okna
+ * kończące się każdym dniem z rekordami dzielnicy, dopiero przy ich zamknięciu. Dni czekające
+ * na zamknięcie są w magazynie {@link #PENDING_STORE}, więc ostatnie okno dzielnicy, dla której nie
+ * ma już nowych rekordów, też jest emitowane. Sumy zamykanego okna powstają z sum okna headDay
+ * i paneli z najwyżej grace + 1 dni różnicy.
+ */
+public class SlidingAnomalyProcessor implements Processor<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> {
+
+    public static final String PANES_STORE = "anomaly-day-panes";
+    public static final String SUMS_STORE = "anomaly-window-sums";
+    public static final String PENDING_STORE = "anomaly-pending-windows";
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final SampledLogger LOG = new SampledLogger("sliding-anomaly", 10, Duration.ofMinutes(1));
+
+    private final int[] lengths;
+    private final int maxLength;
+    private final int graceDays;
+    // Panele są potrzebne także oknom czekającym na zamknięcie, kończącym się do grace dni przed headDay
+    private final int retainedDays;
+    private final boolean emitOnWindowClose;
+    private final Predicate<CrimeRecord> fbiIndex;
+
+    private ProcessorContext<Windowed<String>, DistrictCrimeCounts> context;
+    private KeyValueStore<Bytes, DistrictCrimeCounts> panes;
+    private KeyValueStore<String, SlidingWindowSums> sums;
+    // Dzień końca okna (big-endian) i dzielnica -> dzielnica, tylko w trybie C
+    private KeyValueStore<Bytes, String> pending;
+    private long nextClose = Long.MAX_VALUE;
+
+    public SlidingAnomalyProcessor(int[] lengths, int graceDays, boolean emitOnWindowClose,
+                                   Predicate<CrimeRecord> fbiIndex) {
+        this.lengths = lengths.clone();
+        this.maxLength = Arrays.stream(lengths).max().orElseThrow();
+        this.graceDays = graceDays;
+        this.retainedDays = maxLength + graceDays;
+        this.emitOnWindowClose = emitOnWindowClose;
+        this.fbiIndex = fbiIndex;
+    }
+
+    /**
+     * @param lengths długości okien w dniach, każda większa niż graceDays
+     * @param storeType RocksDB albo magazyny w pamięci - jak magazyny DSL (--state-store)
+     */
+    public static ProcessorSupplier<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> supplier(
+            int[] lengths, int graceDays, boolean emitOnWindowClose, Predicate<CrimeRecord> fbiIndex,
+            DslStoreSuppliers storeType) {
+        if (lengths.length == 0) {
+            throw new IllegalArgumentException("At least one sliding window length is required");
+        }
+        for (int length : lengths) {
+            if (length <= graceDays) {
+                throw new IllegalArgumentException("Sliding window length must exceed grace of " +
+                        graceDays + " days: " + length);
+            }
+        }
+        return new ProcessorSupplier<>() {
+            @Override
+            public Processor<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> get() {
+                return new SlidingAnomalyProcessor(lengths, graceDays, emitOnWindowClose, fbiIndex);
+            }
+
+            @Override
+            public Set<StoreBuilder<?>> stores() {
+                Set<StoreBuilder<?>> stores = new HashSet<>();
+                stores.add(Stores.keyValueStoreBuilder(storeType.keyValueStore(new DslKeyValueParams(PANES_STORE, false)),
+                        Serdes.Bytes(), CompactSerdes.districtCrimeCounts()));
+                stores.add(Stores.keyValueStoreBuilder(storeType.keyValueStore(new DslKeyValueParams(SUMS_STORE, false)),
+                        Serdes.String(), CompactSerdes.slidingWindowSums()));
+                if (emitOnWindowClose) {
+                    stores.add(Stores.keyValueStoreBuilder(
+                            storeType.keyValueStore(new DslKeyValueParams(PENDING_STORE, false)),
+                            Serdes.Bytes(), Serdes.String()));
+                }
+                return stores;
+            }
+        };
+    }
+
+    @Override
+    public void init(ProcessorContext<Windowed<String>, DistrictCrimeCounts> context) {
+        this.context = context;
+        this.panes = context.getStateStore(PANES_STORE);
+        this.sums = context.getStateStore(SUMS_STORE);
+        if (emitOnWindowClose) {
+            this.pending = context.getStateStore(PENDING_STORE);
+            try (KeyValueIterator<Bytes, String> all = pending.all()) {
+                if (all.hasNext()) {
+                    nextClose = closeTime(dayOf(all.next().key));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void process(Record<String, CrimeRecord> record) {
+        String district = record.key();
+        CrimeRecord crime = record.value();
+        if (district == null || crime == null) {
+            return;
+        }
+        long eventTime = crime.getEventTimeMillis();
+        if (eventTime == CrimeDateParser.INVALID_TIME) {
+            return;
+        }
+        long day = Math.floorDiv(eventTime, DAY_MS);
+        long fbi = fbiIndex.test(crime) ? 1 : 0;
+
+        // Zamykanie przed przesunięciem sum - okna czekające kończą się najwyżej grace dni przed nowym dniem
+        long streamTime = context.currentStreamTimeMs();
+        if (streamTime >= nextClose) {
+            closeWindows(streamTime);
+        }
+        if (closeTime(day) <= streamTime) {
+            AppCounters.lateRecord();
+            LOG.log("Pomijam spóźniony rekord " + crime.getId() + " dzielnicy " + district +
+                    " dla zamkniętego okna kończącego się " + LocalDate.ofEpochDay(day));
+            return;
+        }
+
+        SlidingWindowSums windowSums = sums.get(district);
+        if (windowSums == null) {
+            windowSums = new SlidingWindowSums(day, lengths.length);
+        } else if (day > windowSums.getHeadDay()) {
+            advance(district, windowSums, day);
+        }
+
+        // Panel dnia rekordu i sumy okien, które ten dzień obejmują
+        Bytes paneKey = paneKey(district, day);
+        DistrictCrimeCounts pane = panes.get(paneKey);
+        if (pane == null) {
+            pane = new DistrictCrimeCounts();
+            if (emitOnWindowClose) {
+                pending.put(paneKey, district);
+                nextClose = Math.min(nextClose, closeTime(day));
+            }
+        }
+        pane.incrementTotal();
+        if (fbi != 0) {
+            pane.incrementFbiIndex();
+        }
+        panes.put(paneKey, pane);
+        for (int i = 0; i < lengths.length; i++) {
+            if (day > windowSums.getHeadDay() - lengths[i]) {
+                windowSums.add(i, 1, fbi);
+            }
+        }
+        sums.put(district, windowSums);
+
+        if (!emitOnWindowClose) {
+            long headDay = windowSums.getHeadDay();
+            for (int i = 0; i < lengths.length; i++) {
+                forward(district, headDay, i, windowSums.getTotal(i), windowSums.getFbiIndex(i),
+                        record.timestamp(), record.headers());
+            }
+        }
+    }
+
+    /**
+     * Emituje okna, których czas zamknięcia minął. Klucze są uporządkowane po dniu, więc przegląd
+     * kończy się na pierwszym otwartym oknie.
+     */
+    private void closeWindows(long streamTime) {
+        List<KeyValue<Bytes, String>> closed = new ArrayList<>();
+        nextClose = Long.MAX_VALUE;
+        try (KeyValueIterator<Bytes, String> all = pending.all()) {
+            while (all.hasNext()) {
+                KeyValue<Bytes, String> entry = all.next();
+                long close = closeTime(dayOf(entry.key));
+                if (close > streamTime) {
+                    nextClose = close;
+                    break;
+                }
+                closed.add(entry);
+            }
+        }
+        for (KeyValue<Bytes, String> entry : closed) {
+            emitClosed(entry.value, dayOf(entry.key), streamTime);
+            pending.delete(entry.key);
+        }
+    }
+
+    /**
+     * Sumy okien kończących się dniem day, wyliczone z sum okien headDay: odejmuje panele po day,
+     * które należą do okna headDay, i dodaje panele, które z okna headDay już wypadły.
+     */
+    private void emitClosed(String district, long day, long timestamp) {
+        SlidingWindowSums windowSums = sums.get(district);
+        long headDay = windowSums.getHeadDay();
+        for (int i = 0; i < lengths.length; i++) {
+            long total = windowSums.getTotal(i);
+            long fbi = windowSums.getFbiIndex(i);
+            for (long d = Math.max(day + 1, headDay - lengths[i] + 1); d <= headDay; d++) {
+                DistrictCrimeCounts pane = panes.get(paneKey(district, d));
+                if (pane != null) {
+                    total -= pane.getTotalCrimes();
+                    fbi -= pane.getFbiIndexCrimes();
+                }
+            }
+            for (long d = day - lengths[i] + 1; d <= Math.min(day, headDay - lengths[i]); d++) {
+                DistrictCrimeCounts pane = panes.get(paneKey(district, d));
+                if (pane != null) {
+                    total += pane.getTotalCrimes();
+                    fbi += pane.getFbiIndexCrimes();
+                }
+            }
+            forward(district, day, i, total, fbi, timestamp, null);
+        }
+    }
+
+    /**
+     * Przesuwa koniec okien na newDay: odejmuje panele, które wypadają z każdego okna,
+     * i usuwa panele starsze niż najdłuższe okno i grace. Każdy panel jest odejmowany raz na długość.
+     */
+    private void advance(String district, SlidingWindowSums windowSums, long newDay) {
+        long head = windowSums.getHeadDay();
+        for (int i = 0; i < lengths.length; i++) {
+            long from = head - lengths[i] + 1;
+            long to = Math.min(newDay - lengths[i], head);
+            for (long day = from; day <= to; day++) {
+                DistrictCrimeCounts pane = panes.get(paneKey(district, day));
+                if (pane != null) {
+                    windowSums.add(i, -pane.getTotalCrimes(), -pane.getFbiIndexCrimes());
+                }
+            }
+        }
+        long expireTo = Math.min(newDay - retainedDays, head);
+        for (long day = head - retainedDays + 1; day <= expireTo; day++) {
+            panes.delete(paneKey(district, day));
+        }
+        windowSums.setHeadDay(newDay);
+    }
+
+    private void forward(String district, long endDay, int length, long total, long fbi, long timestamp,
+                         Headers headers) {
+        long end = (endDay + 1) * DAY_MS;
+        AnomalyWindow window = new AnomalyWindow(end - lengths[length] * DAY_MS, end);
+        context.forward(new Record<>(new Windowed<>(district, window), new DistrictCrimeCounts(total, fbi),
+                timestamp, headers));
+    }
+
+    private long closeTime(long day) {
+        return (day + 1 + graceDays) * DAY_MS;
+    }
+
+    // Dzień (big-endian) i nazwa dzielnicy - panele jednej dzielnicy nie mieszają się z innymi
+    private static Bytes paneKey(String district, long day) {
+        byte[] name = district.getBytes(StandardCharsets.UTF_8);
+        byte[] key = new byte[8 + name.length];
+        for (int i = 0; i < 8; i++) {
+            key[i] = (byte) (day >>> (56 - 8 * i));
+        }
+        System.arraycopy(name, 0, key, 8, name.length);
+        return Bytes.wrap(key);
+    }
+
+    private static long dayOf(Bytes key) {
+        byte[] bytes = key.get();
+        long day = 0;
+        for (int i = 0; i < 8; i++) {
+            day = (day << 8) | (bytes[i] & 0xFF);
+        }
+        return day;
+    }
+}
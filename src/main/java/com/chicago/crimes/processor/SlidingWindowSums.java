@@ -0,0 +1,34 @@
+package com.chicago.crimes.processor;
+
+/**
+ * Bieżące sumy okien przesuwnych jednej dzielnicy: dla każdej długości okna liczba wszystkich
+ * przestępstw i przestępstw FBI index w dniach (headDay - długość, headDay].
+ */
+public class SlidingWindowSums {
+    private long headDay;
+    private final long[] totals;
+    private final long[] fbiIndex;
+
+    public SlidingWindowSums(long headDay, int lengthCount) {
+        this(headDay, new long[lengthCount], new long[lengthCount]);
+    }
+
+    public SlidingWindowSums(long headDay, long[] totals, long[] fbiIndex) {
+        this.headDay = headDay;
+        this.totals = totals;
+        this.fbiIndex = fbiIndex;
+    }
+
+    public long getHeadDay() { return headDay; }
+    void setHeadDay(long headDay) { this.headDay = headDay; }
+
+    public int lengthCount() { return totals.length; }
+
+    public long getTotal(int length) { return totals[length]; }
+    public long getFbiIndex(int length) { return fbiIndex[length]; }
+
+    void add(int length, long total, long fbi) {
+        totals[length] += total;
+        fbiIndex[length] += fbi;
+    }
+}
@@ -0,0 +1,29 @@
+package com.chicago.crimes.producer;
+
+/**
+ * Indeksy kolumn CSV odpowiadających polom CrimeRecord (nazwy jak w @JsonProperty).
+ * Brakująca kolumna ma indeks -1.
+ */
+class CrimeCsvColumns {
+    final int id;
+    final int date;
+    final int iucr;
+    final int arrest;
+    final int domestic;
+    final int district;
+    final int comArea;
+    final int latitude;
+    final int longitude;
+
+    CrimeCsvColumns(MappedCsvReader csv) {
+        id = csv.columnIndex("ID");
+        date = csv.columnIndex("Date");
+        iucr = csv.columnIndex("IUCR");
+        arrest = csv.columnIndex("Arrest");
+        domestic = csv.columnIndex("Domestic");
+        district = csv.columnIndex("District");
+        comArea = csv.columnIndex("ComArea");
+        latitude = csv.columnIndex("Latitude");
+        longitude = csv.columnIndex("Longitude");
+    }
+}
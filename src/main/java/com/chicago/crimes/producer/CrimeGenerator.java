@@ -0,0 +1,417 @@
+package com.chicago.crimes.producer;
+
+import com.chicago.crimes.model.IucrCode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Syntetyczne rekordy crimes-input o rozkładach zbliżonych do danych Chicago: udziały kategorii
+ * (PRIMARY DESCRIPTION) i w ich obrębie malejące wagi kodów IUCR ze słownika CSV, nierówny rozkład
+ * dzielnic, community areas i współrzędne z obszaru danej dzielnicy, odsetki aresztowań i przemocy
+ * domowej zależne od kategorii oraz dobowy profil godzin.
+ *
+ * Rekord o numerze i zależy tylko od (ziarno, i) - losowania startują od stanu wyliczonego z numeru,
+ * więc wynik nie zależy od liczby wątków ani kolejności generowania. Czas zdarzeń rośnie z numerem
+ * (records rekordów na days dni), a każdy rekord jest cofany losowo o najwyżej disorderMinutes;
+ * latePercent rekordów jest dodatkowo cofany o najwyżej lateHours (poza grace aplikacji).
+ *
+ * Generator jest niezmienny i współdzielony; każdy wątek używa własnego {@link Cursor}.
+ */
+class CrimeGenerator {
+
+    static final String GENERATE = "generate";
+
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // Przybliżone udziały kategorii w danych Chicago 2012-2017; pozostałe kategorie słownika dzielą resztę
+    private static final Map<String, Double> CATEGORY_SHARES = Map.ofEntries(
+            Map.entry("THEFT", 22.2), Map.entry("BATTERY", 18.4), Map.entry("CRIMINAL DAMAGE", 11.2),
+            Map.entry("NARCOTICS", 8.5), Map.entry("ASSAULT", 6.4), Map.entry("OTHER OFFENSE", 6.2),
+            Map.entry("BURGLARY", 5.8), Map.entry("DECEPTIVE PRACTICE", 4.6), Map.entry("MOTOR VEHICLE THEFT", 4.5),
+            Map.entry("ROBBERY", 3.9), Map.entry("CRIMINAL TRESPASS", 2.6), Map.entry("WEAPONS VIOLATION", 1.2),
+            Map.entry("PUBLIC PEACE VIOLATION", 0.7), Map.entry("OFFENSE INVOLVING CHILDREN", 0.7),
+            Map.entry("PROSTITUTION", 0.5), Map.entry("CRIM SEXUAL ASSAULT", 0.4),
+            Map.entry("INTERFERENCE WITH PUBLIC OFFICER", 0.4), Map.entry("SEX OFFENSE", 0.3),
+            Map.entry("ARSON", 0.15), Map.entry("HOMICIDE", 0.1), Map.entry("GAMBLING", 0.1),
+            Map.entry("LIQUOR LAW VIOLATION", 0.1), Map.entry("KIDNAPPING", 0.08), Map.entry("STALKING", 0.06),
+            Map.entry("INTIMIDATION", 0.05));
+    private static final double OTHER_CATEGORIES_SHARE = 0.5;
+
+    // Odsetek aresztowań w kategorii (domyślnie DEFAULT_ARREST_PERCENT)
+    private static final Map<String, Double> ARREST_PERCENT = Map.ofEntries(
+            Map.entry("NARCOTICS", 99.0), Map.entry("PROSTITUTION", 99.0), Map.entry("GAMBLING", 99.0),
+            Map.entry("LIQUOR LAW VIOLATION", 99.0), Map.entry("INTERFERENCE WITH PUBLIC OFFICER", 93.0),
+            Map.entry("WEAPONS VIOLATION", 80.0), Map.entry("CRIMINAL TRESPASS", 72.0),
+            Map.entry("PUBLIC PEACE VIOLATION", 62.0), Map.entry("HOMICIDE", 45.0), Map.entry("BATTERY", 22.0),
+            Map.entry("ASSAULT", 20.0), Map.entry("OTHER OFFENSE", 18.0), Map.entry("DECEPTIVE PRACTICE", 16.0),
+            Map.entry("THEFT", 12.0), Map.entry("ROBBERY", 10.0), Map.entry("MOTOR VEHICLE THEFT", 8.0),
+            Map.entry("CRIMINAL DAMAGE", 7.0), Map.entry("BURGLARY", 6.0));
+    private static final double DEFAULT_ARREST_PERCENT = 20.0;
+
+    // Odsetek przemocy domowej dla kodów bez "DOMESTIC" w opisie (te są zawsze domowe)
+    private static final Map<String, Double> DOMESTIC_PERCENT = Map.of(
+            "OFFENSE INVOLVING CHILDREN", 50.0, "OTHER OFFENSE", 25.0, "BATTERY", 20.0,
+            "ASSAULT", 15.0, "CRIMINAL DAMAGE", 10.0);
+    private static final double DEFAULT_DOMESTIC_PERCENT = 3.0;
+    private static final int MISSING_LOCATION_PERCENT = 1;
+
+    // Dzielnica, udział w %, środek (szerokość, długość) i community areas, które obejmuje (w przybliżeniu)
+    private static final Object[][] DISTRICTS = {
+            {"1", 4.0, 41.880, -87.630, new int[]{32, 33, 28}},
+            {"2", 4.4, 41.810, -87.615, new int[]{35, 38, 39, 40}},
+            {"3", 5.0, 41.770, -87.595, new int[]{42, 43, 69}},
+            {"4", 5.5, 41.720, -87.560, new int[]{46, 48, 51, 52, 55}},
+            {"5", 4.2, 41.690, -87.620, new int[]{49, 50, 53, 54}},
+            {"6", 5.8, 41.750, -87.640, new int[]{44, 49, 71, 73}},
+            {"7", 5.5, 41.780, -87.660, new int[]{67, 68}},
+            {"8", 6.2, 41.780, -87.720, new int[]{56, 62, 63, 64, 65, 66}},
+            {"9", 4.5, 41.830, -87.670, new int[]{58, 59, 60, 61}},
+            {"10", 4.5, 41.850, -87.710, new int[]{29, 30, 31}},
+            {"11", 6.5, 41.875, -87.710, new int[]{23, 26, 27}},
+            {"12", 4.7, 41.870, -87.660, new int[]{24, 28, 31}},
+            {"14", 3.7, 41.920, -87.700, new int[]{21, 22, 24}},
+            {"15", 4.2, 41.890, -87.760, new int[]{25}},
+            {"16", 3.1, 41.970, -87.790, new int[]{10, 11, 12, 15, 16, 17, 76}},
+            {"17", 2.8, 41.960, -87.720, new int[]{13, 14, 16, 21}},
+            {"18", 4.5, 41.900, -87.630, new int[]{7, 8}},
+            {"19", 4.3, 41.940, -87.660, new int[]{5, 6, 7}},
+            {"20", 1.8, 41.980, -87.670, new int[]{3, 4, 77}},
+            {"22", 3.3, 41.700, -87.670, new int[]{72, 74, 75}},
+            {"24", 2.9, 42.000, -87.670, new int[]{1, 2, 77}},
+            {"25", 5.2, 41.920, -87.760, new int[]{18, 19, 20, 25}},
+    };
+    private static final double DISTRICT_HALF_HEIGHT = 0.025;
+    private static final double DISTRICT_HALF_WIDTH = 0.03;
+
+    // Udział godzin doby w % (minimum nad ranem, szczyty w południe i wieczorem)
+    private static final double[] HOUR_SHARES = {
+            4.4, 3.4, 2.9, 2.4, 1.9, 1.7, 2.0, 2.6, 3.5, 4.1, 4.2, 4.3,
+            5.4, 4.6, 4.6, 4.9, 5.0, 5.1, 5.4, 5.3, 5.2, 5.0, 4.7, 4.2
+    };
+
+    private static final byte[] ID = ascii("{\"ID\":\"");
+    private static final byte[] DATE = ascii("\",\"Date\":\"");
+    private static final byte[] IUCR = ascii("\",\"IUCR\":\"");
+    private static final byte[] ARREST = ascii("\",\"Arrest\":");
+    private static final byte[] DOMESTIC = ascii(",\"Domestic\":");
+    private static final byte[] DISTRICT = ascii(",\"District\":\"");
+    private static final byte[] COM_AREA = ascii("\",\"ComArea\":\"");
+    private static final byte[] LATITUDE = ascii("\",\"Latitude\":");
+    private static final byte[] LONGITUDE = ascii(",\"Longitude\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+
+    private final long seed;
+    private final long records;
+    private final long startMillis;
+    private final double daysPerRecord;
+    private final long disorderMillis;
+    private final double lateFraction;
+    private final long lateMillis;
+
+    private final byte[][] codes;
+    private final double[] codeCumulative;
+    private final double[] arrestChance;
+    private final double[] domesticChance;
+    private final String[] districtKeys;
+    private final byte[][] districtBytes;
+    private final double[] districtCumulative;
+    private final byte[][][] comAreas;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] hourCumulative;
+
+    CrimeGenerator(List<IucrCode> dictionary, long seed, long records, long startMillis, int days,
+                   int disorderMinutes, double latePercent, int lateHours) {
+        if (records <= 0 || days <= 0) {
+            throw new IllegalArgumentException("Records and days must be positive: " + records + ", " + days);
+        }
+        if (disorderMinutes < 0 || latePercent < 0 || latePercent > 100 || lateHours < 0) {
+            throw new IllegalArgumentException("Invalid out-of-order settings: " + disorderMinutes + " min, "
+                    + latePercent + "% late by " + lateHours + " h");
+        }
+        this.seed = seed;
+        this.records = records;
+        this.startMillis = startMillis;
+        this.daysPerRecord = (double) days / records;
+        this.disorderMillis = disorderMinutes * 60_000L;
+        this.lateFraction = latePercent / 100.0;
+        this.lateMillis = lateHours * 3_600_000L;
+
+        // Kody pogrupowane po kategoriach, w kolejności z pliku; w kategorii waga 1/(pozycja+1)
+        Map<String, List<IucrCode>> byCategory = new HashMap<>();
+        List<String> categoryOrder = new ArrayList<>();
+        for (IucrCode code : dictionary) {
+            String category = code.getPrimaryDescription();
+            if (!byCategory.containsKey(category)) {
+                categoryOrder.add(category);
+            }
+            byCategory.computeIfAbsent(category, name -> new ArrayList<>()).add(code);
+        }
+        if (categoryOrder.isEmpty()) {
+            throw new IllegalArgumentException("IUCR dictionary is empty");
+        }
+        long otherCategories = categoryOrder.stream().filter(name -> !CATEGORY_SHARES.containsKey(name)).count();
+
+        int size = dictionary.size();
+        codes = new byte[size][];
+        codeCumulative = new double[size];
+        arrestChance = new double[size];
+        domesticChance = new double[size];
+        int i = 0;
+        double total = 0;
+        for (String category : categoryOrder) {
+            List<IucrCode> inCategory = byCategory.get(category);
+            double share = CATEGORY_SHARES.getOrDefault(category, OTHER_CATEGORIES_SHARE / Math.max(1, otherCategories));
+            double harmonic = 0;
+            for (int rank = 0; rank < inCategory.size(); rank++) {
+                harmonic += 1.0 / (rank + 1);
+            }
+            for (int rank = 0; rank < inCategory.size(); rank++) {
+                IucrCode code = inCategory.get(rank);
+                total += share / (rank + 1) / harmonic;
+                codes[i] = ascii(code.getIucr());
+                codeCumulative[i] = total;
+                arrestChance[i] = ARREST_PERCENT.getOrDefault(category, DEFAULT_ARREST_PERCENT) / 100.0;
+                boolean domesticCode = code.getSecondaryDescription() != null
+                        && code.getSecondaryDescription().contains("DOMESTIC");
+                domesticChance[i] = domesticCode ? 1.0
+                        : DOMESTIC_PERCENT.getOrDefault(category, DEFAULT_DOMESTIC_PERCENT) / 100.0;
+                i++;
+            }
+        }
+        normalize(codeCumulative, total);
+
+        districtKeys = new String[DISTRICTS.length];
+        districtBytes = new byte[DISTRICTS.length][];
+        districtCumulative = new double[DISTRICTS.length];
+        comAreas = new byte[DISTRICTS.length][][];
+        latitudes = new double[DISTRICTS.length];
+        longitudes = new double[DISTRICTS.length];
+        total = 0;
+        for (int d = 0; d < DISTRICTS.length; d++) {
+            districtKeys[d] = (String) DISTRICTS[d][0];
+            districtBytes[d] = ascii(districtKeys[d]);
+            total += (double) DISTRICTS[d][1];
+            districtCumulative[d] = total;
+            latitudes[d] = (double) DISTRICTS[d][2];
+            longitudes[d] = (double) DISTRICTS[d][3];
+            int[] areas = (int[]) DISTRICTS[d][4];
+            comAreas[d] = new byte[areas.length][];
+            for (int a = 0; a < areas.length; a++) {
+                comAreas[d][a] = ascii(String.valueOf(areas[a]));
+            }
+        }
+        normalize(districtCumulative, total);
+
+        hourCumulative = new double[HOUR_SHARES.length];
+        total = 0;
+        for (int h = 0; h < HOUR_SHARES.length; h++) {
+            total += HOUR_SHARES[h];
+            hourCumulative[h] = total;
+        }
+        normalize(hourCumulative, total);
+    }
+
+    long records() {
+        return records;
+    }
+
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Stan jednego wątku: bufor JSON i pola ostatnio wygenerowanego rekordu
+     */
+    final class Cursor {
+        private byte[] buf = new byte[256];
+        private int pos;
+        private long random;
+        private String key;
+        private long eventTime;
+
+        /**
+         * Generuje rekord o podanym numerze; klucz i czas zdarzenia są dostępne do następnego wywołania.
+         *
+         * @return JSON rekordu w tablicy o dokładnym rozmiarze (ByteArraySerializer jej nie kopiuje)
+         */
+        byte[] next(long index) {
+            random = mix64(seed ^ (index * GOLDEN_GAMMA));
+            eventTime = eventTime(index);
+            int code = pick(codeCumulative, nextDouble());
+            int district = pick(districtCumulative, nextDouble());
+            byte[][] areas = comAreas[district];
+            key = districtKeys[district];
+
+            pos = 0;
+            append(ID);
+            appendLong(10_000_000L + index);
+            append(DATE);
+            appendDate(eventTime);
+            append(IUCR);
+            append(codes[code]);
+            append(ARREST);
+            append(nextDouble() < arrestChance[code] ? TRUE : FALSE);
+            append(DOMESTIC);
+            append(nextDouble() < domesticChance[code] ? TRUE : FALSE);
+            append(DISTRICT);
+            append(districtBytes[district]);
+            append(COM_AREA);
+            append(areas[(int) (nextDouble() * areas.length)]);
+            if (nextDouble() * 100 < MISSING_LOCATION_PERCENT) {
+                append(LATITUDE);
+                append(NULL);
+                append(LONGITUDE);
+                append(NULL);
+            } else {
+                append(LATITUDE);
+                appendCoordinate(latitudes[district] + (nextDouble() * 2 - 1) * DISTRICT_HALF_HEIGHT);
+                append(LONGITUDE);
+                appendCoordinate(longitudes[district] + (nextDouble() * 2 - 1) * DISTRICT_HALF_WIDTH);
+            }
+            ensure(1);
+            buf[pos++] = '}';
+            return Arrays.copyOf(buf, pos);
+        }
+
+        String key() {
+            return key;
+        }
+
+        long eventTime() {
+            return eventTime;
+        }
+
+        // Dzień wynika z numeru rekordu, godzina z profilu dobowego; pełne minuty jak w danych źródłowych
+        private long eventTime(long index) {
+            double position = index * daysPerRecord;
+            long day = (long) position;
+            double dayFraction = position - day;
+            int hour = pick(hourCumulative, dayFraction);
+            double hourStart = hour == 0 ? 0 : hourCumulative[hour - 1];
+            double withinHour = (dayFraction - hourStart) / (hourCumulative[hour] - hourStart);
+            long millis = startMillis + day * MILLIS_PER_DAY + hour * 3_600_000L + (long) (withinHour * 3_600_000L);
+            if (disorderMillis > 0) {
+                millis -= (long) (nextDouble() * disorderMillis);
+            }
+            if (lateFraction > 0 && nextDouble() < lateFraction) {
+                millis -= (long) (nextDouble() * lateMillis);
+            }
+            return millis - Math.floorMod(millis, 60_000L);
+        }
+
+        // SplitMix64: kolejne wartości z ciągu zaczynającego się od stanu wyliczonego z numeru rekordu
+        private double nextDouble() {
+            random += GOLDEN_GAMMA;
+            return (mix64(random) >>> 11) * 0x1.0p-53;
+        }
+
+        // 2015-09-05T13:30:00.000Z
+        private void appendDate(long millis) {
+            long epochDay = Math.floorDiv(millis, MILLIS_PER_DAY);
+            int minuteOfDay = (int) (Math.floorMod(millis, MILLIS_PER_DAY) / 60_000L);
+            // Data cywilna z numeru dnia (algorytm H. Hinnanta)
+            long z = epochDay + 719_468;
+            long era = Math.floorDiv(z, 146_097);
+            long dayOfEra = z - era * 146_097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long mp = (5 * dayOfYear + 2) / 153;
+            int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+            int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+            int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+            ensure(24);
+            appendDigits(year, 4);
+            buf[pos++] = '-';
+            appendDigits(month, 2);
+            buf[pos++] = '-';
+            appendDigits(day, 2);
+            buf[pos++] = 'T';
+            appendDigits(minuteOfDay / 60, 2);
+            buf[pos++] = ':';
+            appendDigits(minuteOfDay % 60, 2);
+            for (byte b : ":00.000Z".getBytes(StandardCharsets.US_ASCII)) {
+                buf[pos++] = b;
+            }
+        }
+
+        // 9 miejsc po przecinku, jak we współrzędnych źródłowych
+        private void appendCoordinate(double value) {
+            long scaled = Math.round(value * 1e9);
+            ensure(22);
+            if (scaled < 0) {
+                buf[pos++] = '-';
+                scaled = -scaled;
+            }
+            appendLong(scaled / 1_000_000_000L);
+            buf[pos++] = '.';
+            appendDigits((int) (scaled % 1_000_000_000L), 9);
+        }
+
+        private void appendLong(long value) {
+            ensure(20);
+            int start = pos;
+            do {
+                buf[pos++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int left = start, right = pos - 1; left < right; left++, right--) {
+                byte tmp = buf[left];
+                buf[left] = buf[right];
+                buf[right] = tmp;
+            }
+        }
+
+        private void appendDigits(int value, int width) {
+            for (int i = width - 1; i >= 0; i--) {
+                buf[pos + i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            pos += width;
+        }
+
+        private void append(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+    }
+
+    // Indeks pierwszego elementu rozkładu skumulowanego większego od u
+    private static int pick(double[] cumulative, double u) {
+        int index = Arrays.binarySearch(cumulative, u);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    private static void normalize(double[] cumulative, double total) {
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,194 @@
+package com.chicago.crimes.producer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Zapisuje wiersz CSV jako JSON rekordu CrimeRecord (te same nazwy i kolejność pól co
+ * @JsonProperty) bezpośrednio z bajtów pól do bufora wielokrotnego użytku, bez tworzenia
+ * POJO ani Stringów. Jedna instancja na wątek.
+ *
+ * Wynik jest kopiowany do tablicy o dokładnym rozmiarze, bo ByteArraySerializer przekazuje
+ * tablicę do producenta bez zmian.
+ */
+class CrimeJsonWriter {
+    private static final byte[] ID = ascii("{\"ID\":");
+    private static final byte[] DATE = ascii(",\"Date\":");
+    private static final byte[] IUCR = ascii(",\"IUCR\":");
+    private static final byte[] ARREST = ascii(",\"Arrest\":");
+    private static final byte[] DOMESTIC = ascii(",\"Domestic\":");
+    private static final byte[] DISTRICT = ascii(",\"District\":");
+    private static final byte[] COM_AREA = ascii(",\"ComArea\":");
+    private static final byte[] LATITUDE = ascii(",\"Latitude\":");
+    private static final byte[] LONGITUDE = ascii(",\"Longitude\":");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    private byte[] buf = new byte[512];
+    private int pos;
+
+    // Klucze dzielnic ("1".."999") są tworzone raz i używane ponownie
+    private final String[] numericKeys = new String[1000];
+
+    byte[] write(MappedCsvReader csv, CrimeCsvColumns columns) {
+        pos = 0;
+        append(ID);
+        appendString(csv, columns.id);
+        append(DATE);
+        appendString(csv, columns.date);
+        append(IUCR);
+        appendString(csv, columns.iucr);
+        append(ARREST);
+        append(csv.getBoolean(columns.arrest) ? TRUE : FALSE);
+        append(DOMESTIC);
+        append(csv.getBoolean(columns.domestic) ? TRUE : FALSE);
+        append(DISTRICT);
+        appendString(csv, columns.district);
+        append(COM_AREA);
+        appendString(csv, columns.comArea);
+        append(LATITUDE);
+        appendNumber(csv, columns.latitude);
+        append(LONGITUDE);
+        appendNumber(csv, columns.longitude);
+        ensure(1);
+        buf[pos++] = '}';
+        return Arrays.copyOf(buf, pos);
+    }
+
+    /**
+     * Klucz rekordu: dzielnica, a przy braku kolumny District - ID.
+     */
+    String key(MappedCsvReader csv, CrimeCsvColumns columns) {
+        int column = columns.district >= 0 && columns.district < csv.fieldCount() ? columns.district : columns.id;
+        int length = csv.loadField(column);
+        if (length < 0) {
+            return null;
+        }
+        byte[] field = csv.fieldBuffer();
+        if (length > 0 && length <= 3) {
+            int value = 0;
+            for (int i = 0; i < length; i++) {
+                int digit = field[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return new String(field, 0, length, StandardCharsets.UTF_8);
+                }
+                value = value * 10 + digit;
+            }
+            // Wartości z zerami wiodącymi ("007") nie trafiają do pamięci podręcznej
+            if (field[0] != '0' || length == 1) {
+                String key = numericKeys[value];
+                if (key == null) {
+                    key = new String(field, 0, length, StandardCharsets.US_ASCII);
+                    numericKeys[value] = key;
+                }
+                return key;
+            }
+        }
+        return new String(field, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void appendString(MappedCsvReader csv, int column) {
+        int length = csv.loadField(column);
+        if (length < 0) {
+            append(NULL);
+            return;
+        }
+        byte[] field = csv.fieldBuffer();
+        ensure(length * 6 + 2);
+        buf[pos++] = '"';
+        for (int i = 0; i < length; i++) {
+            byte b = field[i];
+            if (b == '"' || b == '\\') {
+                buf[pos++] = '\\';
+                buf[pos++] = b;
+            } else if (b >= 0 && b < 0x20) {
+                appendControl(b);
+            } else {
+                buf[pos++] = b;
+            }
+        }
+        buf[pos++] = '"';
+    }
+
+    // Znaki sterujące tak jak w Jacksonie: skróty \n \r \t \b \f, pozostałe jako \\u00XX
+    private void appendControl(byte b) {
+        buf[pos++] = '\\';
+        switch (b) {
+            case '\n': buf[pos++] = 'n'; break;
+            case '\r': buf[pos++] = 'r'; break;
+            case '\t': buf[pos++] = 't'; break;
+            case '\b': buf[pos++] = 'b'; break;
+            case '\f': buf[pos++] = 'f'; break;
+            default:
+                buf[pos++] = 'u';
+                buf[pos++] = '0';
+                buf[pos++] = '0';
+                buf[pos++] = HEX[b >> 4];
+                buf[pos++] = HEX[b & 0xF];
+        }
+    }
+
+    /**
+     * Liczba w zwykłym zapisie dziesiętnym jest kopiowana bez zmian; inne zapisy
+     * (wykładnik, znak +, zera wiodące) przechodzą przez Double.toString jak w Jacksonie.
+     */
+    private void appendNumber(MappedCsvReader csv, int column) {
+        if (csv.isBlank(column)) {
+            append(NULL);
+            return;
+        }
+        int length = csv.loadField(column);
+        byte[] field = csv.fieldBuffer();
+        if (isPlainDecimal(field, length)) {
+            ensure(length);
+            System.arraycopy(field, 0, buf, pos, length);
+            pos += length;
+        } else {
+            append(ascii(Double.toString(csv.getDouble(column))));
+        }
+    }
+
+    private static boolean isPlainDecimal(byte[] field, int length) {
+        int i = 0;
+        if (i < length && field[i] == '-') {
+            i++;
+        }
+        int integerStart = i;
+        while (i < length && field[i] >= '0' && field[i] <= '9') {
+            i++;
+        }
+        int integerDigits = i - integerStart;
+        if (integerDigits == 0 || (integerDigits > 1 && field[integerStart] == '0')) {
+            return false;
+        }
+        if (i == length) {
+            return true;
+        }
+        if (field[i++] != '.') {
+            return false;
+        }
+        int fractionStart = i;
+        while (i < length && field[i] >= '0' && field[i] <= '9') {
+            i++;
+        }
+        return i == length && i > fractionStart;
+    }
+
+    private void append(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, pos, bytes.length);
+        pos += bytes.length;
+    }
+
+    private void ensure(int extra) {
+        if (pos + extra > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+        }
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
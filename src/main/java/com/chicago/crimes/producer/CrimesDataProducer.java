@@ -1,59 +1,105 @@
 package com.chicago.crimes.producer;
 
-import com.chicago.crimes.model.CrimeRecord;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.chicago.crimes.iucr.IucrDictionary;
+import com.chicago.crimes.utils.CommandLineOptions;
+import com.chicago.crimes.utils.CrimeDateParser;
 import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CrimesDataProducer {
     private static final String TOPIC = "crimes-input";
-    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    // Pliki mniejsze niż ten próg nie są dzielone na zakresy bajtów
+    private static final long MIN_SPLIT_BYTES = 64L * 1024 * 1024;
+    private static final long GENERATOR_PROGRESS_INTERVAL = 1_000_000L;
 
     public static void main(String[] args) throws Exception {
-        if (args.length < 3) {
-            System.err.println("Usage: java CrimesDataProducer <bootstrap-servers> <data-folder> <records-per-second>");
-            System.err.println("Example: CrimesDataProducer broker-1:19092 /tmp/crimes-in-chicago_result/ 10");
+        CommandLineOptions cli = CommandLineOptions.parse(args);
+        if (cli.positionalCount() < 3) {
+            System.err.println("Usage: java CrimesDataProducer <bootstrap-servers> <data-folder> <records-per-second>" +
+                    " [--workers=N] [--preserve-order=true|false] [--replay-speed=FACTOR] [--metrics-interval=SECONDS]");
+            System.err.println("       data-folder = generate: [--records=N] [--seed=N] [--start-date=YYYY-MM-DD] [--days=N]" +
+                    " [--disorder-minutes=N] [--late-percent=P] [--late-hours=N] [--iucr=CSV]");
+            System.err.println("Example: CrimesDataProducer broker-1:19092 /tmp/crimes-in-chicago_result/ 10 --workers=4");
+            System.err.println("Example: CrimesDataProducer broker-1:19092 generate 0 --workers=8 --records=100000000");
             System.exit(1);
         }
 
-        String bootstrapServers = args[0];
-        String dataFolder = args[1];
-        int recordsPerSecond = Integer.parseInt(args[2]);
+        String bootstrapServers = cli.positional(0);
+        String dataFolder = cli.positional(1);
+        double recordsPerSecond = Double.parseDouble(cli.positional(2));
+        int workers = Math.max(1, cli.getInt("workers", 1));
+        boolean preserveOrder = cli.getBoolean("preserve-order", true);
+        double replaySpeed = cli.getDouble("replay-speed", 0);
+        long metricsInterval = cli.getLong("metrics-interval", 10);
 
         System.out.println("Bootstrap servers: " + bootstrapServers);
         System.out.println("Data folder: " + dataFolder);
-        System.out.println("Records per second: " + recordsPerSecond);
+        System.out.println("Workers: " + workers + ", preserve order within file: " + preserveOrder);
+
+        RecordPacer pacer;
+        if (replaySpeed > 0) {
+            // Tempo wyznacza pole Date rekordów, limit rekordów na sekundę jest pomijany
+            System.out.println("Event-time replay at " + replaySpeed + "x real time");
+            pacer = RecordPacer.eventTime(replaySpeed);
+        } else if (recordsPerSecond > 0) {
+            System.out.println("Records per second: " + recordsPerSecond);
+            pacer = RecordPacer.tokenBucket(recordsPerSecond);
+        } else {
+            System.out.println("Records per second: unlimited");
+            pacer = RecordPacer.unlimited();
+        }
 
         // Konfiguracja producenta z optymalizacjami
         Properties props = new Properties();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        // Wartości są gotowym JSON-em w bajtach (CrimeJsonWriter) - serializer ich nie kopiuje
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
 
-        KafkaProducer<String, String> producer = new KafkaProducer<>(props);
+        KafkaProducer<String, byte[]> producer = new KafkaProducer<>(props);
+        ProducerMetrics metrics = new ProducerMetrics(producer);
+        ScheduledExecutorService reporter = metricsInterval > 0 ? metrics.startReporter(metricsInterval) : null;
 
         try {
-            processDataFolder(producer, dataFolder, recordsPerSecond);
+            if (CrimeGenerator.GENERATE.equals(dataFolder)) {
+                generateRecords(producer, createGenerator(cli), pacer, workers, metrics);
+            } else {
+                processDataFolder(producer, dataFolder, pacer, workers, preserveOrder, metrics);
+            }
         } finally {
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
             producer.close();
             System.out.println("Producer closed");
         }
     }
 
     /**
-     * Przetwarza wszystkie pliki part-* w folderze
+     * Przetwarza wszystkie pliki part-* w folderze. Każda jednostka pracy (plik albo zakres
+     * bajtów dużego pliku) jest parsowana na osobnym wątku, wszystkie wysyłają przez wspólny
+     * KafkaProducer (jest bezpieczny wielowątkowo).
      */
-    private static void processDataFolder(KafkaProducer<String, String> producer,
-                                          String folderPath, int recordsPerSecond) throws Exception {
+    private static void processDataFolder(Producer<String, byte[]> producer, String folderPath,
+                                          RecordPacer pacer, int workers, boolean preserveOrder,
+                                          ProducerMetrics metrics) throws Exception {
 
         Path folder = Paths.get(folderPath);
         if (!Files.exists(folder) || !Files.isDirectory(folder)) {
@@ -70,24 +116,133 @@ public class CrimesDataProducer {
 
         System.out.println("Found " + partFiles.size() + " part-* files");
 
+        List<WorkUnit> units = planWorkUnits(partFiles, workers, preserveOrder);
+        int parallelism = Math.min(workers, units.size());
+
         long totalRecordsSent = 0;
         long totalRecordsSkipped = 0;
         long startTime = System.currentTimeMillis();
 
-        // Przetwórz każdy plik
-        for (int i = 0; i < partFiles.size(); i++) {
-            Path partFile = partFiles.get(i);
-            System.out.println("Processing file " + (i + 1) + "/" + partFiles.size() +
-                    ": " + partFile.getFileName());
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "producer-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<ProcessingResult>> results = new ArrayList<>();
+            for (int i = 0; i < units.size(); i++) {
+                WorkUnit unit = units.get(i);
+                String progress = (i + 1) + "/" + units.size();
+                results.add(executor.submit(() -> {
+                    System.out.println("Processing " + progress + ": " + unit + " on " + Thread.currentThread().getName());
+                    return processPartFile(producer, unit, pacer, metrics);
+                }));
+            }
 
-            ProcessingResult result = processPartFile(producer, partFile, recordsPerSecond);
-            totalRecordsSent += result.sent;
-            totalRecordsSkipped += result.skipped;
+            // Wyniki zbierane w kolejności jednostek, niezależnie od kolejności zakończenia
+            for (int i = 0; i < units.size(); i++) {
+                ProcessingResult result = results.get(i).get();
+                totalRecordsSent += result.sent;
+                totalRecordsSkipped += result.skipped;
 
-            System.out.println("  Sent: " + result.sent + ", Skipped: " + result.skipped +
-                    " from " + partFile.getFileName());
+                System.out.println("  Sent: " + result.sent + ", Skipped: " + result.skipped +
+                        " from " + units.get(i));
+            }
+        } finally {
+            executor.shutdownNow();
         }
 
+        printFinalStatistics(producer, totalRecordsSent, totalRecordsSkipped, startTime, metrics);
+    }
+
+    /**
+     * Generator zamiast plików (folder danych "generate"): rozkłady kodów IUCR ze słownika CSV,
+     * dzielnic, aresztowań i współrzędnych są opisane w {@link CrimeGenerator}
+     */
+    private static CrimeGenerator createGenerator(CommandLineOptions cli) throws IOException {
+        Path iucrFile = Paths.get(cli.get("iucr",
+                "Chicago_Police_Department_-_Illinois_Uniform_Crime_Reporting__IUCR__Codes.csv"));
+        long records = cli.getLong("records", 10_000_000L);
+        long seed = cli.getLong("seed", 42);
+        LocalDate startDate = LocalDate.parse(cli.get("start-date", "2015-01-01"));
+        int days = cli.getInt("days", 1095);
+        int disorderMinutes = cli.getInt("disorder-minutes", 0);
+        double latePercent = cli.getDouble("late-percent", 0);
+        int lateHours = cli.getInt("late-hours", 48);
+
+        System.out.println("Generator: " + records + " records over " + days + " days from " + startDate +
+                ", seed " + seed + ", IUCR codes from " + iucrFile);
+        System.out.println("Out of order: up to " + disorderMinutes + " min, " + latePercent +
+                "% late by up to " + lateHours + " h");
+        return new CrimeGenerator(IucrDictionary.readCsv(iucrFile), seed, records,
+                startDate.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(),
+                days, disorderMinutes, latePercent, lateHours);
+    }
+
+    /**
+     * Wątek w generuje rekordy o numerach w, w + workers, w + 2 * workers, ... - razem wszystkie
+     * numery po kolei, a treść rekordu nie zależy od liczby wątków. Tempo i metryki są wspólne.
+     */
+    private static void generateRecords(Producer<String, byte[]> producer, CrimeGenerator generator,
+                                        RecordPacer pacer, int workers, ProducerMetrics metrics) throws Exception {
+        long startTime = System.currentTimeMillis();
+        long totalRecordsSent = 0;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "producer-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int first = w;
+                results.add(executor.submit(() -> generatePartition(producer, generator, first, workers, pacer, metrics)));
+            }
+            for (Future<Long> result : results) {
+                totalRecordsSent += result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        printFinalStatistics(producer, totalRecordsSent, 0, startTime, metrics);
+    }
+
+    private static long generatePartition(Producer<String, byte[]> producer, CrimeGenerator generator,
+                                          int first, int step, RecordPacer pacer, ProducerMetrics metrics) {
+        CrimeGenerator.Cursor cursor = generator.cursor();
+        boolean eventTimePacing = pacer.usesEventTime();
+        String worker = Thread.currentThread().getName();
+        long sent = 0;
+
+        for (long index = first; index < generator.records(); index += step) {
+            byte[] json = cursor.next(index);
+            pacer.acquire(eventTimePacing ? cursor.eventTime() : CrimeDateParser.INVALID_TIME);
+
+            long recordIndex = index;
+            producer.send(new ProducerRecord<>(TOPIC, cursor.key(), json),
+                    metrics.onSend(json.length, (metadata, exception) ->
+                            System.err.println("Error sending generated record #" + recordIndex + ": " +
+                                    exception.getMessage())));
+            sent++;
+
+            if (sent % GENERATOR_PROGRESS_INTERVAL == 0) {
+                System.out.println("    [" + worker + "] Generated " + sent + " records");
+            }
+        }
+        return sent;
+    }
+
+    private static void printFinalStatistics(Producer<String, byte[]> producer, long totalRecordsSent,
+                                             long totalRecordsSkipped, long startTime, ProducerMetrics metrics) {
+        // Czekamy na potwierdzenia wszystkich rekordów, żeby statystyki dostarczania były pełne
+        producer.flush();
+
         long duration = System.currentTimeMillis() - startTime;
         System.out.println("\n=== FINAL STATISTICS ===");
         System.out.println("Total records sent: " + totalRecordsSent);
@@ -98,12 +253,75 @@ public class CrimesDataProducer {
             double successRate = (double) totalRecordsSent / (totalRecordsSent + totalRecordsSkipped) * 100;
             System.out.println("Success rate: " + String.format("%.2f", successRate) + "%");
         }
+        System.out.println(metrics.finalReport());
+    }
+
+    /**
+     * Dzieli pliki na jednostki pracy. Bez wymogu kolejności duże pliki są cięte na zakresy
+     * bajtów wyrównane do początku wiersza CSV (z pominięciem znaków nowej linii w cudzysłowie).
+     */
+    private static List<WorkUnit> planWorkUnits(List<Path> partFiles, int workers,
+                                                boolean preserveOrder) throws IOException {
+        List<WorkUnit> units = new ArrayList<>();
+        for (Path file : partFiles) {
+            long size = Files.size(file);
+            if (preserveOrder || workers == 1 || size < MIN_SPLIT_BYTES) {
+                units.add(new WorkUnit(file, 0, size, true));
+                continue;
+            }
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long start = 0;
+                for (long boundary : rowBoundaries(channel, size, Math.max(MIN_SPLIT_BYTES / 2, size / workers))) {
+                    units.add(new WorkUnit(file, start, boundary, false));
+                    start = boundary;
+                }
+                units.add(new WorkUnit(file, start, size, false));
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Granice zakresów co około chunk bajtów: pozycja po pierwszym '\n' poza cudzysłowem od pozycji
+     * docelowej. Według RFC 4180 cudzysłów występuje tylko wokół pola albo podwojony wewnątrz niego,
+     * więc '\n' jest końcem wiersza wtedy, gdy liczba cudzysłowów przed nim jest parzysta. Wymaga to
+     * jednego sekwencyjnego przejścia przez plik przed startem wątków.
+     */
+    private static List<Long> rowBoundaries(FileChannel channel, long size, long chunk) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        byte[] bytes = buffer.array();
+        boolean quoted = false;
+        long target = chunk;
+        long position = 0;
+        while (position < size && target < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = bytes[i];
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n' && !quoted && position + i >= target) {
+                    long boundary = position + i + 1;
+                    if (boundary < size) {
+                        boundaries.add(boundary);
+                    }
+                    target = boundary + chunk;
+                }
+            }
+            position += read;
+        }
+        return boundaries;
     }
 
     /**
      * Znajduje pliki part-*
      */
-    private static List<Path> findPartFiles(Path folder) throws IOException {
+    static List<Path> findPartFiles(Path folder) throws IOException {
         List<Path> partFiles = new ArrayList<>();
 
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder)) {
@@ -127,53 +345,58 @@ public class CrimesDataProducer {
     }
 
     /**
-     * Przetwarza pojedynczy plik part-*
+     * Przetwarza pojedynczy plik part-* albo jego zakres bajtów
      */
-    private static ProcessingResult processPartFile(KafkaProducer<String, String> producer,
-                                                    Path partFile, int recordsPerSecond) {
-
-        CsvMapper csvMapper = new CsvMapper();
-        CsvSchema schema = CsvSchema.emptySchema().withHeader();
+    private static ProcessingResult processPartFile(Producer<String, byte[]> producer,
+                                                    WorkUnit unit, RecordPacer pacer, ProducerMetrics metrics) {
         long sent = 0;
         long skipped = 0;
-        long delayMs = recordsPerSecond > 0 ? 1000 / recordsPerSecond : 0;
 
-        try {
-            Iterator<CrimeRecord> iterator = csvMapper
-                    .readerFor(CrimeRecord.class)
-                    .with(schema)
-                    .readValues(partFile.toFile());
+        try (MappedCsvReader csv = new MappedCsvReader(unit.file, unit.start, unit.end)) {
+            CrimeCsvColumns columns = new CrimeCsvColumns(csv);
+            CrimeJsonWriter writer = new CrimeJsonWriter();
+            boolean eventTimePacing = pacer.usesEventTime();
 
-            while (iterator.hasNext()) {
+            while (csv.next()) {
                 try {
-                    // KLUCZOWA ZMIANA: Przechwytuj błędy deserializacji dla każdego rekordu
-                    CrimeRecord crime = iterator.next();
-
-                    if (sendCrimeRecord(producer, crime)) {
-                        sent++;
-                    } else {
+                    // Walidacja na surowych polach - odrzucone wiersze nie tworzą obiektów
+                    ProducerMetrics.SkipReason invalid = validateRow(csv, columns);
+                    if (invalid != null) {
+                        metrics.skipped(invalid);
                         skipped++;
+                    } else {
+                        // Tempo wspólne dla wszystkich wątków (limit rekordów/s albo czas zdarzeń)
+                        pacer.acquire(eventTimePacing
+                                ? CrimeDateParser.parseEpochMillis(csv.getChars(columns.date))
+                                : CrimeDateParser.INVALID_TIME);
+
+                        // JSON powstaje bezpośrednio z bajtów pól CSV, bez CrimeRecord i Stringa
+                        String key = writer.key(csv, columns);
+                        byte[] json = writer.write(csv, columns);
+                        long rowNumber = csv.rowNumber();
+
+                        producer.send(new ProducerRecord<>(TOPIC, key, json),
+                                metrics.onSend(json.length, (metadata, exception) ->
+                                        System.err.println("Error sending record #" + rowNumber + " from " + unit +
+                                                ": " + exception.getMessage())));
+                        sent++;
                     }
 
                     // Progress co 5000 rekordów
                     if ((sent + skipped) % 5000 == 0) {
-                        System.out.println("    Processed " + (sent + skipped) +
+                        System.out.println("    [" + unit + "] Processed " + (sent + skipped) +
                                 " records (sent: " + sent + ", skipped: " + skipped + ")");
                     }
 
-                    // Podstawowe opóźnienie
-                    if (delayMs > 0) {
-                        Thread.sleep(delayMs);
-                    }
-
                 } catch (Exception e) {
                     // KLUCZOWA ZMIANA: Przechwytuj błędy dla pojedynczego rekordu
+                    metrics.skipped(ProducerMetrics.SkipReason.PARSE_ERROR);
                     skipped++;
 
                     // Loguj błąd ale kontynuuj przetwarzanie
                     if (skipped % 100 == 1) { // Loguj co 100ty błąd żeby nie zapełnić logów
-                        System.err.println("Skipping invalid record #" + (sent + skipped) +
-                                " in file " + partFile.getFileName() +
+                        System.err.println("Skipping invalid record #" + csv.rowNumber() +
+                                " in " + unit +
                                 ": " + e.getMessage());
                     }
 
@@ -183,7 +406,7 @@ public class CrimesDataProducer {
             }
 
         } catch (Exception e) {
-            System.err.println("Error opening file " + partFile.getFileName() + ": " + e.getMessage());
+            System.err.println("Error opening file " + unit + ": " + e.getMessage());
             // Nie wyrzucaj wyjątku - kontynuuj z następnym plikiem
         }
 
@@ -191,85 +414,70 @@ public class CrimesDataProducer {
     }
 
     /**
-     * Wysyła rekord do Kafka z walidacją danych
-     */
-    private static boolean sendCrimeRecord(KafkaProducer<String, String> producer, CrimeRecord crime) {
-        try {
-            // KLUCZOWA ZMIANA: Walidacja danych przed wysłaniem
-            if (!isValidCrimeRecord(crime)) {
-                return false; // Pomiń nieprawidłowy rekord
-            }
-
-            String json = JSON_MAPPER.writeValueAsString(crime);
-            String key = crime.getDistrict() != null ? crime.getDistrict() : crime.getId();
-
-            ProducerRecord<String, String> record = new ProducerRecord<>(TOPIC, key, json);
-
-            producer.send(record, (metadata, exception) -> {
-                if (exception != null) {
-                    System.err.println("Error sending record " + crime.getId() + ": " + exception.getMessage());
-                }
-            });
-
-            return true;
-
-        } catch (Exception e) {
-            // Loguj błąd ale nie przerywaj przetwarzania
-            System.err.println("Error serializing record " +
-                    (crime != null ? crime.getId() : "unknown") + ": " + e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * KLUCZOWA ZMIANA: Walidacja poprawności rekordu
+     * Walidacja poprawności rekordu na surowych polach CSV: wymagane ID i Date,
+     * współrzędne mogą być puste (missing data), ale jeśli są podane - muszą być poprawne
+     *
+     * @return przyczyna odrzucenia albo null dla poprawnego wiersza
      */
-    private static boolean isValidCrimeRecord(CrimeRecord crime) {
-        // Sprawdź podstawowe pola
-        if (crime == null) {
-            return false;
+    private static ProducerMetrics.SkipReason validateRow(MappedCsvReader csv, CrimeCsvColumns columns) {
+        if (csv.isBlank(columns.id)) {
+            return ProducerMetrics.SkipReason.MISSING_ID;
         }
-
-        if (crime.getId() == null || crime.getId().trim().isEmpty()) {
-            return false;
+        if (csv.isBlank(columns.date)) {
+            return ProducerMetrics.SkipReason.MISSING_DATE;
         }
 
-        if (crime.getDate() == null || crime.getDate().trim().isEmpty()) {
-            return false;
+        double latitude = csv.getDouble(columns.latitude);
+        if (!Double.isNaN(latitude) && !isValidLatitude(latitude)) {
+            return ProducerMetrics.SkipReason.BAD_LATITUDE;
         }
 
-        // Opcjonalnie: sprawdź czy współrzędne są prawidłowe
-        // Jeśli są null - to OK (missing data)
-        // Jeśli nie są null - muszą być poprawne
-        if (crime.getLatitude() != null) {
-            if (!isValidLatitude(crime.getLatitude())) {
-                return false;
-            }
+        double longitude = csv.getDouble(columns.longitude);
+        if (!Double.isNaN(longitude) && !isValidLongitude(longitude)) {
+            return ProducerMetrics.SkipReason.BAD_LONGITUDE;
         }
-
-        if (crime.getLongitude() != null) {
-            if (!isValidLongitude(crime.getLongitude())) {
-                return false;
-            }
-        }
-
-        return true;
+        return null;
     }
 
     /**
      * Sprawdza czy latitude jest w prawidłowym zakresie
      */
-    private static boolean isValidLatitude(Double latitude) {
+    private static boolean isValidLatitude(double latitude) {
         return latitude >= -90.0 && latitude <= 90.0;
     }
 
     /**
      * Sprawdza czy longitude jest w prawidłowym zakresie
      */
-    private static boolean isValidLongitude(Double longitude) {
+    private static boolean isValidLongitude(double longitude) {
         return longitude >= -180.0 && longitude <= 180.0;
     }
 
+    /**
+     * Plik albo zakres bajtów [start, end) pliku
+     */
+    private static class WorkUnit {
+        final Path file;
+        final long start;
+        final long end;
+        final boolean wholeFile;
+
+        WorkUnit(Path file, long start, long end, boolean wholeFile) {
+            this.file = file;
+            this.start = start;
+            this.end = end;
+            this.wholeFile = wholeFile;
+        }
+
+        @Override
+        public String toString() {
+            if (wholeFile) {
+                return file.getFileName().toString();
+            }
+            return file.getFileName() + "[" + start + ".." + end + ")";
+        }
+    }
+
     /**
      * Klasa pomocnicza do przechowywania wyników przetwarzania
      */
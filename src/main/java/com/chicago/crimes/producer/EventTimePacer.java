@@ -0,0 +1,42 @@
+package com.chicago.crimes.producer;
+
+import com.chicago.crimes.utils.CrimeDateParser;
+
+/**
+ * Odtwarzanie w czasie zdarzeń: rekord jest wysyłany, gdy od startu upłynęło
+ * (Date - Date pierwszego rekordu) / przyspieszenie. Rekordy spóźnione względem
+ * zegara i rekordy bez poprawnej daty idą od razu.
+ */
+class EventTimePacer implements RecordPacer {
+    private final double speedUp;
+    private long firstEventMillis = CrimeDateParser.INVALID_TIME;
+    private long startNanos;
+
+    EventTimePacer(double speedUp) {
+        if (speedUp <= 0) {
+            throw new IllegalArgumentException("Replay speed-up must be positive: " + speedUp);
+        }
+        this.speedUp = speedUp;
+    }
+
+    @Override
+    public void acquire(long eventTimeMillis) {
+        if (eventTimeMillis == CrimeDateParser.INVALID_TIME) {
+            return;
+        }
+        RecordPacer.sleepUntil(deadline(eventTimeMillis));
+    }
+
+    @Override
+    public boolean usesEventTime() {
+        return true;
+    }
+
+    private synchronized long deadline(long eventMillis) {
+        if (firstEventMillis == CrimeDateParser.INVALID_TIME) {
+            firstEventMillis = eventMillis;
+            startNanos = System.nanoTime();
+        }
+        return startNanos + (long) ((eventMillis - firstEventMillis) * 1_000_000.0 / speedUp);
+    }
+}
@@ -0,0 +1,98 @@
+package com.chicago.crimes.producer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Histogram logarytmiczno-liniowy w stylu HdrHistogram: każda potęga dwójki jest podzielona
+ * na 64 przedziały, więc błąd względny percentyla nie przekracza ~1.6%. Zapis jest bez blokad
+ * (AtomicLongArray) i może odbywać się z wątków I/O producenta.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;      // 128
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT >> 1;      // 64
+    private static final int MAX_BUCKET = 40;                              // ~2^47 jednostek
+
+    private final AtomicLongArray counts = new AtomicLongArray((MAX_BUCKET + 2) * SUB_BUCKET_HALF);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        max.accumulate(value);
+    }
+
+    /**
+     * Migawka liczników - percentyle są liczone na kopii, bez blokowania zapisów.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, max.get());
+    }
+
+    private static int indexOf(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        if (bucket > MAX_BUCKET) {
+            return (MAX_BUCKET + 2) * SUB_BUCKET_HALF - 1;
+        }
+        int subBucket = (int) (value >>> bucket);
+        return bucket == 0 ? subBucket : (bucket + 1) * SUB_BUCKET_HALF + subBucket - SUB_BUCKET_HALF;
+    }
+
+    // Największa wartość, która trafia do przedziału o podanym indeksie
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int bucket = index / SUB_BUCKET_HALF - 1;
+        long subBucket = index % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << bucket) - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long max;
+
+        private Snapshot(long[] counts, long total, long max) {
+            this.counts = counts;
+            this.total = total;
+            this.max = max;
+        }
+
+        public long count() {
+            return total;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        /**
+         * @param percentile wartość z zakresu (0, 100]
+         * @return górna granica przedziału, w którym leży percentyl, albo 0 dla pustego histogramu
+         */
+        public long percentile(double percentile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
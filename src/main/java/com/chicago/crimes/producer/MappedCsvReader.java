@@ -0,0 +1,395 @@
+package com.chicago.crimes.producer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Czytnik CSV działający bezpośrednio na pliku zmapowanym w pamięci (FileChannel.map).
+ * Pola są zapamiętywane jako przesunięcia w buforze; liczby i wartości logiczne są parsowane
+ * z bajtów, a String powstaje tylko dla pól, o które wywołujący zapyta.
+ *
+ * Obsługuje cudzysłowy zgodnie z RFC 4180: pole w cudzysłowie może zawierać przecinki i znaki
+ * nowej linii, a "" oznacza znak cudzysłowu. Czytane są wiersze zaczynające się w zakresie
+ * [start, end); ostatni wiersz może wykraczać poza end. Nagłówek jest zawsze czytany z początku pliku.
+ */
+class MappedCsvReader implements Closeable {
+    private static final long SEGMENT_BYTES = 256L * 1024 * 1024;
+    private static final int MAX_FIELDS = 64;
+    // 10^k jest dokładnie reprezentowalne jako double dla k <= 22
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long end;
+    private final String[] header;
+
+    private MappedByteBuffer segment;
+    private long segmentBase;
+    private long position;
+    private long rowNumber;
+
+    // Pola bieżącego wiersza: przesunięcia względem początku segmentu
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final boolean[] fieldEscaped = new boolean[MAX_FIELDS];
+    private int fieldCount;
+
+    private byte[] scratch = new byte[256];
+    private final FieldChars fieldChars = new FieldChars();
+
+    MappedCsvReader(Path file, long start, long end) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.end = Math.min(end, fileSize);
+
+        map(0);
+        if (readRow()) {
+            header = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                header[i] = getString(i).trim();
+            }
+        } else {
+            header = new String[0];
+        }
+        if (start > position) {
+            position = start;
+        }
+        rowNumber = 0;
+    }
+
+    int columnIndex(String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Przechodzi do następnego niepustego wiersza w zakresie.
+     */
+    boolean next() throws IOException {
+        while (position < end) {
+            if (!readRow()) {
+                return false;
+            }
+            if (fieldCount > 1 || fieldEnd[0] > fieldStart[0] || fieldEscaped[0]) {
+                rowNumber++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    long rowNumber() {
+        return rowNumber;
+    }
+
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Puste, złożone z samych białych znaków albo nieistniejące pole.
+     */
+    boolean isBlank(int column) {
+        if (column < 0 || column >= fieldCount) {
+            return true;
+        }
+        for (int i = fieldStart[column]; i < fieldEnd[column]; i++) {
+            if ((segment.get(i) & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return wartość pola albo null dla nieistniejącej kolumny
+     */
+    String getString(int column) {
+        if (column < 0 || column >= fieldCount) {
+            return null;
+        }
+        int length = copyField(column);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Kopiuje bajty pola do bufora roboczego zwracanego przez {@link #fieldBuffer()}.
+     *
+     * @return liczba bajtów albo -1 dla nieistniejącej kolumny
+     */
+    int loadField(int column) {
+        if (column < 0 || column >= fieldCount) {
+            return -1;
+        }
+        return copyField(column);
+    }
+
+    /**
+     * Bufor z bajtami ostatnio wczytanego pola - ważny do następnego wywołania na tym czytniku.
+     */
+    byte[] fieldBuffer() {
+        return scratch;
+    }
+
+    /**
+     * Widok znakowy (ASCII) pola bez tworzenia Stringa - ważny do następnego wywołania na tym czytniku.
+     *
+     * @return widok pola albo null dla nieistniejącej kolumny
+     */
+    CharSequence getChars(int column) {
+        int length = loadField(column);
+        if (length < 0) {
+            return null;
+        }
+        fieldChars.length = length;
+        return fieldChars;
+    }
+
+    /**
+     * @return wartość pola albo NaN dla pustego pola
+     * @throws NumberFormatException dla wartości, która nie jest liczbą
+     */
+    double getDouble(int column) {
+        if (isBlank(column)) {
+            return Double.NaN;
+        }
+        int i = fieldStart[column];
+        int limit = fieldEnd[column];
+        boolean negative = false;
+        byte b = segment.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (; i < limit; i++) {
+            b = segment.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fraction) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && !fraction) {
+                fraction = true;
+            } else {
+                digits = Integer.MAX_VALUE; // wykładnik, spacje itp. - wolna ścieżka
+                break;
+            }
+        }
+        // Mantysa < 2^53 i dokładna potęga 10 dają wynik identyczny z Double.parseDouble
+        if (digits > 0 && digits <= 15 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(getString(column).trim());
+    }
+
+    /**
+     * @return wartość pola "true"/"false" (bez względu na wielkość liter), false dla pustego pola
+     */
+    boolean getBoolean(int column) {
+        if (isBlank(column)) {
+            return false;
+        }
+        if (fieldEquals(column, "true")) {
+            return true;
+        }
+        if (fieldEquals(column, "false")) {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a boolean value: " + getString(column));
+    }
+
+    private boolean fieldEquals(int column, String lowerCaseAscii) {
+        int start = fieldStart[column];
+        if (fieldEnd[column] - start != lowerCaseAscii.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseAscii.length(); i++) {
+            if ((segment.get(start + i) | 0x20) != lowerCaseAscii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Kopiuje bajty pola (z rozwinięciem "" na ") do bufora roboczego.
+     *
+     * @return liczba bajtów
+     */
+    private int copyField(int column) {
+        int start = fieldStart[column];
+        int length = fieldEnd[column] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        if (!fieldEscaped[column]) {
+            segment.get(start, scratch, 0, length);
+            return length;
+        }
+        int out = 0;
+        for (int i = start; i < start + length; i++) {
+            byte b = segment.get(i);
+            scratch[out++] = b;
+            if (b == '"') {
+                i++; // drugi znak pary ""
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Czyta wiersz od bieżącej pozycji. Jeśli wiersz nie mieści się w segmencie,
+     * segment jest mapowany ponownie od początku wiersza.
+     */
+    private boolean readRow() throws IOException {
+        if (position >= fileSize) {
+            return false;
+        }
+        while (true) {
+            if (position - segmentBase < 0 || position >= segmentBase + segment.limit()) {
+                map(position);
+            }
+            int next = parseRow((int) (position - segmentBase));
+            if (next >= 0) {
+                position = segmentBase + next;
+                return true;
+            }
+            if (segmentBase + segment.limit() >= fileSize) {
+                throw new IOException("Unterminated quoted field at byte " + position);
+            }
+            if (segmentBase == position) {
+                throw new IOException("CSV row longer than " + SEGMENT_BYTES + " bytes at byte " + position);
+            }
+            map(position);
+        }
+    }
+
+    /**
+     * @return przesunięcie początku następnego wiersza albo -1, jeśli wiersz jest ucięty końcem segmentu
+     */
+    private int parseRow(int p) {
+        int limit = segment.limit();
+        boolean lastSegment = segmentBase + limit >= fileSize;
+        fieldCount = 0;
+
+        while (true) {
+            if (fieldCount == MAX_FIELDS) {
+                throw new IllegalStateException("More than " + MAX_FIELDS + " fields in CSV row");
+            }
+            int field = fieldCount++;
+            fieldEscaped[field] = false;
+
+            if (p < limit && segment.get(p) == '"') {
+                int start = ++p;
+                while (true) {
+                    if (p >= limit) {
+                        return -1;
+                    }
+                    if (segment.get(p) == '"') {
+                        if (p + 1 < limit && segment.get(p + 1) == '"') {
+                            fieldEscaped[field] = true;
+                            p += 2;
+                            continue;
+                        }
+                        if (p + 1 >= limit && !lastSegment) {
+                            return -1;
+                        }
+                        break;
+                    }
+                    p++;
+                }
+                fieldStart[field] = start;
+                fieldEnd[field] = p;
+                p++; // zamykający cudzysłów
+                // Znaki między cudzysłowem a separatorem są pomijane
+                while (p < limit && segment.get(p) != ',' && segment.get(p) != '\n' && segment.get(p) != '\r') {
+                    p++;
+                }
+            } else {
+                fieldStart[field] = p;
+                while (p < limit) {
+                    byte b = segment.get(p);
+                    if (b == ',' || b == '\n' || b == '\r') {
+                        break;
+                    }
+                    p++;
+                }
+                fieldEnd[field] = p;
+            }
+
+            if (p >= limit) {
+                return lastSegment ? p : -1;
+            }
+            byte separator = segment.get(p++);
+            if (separator == ',') {
+                continue;
+            }
+            if (separator == '\r') {
+                if (p >= limit && !lastSegment) {
+                    return -1;
+                }
+                if (p < limit && segment.get(p) == '\n') {
+                    p++;
+                }
+            }
+            return p;
+        }
+    }
+
+    private void map(long offset) throws IOException {
+        long size = Math.min(SEGMENT_BYTES, fileSize - offset);
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+        segmentBase = offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private class FieldChars implements CharSequence {
+        int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (scratch[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
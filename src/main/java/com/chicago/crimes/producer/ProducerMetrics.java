@@ -0,0 +1,180 @@
+package com.chicago.crimes.producer;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metryki dostarczania producenta: rekordy i bajty na sekundę, bajty w locie, opóźnienie
+ * send -> ack (histogram z p50/p99/p999), przyczyny odrzucenia rekordów oraz wybrane metryki
+ * klienta Kafka (wyczerpanie bufora, czas blokowania w send, rozmiar paczek).
+ *
+ * Liczniki są bez blokad (LongAdder), więc mogą być aktualizowane z wątków roboczych
+ * i z wątku I/O producenta wywołującego callbacki.
+ */
+class ProducerMetrics {
+
+    /** Przyczyny pominięcia rekordu. */
+    enum SkipReason {
+        MISSING_ID,
+        MISSING_DATE,
+        BAD_LATITUDE,
+        BAD_LONGITUDE,
+        PARSE_ERROR,
+        SEND_ERROR
+    }
+
+    private static final String PRODUCER_GROUP = "producer-metrics";
+
+    private final LongAdder recordsSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder recordsAcked = new LongAdder();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicLong maxInFlightBytes = new AtomicLong();
+    private final Map<SkipReason, LongAdder> skipped = new EnumMap<>(SkipReason.class);
+    // Opóźnienie od wywołania send do potwierdzenia przez brokera, w mikrosekundach
+    private final LatencyHistogram ackLatencyMicros = new LatencyHistogram();
+
+    private final Producer<?, ?> producer;
+    private final long startNanos = System.nanoTime();
+
+    // Stan poprzedniego raportu - do wyliczenia tempa w interwale
+    private long lastReportNanos = startNanos;
+    private long lastRecords;
+    private long lastBytes;
+
+    ProducerMetrics(Producer<?, ?> producer) {
+        this.producer = producer;
+        for (SkipReason reason : SkipReason.values()) {
+            skipped.put(reason, new LongAdder());
+        }
+    }
+
+    /**
+     * Rejestruje wysłanie rekordu i zwraca callback, który zapisze potwierdzenie albo błąd.
+     *
+     * @param onError wywoływany dla nieudanej wysyłki (np. logowanie), może być null
+     */
+    Callback onSend(int bytes, Callback onError) {
+        long sendNanos = System.nanoTime();
+        recordsSent.increment();
+        bytesSent.add(bytes);
+        long inFlight = inFlightBytes.addAndGet(bytes);
+        if (inFlight > maxInFlightBytes.get()) {
+            maxInFlightBytes.accumulateAndGet(inFlight, Math::max);
+        }
+
+        return (metadata, exception) -> {
+            inFlightBytes.addAndGet(-bytes);
+            if (exception != null) {
+                skipped(SkipReason.SEND_ERROR);
+                if (onError != null) {
+                    onError.onCompletion(metadata, exception);
+                }
+            } else {
+                recordsAcked.increment();
+                ackLatencyMicros.record((System.nanoTime() - sendNanos) / 1_000);
+            }
+        };
+    }
+
+    void skipped(SkipReason reason) {
+        skipped.get(reason).increment();
+    }
+
+    long skippedTotal() {
+        long total = 0;
+        for (LongAdder adder : skipped.values()) {
+            total += adder.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Uruchamia okresowe raportowanie na wątku demona.
+     */
+    ScheduledExecutorService startReporter(long intervalSeconds) {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "producer-metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> System.out.println(intervalReport()),
+                intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        return reporter;
+    }
+
+    /**
+     * Jednolinijkowy raport z tempem od poprzedniego raportu.
+     */
+    synchronized String intervalReport() {
+        long now = System.nanoTime();
+        long records = recordsSent.sum();
+        long bytes = bytesSent.sum();
+        double seconds = Math.max(1e-9, (now - lastReportNanos) / 1e9);
+        double recordsPerSecond = (records - lastRecords) / seconds;
+        double bytesPerSecond = (bytes - lastBytes) / seconds;
+        lastReportNanos = now;
+        lastRecords = records;
+        lastBytes = bytes;
+
+        LatencyHistogram.Snapshot latency = ackLatencyMicros.snapshot();
+        return String.format("[metrics] sent=%d (%.0f rec/s, %.2f MB/s) acked=%d in-flight=%.2f MB" +
+                        " ack p50=%.2f ms p99=%.2f ms p999=%.2f ms skipped=%d buffer-wait=%.0f ms batch-avg=%.0f B",
+                records, recordsPerSecond, bytesPerSecond / 1_000_000, recordsAcked.sum(),
+                inFlightBytes.get() / 1_000_000.0,
+                latency.percentile(50) / 1000.0, latency.percentile(99) / 1000.0, latency.percentile(99.9) / 1000.0,
+                skippedTotal(), kafkaMetric("bufferpool-wait-time-ns-total") / 1_000_000, kafkaMetric("batch-size-avg"));
+    }
+
+    /**
+     * Pełny raport do bloku FINAL STATISTICS.
+     */
+    String finalReport() {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        LatencyHistogram.Snapshot latency = ackLatencyMicros.snapshot();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Throughput: %.0f records/s, %.2f MB/s%n",
+                recordsSent.sum() / seconds, bytesSent.sum() / seconds / 1_000_000));
+        report.append(String.format("Records acked: %d, max in-flight: %.2f MB%n",
+                recordsAcked.sum(), maxInFlightBytes.get() / 1_000_000.0));
+        report.append(String.format("Ack latency (ms): p50=%.2f p99=%.2f p999=%.2f max=%.2f (%d samples)%n",
+                latency.percentile(50) / 1000.0, latency.percentile(99) / 1000.0,
+                latency.percentile(99.9) / 1000.0, latency.max() / 1000.0, latency.count()));
+        report.append(String.format("Buffer pool: exhausted=%.0f, blocked in send=%.0f ms, available=%.2f MB%n",
+                kafkaMetric("buffer-exhausted-total"), kafkaMetric("bufferpool-wait-time-ns-total") / 1_000_000,
+                kafkaMetric("buffer-available-bytes") / 1_000_000));
+        report.append(String.format("Batch size (bytes): avg=%.0f max=%.0f, records per request avg=%.1f%n",
+                kafkaMetric("batch-size-avg"), kafkaMetric("batch-size-max"),
+                kafkaMetric("records-per-request-avg")));
+        report.append("Skipped by reason:");
+        for (Map.Entry<SkipReason, LongAdder> entry : skipped.entrySet()) {
+            report.append(' ').append(entry.getKey()).append('=').append(entry.getValue().sum());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Wartość metryki klienta z grupy producer-metrics albo NaN, gdy jej nie ma
+     * (np. MockProducer albo brak próbek).
+     */
+    private double kafkaMetric(String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+            MetricName metricName = entry.getKey();
+            if (metricName.name().equals(name) && metricName.group().equals(PRODUCER_GROUP)) {
+                Object value = entry.getValue().metricValue();
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,54 @@
+package com.chicago.crimes.producer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tempo wysyłania rekordów przez producenta. Jedna instancja jest współdzielona
+ * przez wszystkie wątki, więc limit dotyczy całego procesu.
+ */
+public interface RecordPacer {
+
+    /** Krótsze oczekiwania są kumulowane i odsypiane razem, zamiast usypiać wątek co rekord. */
+    long MIN_SLEEP_NANOS = 1_000_000L;
+
+    /**
+     * Blokuje wątek, aż rekord może zostać wysłany.
+     *
+     * @param eventTimeMillis czas zdarzenia rekordu albo CrimeDateParser.INVALID_TIME,
+     *                        jeśli {@link #usesEventTime()} zwraca false
+     */
+    void acquire(long eventTimeMillis);
+
+    /**
+     * Czy tempo zależy od czasu zdarzenia - tylko wtedy producent parsuje pole Date.
+     */
+    default boolean usesEventTime() {
+        return false;
+    }
+
+    static RecordPacer unlimited() {
+        return eventTimeMillis -> { };
+    }
+
+    static RecordPacer tokenBucket(double recordsPerSecond) {
+        return new TokenBucketPacer(recordsPerSecond);
+    }
+
+    static RecordPacer eventTime(double speedUp) {
+        return new EventTimePacer(speedUp);
+    }
+
+    /**
+     * Usypia wątek do podanej chwili System.nanoTime(), jeśli jest ona dość odległa.
+     */
+    static void sleepUntil(long deadlineNanos) {
+        long remaining = deadlineNanos - System.nanoTime();
+        if (remaining < MIN_SLEEP_NANOS) {
+            return;
+        }
+        while (remaining > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+            remaining = deadlineNanos - System.nanoTime();
+        }
+    }
+}
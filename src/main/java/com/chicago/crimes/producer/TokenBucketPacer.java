@@ -0,0 +1,38 @@
+package com.chicago.crimes.producer;
+
+/**
+ * Kubełek żetonów z precyzją nanosekundową. Każdy rekord rezerwuje kolejny slot czasowy;
+ * wątek śpi dopiero, gdy zaległość przekroczy {@link RecordPacer#MIN_SLEEP_NANOS}, więc przy
+ * dużych prędkościach usypianie odbywa się raz na paczkę rekordów, a nie co rekord.
+ */
+class TokenBucketPacer implements RecordPacer {
+    // Maksymalny zapas niewykorzystanego czasu (krótki burst po przestoju)
+    private static final long MAX_CREDIT_NANOS = 10_000_000L;
+
+    private final double nanosPerRecord;
+    private double nextFreeNanos;
+
+    TokenBucketPacer(double recordsPerSecond) {
+        if (recordsPerSecond <= 0) {
+            throw new IllegalArgumentException("Records per second must be positive: " + recordsPerSecond);
+        }
+        this.nanosPerRecord = 1_000_000_000.0 / recordsPerSecond;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    @Override
+    public void acquire(long eventTimeMillis) {
+        RecordPacer.sleepUntil(reserve());
+    }
+
+    private synchronized long reserve() {
+        long now = System.nanoTime();
+        double credit = Math.max(MAX_CREDIT_NANOS, nanosPerRecord);
+        if (nextFreeNanos < now - credit) {
+            nextFreeNanos = now - credit;
+        }
+        long slot = (long) nextFreeNanos;
+        nextFreeNanos += nanosPerRecord;
+        return slot;
+    }
+}
@@ -0,0 +1,403 @@
+package com.chicago.crimes.query;
+
+import com.chicago.crimes.ChicagoCrimesStreamsApp.DistrictCrimeCounts;
+import com.chicago.crimes.model.AnomalyAlert;
+import com.chicago.crimes.model.CategoryDistrictKey;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.MonthlyAggregateKey;
+import com.chicago.crimes.processor.CalendarMonthProcessor;
+import com.chicago.crimes.serde.JsonSerde;
+import com.chicago.crimes.utils.CrimeDateParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.TopologyDescription;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyWindowStore;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Zapytania HTTP/JSON o bieżący stan magazynów agregatów i okien anomalii (interactive queries):
+ *
+ * GET /aggregates?month=2015-01 | from=2015-01&amp;to=2015-03 [&amp;category=THEFT] [&amp;district=11]
+ * GET /anomalies [?district=11] [&amp;from=2015-01-01] [&amp;to=2015-02-01T00:00:00Z] [&amp;anomaliesOnly=true]
+ *
+ * Zapytanie o dzielnicę trafia do instancji, która ma jej partycję (queryMetadataForKey), pozostałe
+ * są rozsyłane do wszystkich instancji z magazynem i łączone. Instancje odpytują się nawzajem
+ * z parametrem local=true. Lokalne wyniki są trzymane w {@link QueryResultCache}.
+ */
+public class CrimesQueryServer implements AutoCloseable {
+
+    public static final String MONTHLY_WINDOW_STORE = "monthly-aggregate-windows";
+    public static final String ANOMALY_WINDOW_STORE = "anomaly-windows";
+
+    // Okna --monthly-mode=window mają 30 dni - okno z pierwszym rekordem z danego miesiąca zaczyna się najwyżej tyle wcześniej
+    private static final long MONTHLY_WINDOW_MS = Duration.ofDays(30).toMillis();
+    // Dłuższe zakresy są unieważniane licznikiem całego magazynu zamiast licznikami miesięcy
+    private static final int MAX_MONTH_BUCKETS = 36;
+
+    private final KafkaStreams streams;
+    private final HostInfo self;
+    private final Set<String> stores;
+    private final IntFunction<String> categoryName;
+    private final double anomalyThreshold;
+    private final QueryResultCache cache;
+    private final HttpServer server;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    public CrimesQueryServer(KafkaStreams streams, HostInfo self, Set<String> stores, IntFunction<String> categoryName,
+                             double anomalyThreshold, int cacheSize, long cacheMaxAgeMs) throws IOException {
+        this.streams = streams;
+        this.self = self;
+        this.stores = stores;
+        this.categoryName = categoryName;
+        this.anomalyThreshold = anomalyThreshold;
+        this.cache = new QueryResultCache(cacheSize, cacheMaxAgeMs);
+        this.server = HttpServer.create(new InetSocketAddress(self.port()), 0);
+        server.createContext("/aggregates", exchange -> handle(exchange, this::aggregates));
+        server.createContext("/anomalies", exchange -> handle(exchange, this::anomalies));
+        // Kilka wątków - zapytanie rozsyłane do innych instancji czeka na ich odpowiedź
+        server.setExecutor(Executors.newFixedThreadPool(4, r -> {
+            Thread thread = new Thread(r, "query-http");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Nazwy magazynów topologii - serwer obsługuje tylko te, które w niej są (zależnie od trybów).
+     */
+    public static Set<String> storeNames(TopologyDescription topology) {
+        Set<String> names = new HashSet<>();
+        for (TopologyDescription.Subtopology subtopology : topology.subtopologies()) {
+            for (TopologyDescription.Node node : subtopology.nodes()) {
+                if (node instanceof TopologyDescription.Processor) {
+                    names.addAll(((TopologyDescription.Processor) node).stores());
+                }
+            }
+        }
+        return names;
+    }
+
+    public void start() {
+        StoreVersions.enable();
+        server.start();
+        System.out.println("Zapytania: http://" + self.host() + ":" + self.port() + "/aggregates, /anomalies");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange, QueryHandler handler) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        int status = 200;
+        Object body;
+        try {
+            body = handler.handle(exchange.getRequestURI());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = Map.of("error", String.valueOf(e.getMessage()));
+        } catch (UnsupportedOperationException e) {
+            status = 404;
+            body = Map.of("error", e.getMessage());
+        } catch (InvalidStateStoreException | IllegalStateException e) {
+            // Rebalans albo odtwarzanie stanu - klient powinien ponowić zapytanie
+            status = 503;
+            body = Map.of("error", String.valueOf(e.getMessage()));
+        } catch (Exception e) {
+            status = 500;
+            body = Map.of("error", String.valueOf(e.getMessage()));
+        }
+        byte[] bytes = JsonSerde.objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private JsonNode aggregates(URI uri) throws IOException, InterruptedException {
+        Map<String, String> params = params(uri);
+        String store;
+        if (stores.contains(CalendarMonthProcessor.STORE_NAME)) {
+            store = CalendarMonthProcessor.STORE_NAME;
+        } else if (stores.contains(MONTHLY_WINDOW_STORE)) {
+            store = MONTHLY_WINDOW_STORE;
+        } else {
+            throw new UnsupportedOperationException("Monthly aggregates are not queryable with this topology (--engine=dense)");
+        }
+        String month = params.get("month");
+        int from = parseMonth(month != null ? month : required(params, "from"));
+        int to = parseMonth(month != null ? month : required(params, "to"));
+        if (from > to) {
+            throw new IllegalArgumentException("from is after to");
+        }
+        String category = params.get("category");
+        String district = params.get("district");
+
+        Supplier<List<?>> local = () -> {
+            String key = "aggregates/" + from + "/" + to + "/" + category + "/" + district;
+            return cached(key, monthVersions(store, from, to), () -> CalendarMonthProcessor.STORE_NAME.equals(store)
+                    ? calendarAggregates(from, to, category, district)
+                    : windowAggregates(from, to, category, district));
+        };
+        return scatter(store, uri, local);
+    }
+
+    private JsonNode anomalies(URI uri) throws IOException, InterruptedException {
+        if (!stores.contains(ANOMALY_WINDOW_STORE)) {
+            throw new UnsupportedOperationException("Anomaly windows are not queryable with this topology" +
+                    " (--anomaly-mode=tumbling and --engine=dsl only)");
+        }
+        Map<String, String> params = params(uri);
+        String district = params.get("district");
+        Instant from = parseInstant(params.get("from"), Instant.EPOCH);
+        Instant to = parseInstant(params.get("to"), Instant.ofEpochMilli(Long.MAX_VALUE));
+        boolean anomaliesOnly = Boolean.parseBoolean(params.get("anomaliesOnly"));
+
+        Supplier<List<?>> local = () -> {
+            StoreVersions versions = StoreVersions.of(ANOMALY_WINDOW_STORE);
+            long[] current = {district != null ? versions.version(district) : versions.version()};
+            String key = "anomalies/" + district + "/" + from + "/" + to + "/" + anomaliesOnly;
+            return cached(key, current, () -> windowAnomalies(district, from, to, anomaliesOnly));
+        };
+        if (district == null || isLocal(params)) {
+            return scatter(ANOMALY_WINDOW_STORE, uri, local);
+        }
+        KeyQueryMetadata metadata = streams.queryMetadataForKey(ANOMALY_WINDOW_STORE, district,
+                Serdes.String().serializer());
+        if (metadata == null || KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)) {
+            throw new IllegalStateException("Metadata for district " + district + " is not available yet");
+        }
+        if (self.equals(metadata.activeHost())) {
+            return JsonSerde.objectMapper.valueToTree(local.get());
+        }
+        return remote(metadata.activeHost(), uri);
+    }
+
+    /**
+     * Wynik lokalny, a bez local=true - połączone wyniki wszystkich instancji z danym magazynem.
+     */
+    private JsonNode scatter(String store, URI uri, Supplier<List<?>> local) throws IOException, InterruptedException {
+        if (isLocal(params(uri))) {
+            return JsonSerde.objectMapper.valueToTree(local.get());
+        }
+        Collection<StreamsMetadata> instances = streams.streamsMetadataForStore(store);
+        if (instances.isEmpty()) {
+            throw new IllegalStateException("Metadata for store " + store + " is not available yet");
+        }
+        ArrayNode merged = JsonSerde.objectMapper.createArrayNode();
+        for (StreamsMetadata instance : instances) {
+            if (self.equals(instance.hostInfo())) {
+                merged.addAll((ArrayNode) JsonSerde.objectMapper.valueToTree(local.get()));
+            } else {
+                merged.addAll((ArrayNode) remote(instance.hostInfo(), uri));
+            }
+        }
+        return merged;
+    }
+
+    private JsonNode remote(HostInfo host, URI uri) throws IOException, InterruptedException {
+        String query = uri.getRawQuery() == null ? "local=true" : uri.getRawQuery() + "&local=true";
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://" + host.host() + ":" + host.port() + uri.getRawPath() + "?" + query))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Instance " + host + " returned " + response.statusCode() + ": " +
+                    new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return JsonSerde.objectMapper.readTree(response.body());
+    }
+
+    private static long[] monthVersions(String store, int from, int to) {
+        StoreVersions versions = StoreVersions.of(store);
+        long[] snapshot = new long[MAX_MONTH_BUCKETS];
+        int months = 0;
+        for (int ym = from; ym <= to; ym = CrimeDateParser.nextYearMonth(ym)) {
+            if (months == MAX_MONTH_BUCKETS) {
+                return new long[]{versions.version()};
+            }
+            snapshot[months++] = versions.version(ym);
+        }
+        return Arrays.copyOf(snapshot, months);
+    }
+
+    private List<?> cached(String key, long[] versions, Supplier<List<?>> query) {
+        // Wersje odczytane przed zapytaniem - zmiana w trakcie unieważni wpis przy następnym odczycie
+        List<?> result = cache.get(key, versions);
+        if (result == null) {
+            result = query.get();
+            cache.put(key, versions, result);
+        }
+        return result;
+    }
+
+    private List<CrimeAggregate> calendarAggregates(int from, int to, String category, String district) {
+        ReadOnlyKeyValueStore<MonthlyAggregateKey, CrimeAggregate> store = streams.store(
+                StoreQueryParameters.fromNameAndType(CalendarMonthProcessor.STORE_NAME, QueryableStoreTypes.keyValueStore()));
+        List<CrimeAggregate> result = new ArrayList<>();
+        // Klucze są uporządkowane po miesiącu; kategoria jest mniejsza niż MAX_VALUE, więc zakres obejmuje
+        // także dzielnice nienumeryczne (districtId = -1, bajty 0xFF..)
+        try (KeyValueIterator<MonthlyAggregateKey, CrimeAggregate> range = store.range(
+                new MonthlyAggregateKey(from, 0, 0), new MonthlyAggregateKey(to, Integer.MAX_VALUE, Integer.MAX_VALUE))) {
+            while (range.hasNext()) {
+                KeyValue<MonthlyAggregateKey, CrimeAggregate> entry = range.next();
+                CrimeAggregate aggregate = entry.value;
+                // Opisy nie są zapisywane w magazynie - odtwarzane z klucza jak przy emisji
+                aggregate.setYearMonth(CrimeDateParser.formatYearMonth(entry.key.getYearMonth()));
+                aggregate.setPrimaryDescription(categoryName.apply(entry.key.getCategoryId()));
+                aggregate.setDistrict(entry.key.getDistrict());
+                if (matches(aggregate, category, district)) {
+                    result.add(aggregate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<CrimeAggregate> windowAggregates(int from, int to, String category, String district) {
+        ReadOnlyWindowStore<CategoryDistrictKey, CrimeAggregate> store = streams.store(
+                StoreQueryParameters.fromNameAndType(MONTHLY_WINDOW_STORE, QueryableStoreTypes.windowStore()));
+        String fromMonth = CrimeDateParser.formatYearMonth(from);
+        String toMonth = CrimeDateParser.formatYearMonth(to);
+        List<CrimeAggregate> result = new ArrayList<>();
+        try (KeyValueIterator<Windowed<CategoryDistrictKey>, CrimeAggregate> windows = store.fetchAll(
+                Instant.ofEpochMilli(CrimeDateParser.monthStartMillis(from) - MONTHLY_WINDOW_MS),
+                Instant.ofEpochMilli(CrimeDateParser.monthStartMillis(CrimeDateParser.nextYearMonth(to)) - 1))) {
+            while (windows.hasNext()) {
+                CrimeAggregate aggregate = windows.next().value;
+                String month = aggregate.getYearMonth();
+                if (month.compareTo(fromMonth) >= 0 && month.compareTo(toMonth) <= 0
+                        && matches(aggregate, category, district)) {
+                    result.add(aggregate);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<AnomalyAlert> windowAnomalies(String district, Instant from, Instant to, boolean anomaliesOnly) {
+        ReadOnlyWindowStore<String, DistrictCrimeCounts> store = streams.store(
+                StoreQueryParameters.fromNameAndType(ANOMALY_WINDOW_STORE, QueryableStoreTypes.windowStore()));
+        List<AnomalyAlert> result = new ArrayList<>();
+        try (KeyValueIterator<Windowed<String>, DistrictCrimeCounts> windows = district != null
+                ? store.fetch(district, district, from, to)
+                : store.fetchAll(from, to)) {
+            while (windows.hasNext()) {
+                KeyValue<Windowed<String>, DistrictCrimeCounts> entry = windows.next();
+                AnomalyAlert alert = new AnomalyAlert(entry.key.window().startTime().toString(),
+                        entry.key.window().endTime().toString(), entry.key.key(),
+                        entry.value.getFbiIndexCrimes(), entry.value.getTotalCrimes());
+                if (!anomaliesOnly || alert.getFbiPercentage() > anomalyThreshold) {
+                    result.add(alert);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean matches(CrimeAggregate aggregate, String category, String district) {
+        return (category == null || category.equalsIgnoreCase(aggregate.getPrimaryDescription()))
+                && (district == null || district.equals(aggregate.getDistrict()));
+    }
+
+    private static boolean isLocal(Map<String, String> params) {
+        return Boolean.parseBoolean(params.get("local"));
+    }
+
+    private static Map<String, String> params(URI uri) {
+        Map<String, String> params = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "true" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + name + " (or month)");
+        }
+        return value;
+    }
+
+    // "2015-01" -> 201501
+    private static int parseMonth(String month) {
+        try {
+            YearMonth parsed = YearMonth.parse(month);
+            return parsed.getYear() * 100 + parsed.getMonthValue();
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid month (expected yyyy-MM): " + month);
+        }
+    }
+
+    // "2015-01-01" albo "2015-01-01T00:00:00Z"
+    private static Instant parseInstant(String value, Instant defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return value.length() == 10 ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant() : Instant.parse(value);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid time (expected yyyy-MM-dd or ISO-8601 instant): " + value);
+        }
+    }
+
+    @FunctionalInterface
+    private interface QueryHandler {
+        Object handle(URI uri) throws IOException, InterruptedException;
+    }
+}
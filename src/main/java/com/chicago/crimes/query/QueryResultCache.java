@@ -0,0 +1,55 @@
+package com.chicago.crimes.query;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mały cache LRU lokalnych wyników zapytań. Wpis jest ważny, dopóki wersje kubełków, z których
+ * powstał ({@link StoreVersions}), się nie zmieniły, i nie dłużej niż maxAgeMs - wersja jest podbijana
+ * tuż przed zapisem do magazynu, więc zapytanie wykonane pomiędzy mogło odczytać poprzedni stan.
+ */
+class QueryResultCache {
+
+    private final long maxAgeMs;
+    private final Map<String, Entry> entries;
+
+    QueryResultCache(int maxEntries, long maxAgeMs) {
+        this.maxAgeMs = maxAgeMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    synchronized List<?> get(String query, long[] versions) {
+        Entry entry = entries.get(query);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.createdMs > maxAgeMs || !Arrays.equals(entry.versions, versions)) {
+            entries.remove(query);
+            return null;
+        }
+        return entry.result;
+    }
+
+    synchronized void put(String query, long[] versions, List<?> result) {
+        entries.put(query, new Entry(versions, result, System.currentTimeMillis()));
+    }
+
+    private static final class Entry {
+        final long[] versions;
+        final List<?> result;
+        final long createdMs;
+
+        Entry(long[] versions, List<?> result, long createdMs) {
+            this.versions = versions;
+            this.result = result;
+            this.createdMs = createdMs;
+        }
+    }
+}
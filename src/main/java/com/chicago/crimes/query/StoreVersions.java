@@ -0,0 +1,66 @@
+package com.chicago.crimes.query;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Numery wersji magazynu podbijane przy każdej aktualizacji - na ich podstawie unieważniane są
+ * wyniki zapytań w {@link QueryResultCache}. Poza licznikiem całego magazynu są liczniki kubełków
+ * (miesiąc, dzielnica), więc aktualizacja jednego miesiąca nie unieważnia zapytań o inne.
+ * Kubełki są haszowane do stałej tablicy - kolizja powoduje tylko zbędne unieważnienie.
+ *
+ * Dopóki serwer zapytań nie jest uruchomiony, {@link #updated} nic nie robi.
+ */
+public final class StoreVersions {
+
+    private static final int SLOTS = 1024;
+    private static final Map<String, StoreVersions> STORES = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled;
+
+    private final LongAdder all = new LongAdder();
+    private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+
+    private StoreVersions() {}
+
+    public static StoreVersions of(String storeName) {
+        return STORES.computeIfAbsent(storeName, name -> new StoreVersions());
+    }
+
+    static void enable() {
+        enabled = true;
+    }
+
+    public void updated(int bucket) {
+        if (!enabled) {
+            return;
+        }
+        slots.incrementAndGet(slot(bucket));
+        all.increment();
+    }
+
+    public void updated(String bucket) {
+        if (enabled) {
+            updated(bucket.hashCode());
+        }
+    }
+
+    long version() {
+        return all.sum();
+    }
+
+    long version(int bucket) {
+        return slots.get(slot(bucket));
+    }
+
+    long version(String bucket) {
+        return version(bucket.hashCode());
+    }
+
+    private static int slot(int bucket) {
+        int h = bucket * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (SLOTS - 1);
+    }
+}
@@ -0,0 +1,87 @@
+package com.chicago.crimes.rocksdb;
+
+import org.apache.kafka.streams.state.RocksDBConfigSetter;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.Cache;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.WriteBufferManager;
+
+import java.util.Map;
+
+/**
+ * Wspólny limit pamięci RocksDB dla wszystkich magazynów aplikacji. Domyślnie Kafka Streams daje
+ * każdej instancji RocksDB - a okno DSL ma ich kilka, po jednej na segment - własny cache bloków
+ * 50 MB i do trzech memtable po 16 MB, więc zużycie rośnie z liczbą zadań i segmentów. Tu wszystkie
+ * instancje dzielą jeden LRUCache, a memtable są wliczane do niego przez WriteBufferManager.
+ *
+ * Bloki indeksów i filtrów Bloom (10 bitów na klucz, ustawiane przez Kafka Streams) trafiają do tego
+ * samego cache z wysokim priorytetem, żeby nie rosły poza limitem, a indeksy L0 są przypięte.
+ * Aktualizacje liczników nadpisują wciąż te same małe klucze, więc wystarczą dwie memtable na
+ * instancję, a dynamiczne rozmiary poziomów ograniczają nieaktualne wersje na dysku.
+ */
+public class BoundedRocksDBConfigSetter implements RocksDBConfigSetter {
+
+    public static final String CACHE_BYTES_CONFIG = "chicago.crimes.rocksdb.cache.bytes";
+    public static final String WRITE_BUFFER_BYTES_CONFIG = "chicago.crimes.rocksdb.write.buffer.bytes";
+
+    // Część cache zarezerwowana dla indeksów i filtrów
+    private static final double HIGH_PRIORITY_POOL_RATIO = 0.1;
+    private static final int MAX_WRITE_BUFFERS = 2;
+
+    // Wspólne dla wszystkich magazynów w procesie - nie są zamykane razem z magazynem
+    private static Cache cache;
+    private static WriteBufferManager writeBufferManager;
+
+    @Override
+    public void setConfig(String storeName, Options options, Map<String, Object> configs) {
+        BlockBasedTableConfig tableConfig = (BlockBasedTableConfig) options.tableFormatConfig();
+        tableConfig.setBlockCache(sharedCache(configs));
+        tableConfig.setCacheIndexAndFilterBlocks(true);
+        tableConfig.setCacheIndexAndFilterBlocksWithHighPriority(true);
+        tableConfig.setPinL0FilterAndIndexBlocksInCache(true);
+        options.setTableFormatConfig(tableConfig);
+
+        options.setWriteBufferManager(writeBufferManager);
+        options.setMaxWriteBufferNumber(MAX_WRITE_BUFFERS);
+        options.setLevelCompactionDynamicLevelBytes(true);
+    }
+
+    private static synchronized Cache sharedCache(Map<String, Object> configs) {
+        if (cache == null) {
+            long cacheBytes = bytes(configs, CACHE_BYTES_CONFIG);
+            long writeBufferBytes = bytes(configs, WRITE_BUFFER_BYTES_CONFIG);
+            validate(cacheBytes, writeBufferBytes);
+            cache = new LRUCache(cacheBytes, -1, false, HIGH_PRIORITY_POOL_RATIO);
+            writeBufferManager = new WriteBufferManager(writeBufferBytes, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Sprawdzenie limitów przy starcie aplikacji - setConfig wywoływany jest dopiero w wątku strumieni,
+     * przy otwieraniu pierwszego magazynu, i błąd zatrzymałby wtedy wszystkie wątki
+     */
+    public static void validate(long cacheBytes, long writeBufferBytes) {
+        if (writeBufferBytes <= 0) {
+            throw new IllegalArgumentException("RocksDB write buffer limit must be positive: " + writeBufferBytes + " B");
+        }
+        if (writeBufferBytes >= cacheBytes) {
+            throw new IllegalArgumentException("RocksDB write buffer limit (" + writeBufferBytes +
+                    " B) must be smaller than the cache it is charged to (" + cacheBytes + " B)");
+        }
+    }
+
+    private static long bytes(Map<String, Object> configs, String name) {
+        Object value = configs.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing config " + name);
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public void close(String storeName, Options options) {
+        // Cache i WriteBufferManager są współdzielone przez pozostałe magazyny
+    }
+}
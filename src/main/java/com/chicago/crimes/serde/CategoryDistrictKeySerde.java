@@ -0,0 +1,84 @@
+package com.chicago.crimes.serde;
+
+import com.chicago.crimes.model.CategoryDistrictKey;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 8 bajtów: categoryId i districtId jako int big-endian, bez bajtu wersji. Dla dzielnicy
+ * nienumerycznej (districtId = INVALID_DISTRICT) po nich następuje jej nazwa w UTF-8 - klucze
+ * dzielnic numerycznych mają więc ten sam stały rozmiar co wcześniej.
+ */
+public class CategoryDistrictKeySerde implements Serde<CategoryDistrictKey> {
+    static final int SIZE = 8;
+
+    @Override
+    public Serializer<CategoryDistrictKey> serializer() {
+        return (topic, key) -> {
+            if (key == null) return null;
+            byte[] bytes = withDistrictName(SIZE, key.getDistrictId(), key.getDistrict());
+            writeInt(bytes, 0, key.getCategoryId());
+            writeInt(bytes, 4, key.getDistrictId());
+            return bytes;
+        };
+    }
+
+    @Override
+    public Deserializer<CategoryDistrictKey> deserializer() {
+        return (topic, bytes) -> {
+            if (bytes == null) return null;
+            int districtId = checkSize(bytes, SIZE, "CategoryDistrictKey");
+            return new CategoryDistrictKey(readInt(bytes, 0), districtId, districtName(bytes, SIZE, districtId));
+        };
+    }
+
+    /**
+     * Bufor o stałej części fixedSize, wydłużony o nazwę dzielnicy, której nie da się zakodować
+     */
+    static byte[] withDistrictName(int fixedSize, int districtId, String district) {
+        if (districtId != CategoryDistrictKey.INVALID_DISTRICT) {
+            return new byte[fixedSize];
+        }
+        byte[] name = district.getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = new byte[fixedSize + name.length];
+        System.arraycopy(name, 0, bytes, fixedSize, name.length);
+        return bytes;
+    }
+
+    /**
+     * @return districtId z ostatnich 4 bajtów stałej części
+     */
+    static int checkSize(byte[] bytes, int fixedSize, String type) {
+        if (bytes.length < fixedSize) {
+            throw new SerializationException("Expected at least " + fixedSize + " bytes for " + type +
+                    ", got " + bytes.length);
+        }
+        int districtId = readInt(bytes, fixedSize - 4);
+        if (bytes.length > fixedSize && districtId != CategoryDistrictKey.INVALID_DISTRICT) {
+            throw new SerializationException("Unexpected " + (bytes.length - fixedSize) + " trailing bytes for " +
+                    type + " with numeric district");
+        }
+        return districtId;
+    }
+
+    static String districtName(byte[] bytes, int fixedSize, int districtId) {
+        return districtId == CategoryDistrictKey.INVALID_DISTRICT
+                ? new String(bytes, fixedSize, bytes.length - fixedSize, StandardCharsets.UTF_8) : null;
+    }
+
+    static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16
+                | (bytes[offset + 2] & 0xFF) << 8 | (bytes[offset + 3] & 0xFF);
+    }
+}
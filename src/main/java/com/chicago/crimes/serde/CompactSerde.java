@@ -0,0 +1,222 @@
+package com.chicago.crimes.serde;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Kompaktowy, binarny odpowiednik JsonSerde dla wewnętrznych tematów i magazynów stanu.
+ * Każdy rekord zaczyna się bajtem wersji, liczniki są zapisywane jako long o stałej
+ * szerokości, a napisy jako długość varint + bajty UTF-8.
+ */
+public class CompactSerde<T> implements Serde<T> {
+
+    private final Codec<T> codec;
+
+    public CompactSerde(Codec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public Serializer<T> serializer() {
+        return new CompactSerializer<>(codec);
+    }
+
+    @Override
+    public Deserializer<T> deserializer() {
+        return new CompactDeserializer<>(codec);
+    }
+
+    /**
+     * Format binarny jednego typu. Wersja jest zapisywana przed danymi i przekazywana
+     * przy odczycie, dzięki czemu nowsza wersja kodeka potrafi czytać stare rekordy.
+     */
+    public interface Codec<T> {
+        byte version();
+
+        void write(T value, Output out);
+
+        T read(Input in, byte version);
+    }
+
+    public static class CompactSerializer<T> implements Serializer<T> {
+        private final Codec<T> codec;
+
+        public CompactSerializer(Codec<T> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public byte[] serialize(String topic, T data) {
+            if (data == null) return null;
+            // Bufor na każde wywołanie - jeden serializer ujścia jest współdzielony przez zadania wszystkich wątków
+            Output out = new Output(128);
+            out.writeByte(codec.version());
+            codec.write(data, out);
+            return out.toByteArray();
+        }
+    }
+
+    public static class CompactDeserializer<T> implements Deserializer<T> {
+        private final Codec<T> codec;
+
+        public CompactDeserializer(Codec<T> codec) {
+            this.codec = codec;
+        }
+
+        @Override
+        public T deserialize(String topic, byte[] data) {
+            if (data == null) return null;
+            try {
+                Input in = new Input(data);
+                byte version = in.readByte();
+                if (version < 1 || version > codec.version()) {
+                    throw new SerializationException("Unsupported compact format version " + version);
+                }
+                return codec.read(in, version);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new SerializationException("Truncated compact record", e);
+            }
+        }
+    }
+
+    /**
+     * Rosnący bufor bajtów z zapisem big-endian.
+     */
+    public static class Output {
+        private byte[] buf;
+        private int pos;
+
+        public Output(int initialCapacity) {
+            this.buf = new byte[initialCapacity];
+        }
+
+        public byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        public void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        public void writeLong(long v) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (v >>> shift);
+            }
+        }
+
+        public void writeDouble(double v) {
+            writeLong(Double.doubleToRawLongBits(v));
+        }
+
+        public void writeVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        /**
+         * Zapisuje napis jako (długość + 1) w varint, 0 oznacza null.
+         * Napisy ASCII (praktycznie wszystkie pola danych z Chicago) idą bez kodowania pośredniego.
+         */
+        public void writeString(String s) {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+            int len = s.length();
+            boolean ascii = true;
+            for (int i = 0; i < len; i++) {
+                if (s.charAt(i) >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (ascii) {
+                writeVarint(len + 1);
+                ensure(len);
+                for (int i = 0; i < len; i++) {
+                    buf[pos++] = (byte) s.charAt(i);
+                }
+            } else {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                writeVarint(utf8.length + 1);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, buf, pos, utf8.length);
+                pos += utf8.length;
+            }
+        }
+    }
+
+    /**
+     * Odczyt z tablicy bajtów w kolejności zgodnej z {@link Output}.
+     */
+    public static class Input {
+        private final byte[] buf;
+        private int pos;
+
+        public Input(byte[] buf) {
+            this.buf = buf;
+        }
+
+        public byte readByte() {
+            return buf[pos++];
+        }
+
+        public long readLong() {
+            long v = 0;
+            for (int i = 0; i < 8; i++) {
+                v = (v << 8) | (buf[pos++] & 0xFF);
+            }
+            return v;
+        }
+
+        public double readDouble() {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        public int readVarint() {
+            int v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 28) {
+                    throw new SerializationException("Malformed varint");
+                }
+                b = buf[pos++];
+                v |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+
+        public String readString() {
+            int lenPlusOne = readVarint();
+            if (lenPlusOne == 0) {
+                return null;
+            }
+            int len = lenPlusOne - 1;
+            if (len > buf.length - pos) {
+                throw new SerializationException("String length " + len + " exceeds record size");
+            }
+            String s = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return s;
+        }
+    }
+}
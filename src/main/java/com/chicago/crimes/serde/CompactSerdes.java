@@ -0,0 +1,164 @@
+package com.chicago.crimes.serde;
+
+import com.chicago.crimes.ChicagoCrimesStreamsApp.DistrictCrimeCounts;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.processor.SlidingWindowSums;
+
+/**
+ * Kompaktowe serde dla typów używanych w tematach repartycji i magazynach okien.
+ */
+public final class CompactSerdes {
+
+    private CompactSerdes() {}
+
+    public static CompactSerde<CrimeRecord> crimeRecord() {
+        return new CompactSerde<>(new CrimeRecordCodec());
+    }
+
+    public static CompactSerde<CrimeAggregate> crimeAggregate() {
+        return new CompactSerde<>(new CrimeAggregateCodec());
+    }
+
+    public static CompactSerde<DistrictCrimeCounts> districtCrimeCounts() {
+        return new CompactSerde<>(new DistrictCrimeCountsCodec());
+    }
+
+    public static CompactSerde<SlidingWindowSums> slidingWindowSums() {
+        return new CompactSerde<>(new SlidingWindowSumsCodec());
+    }
+
+    public static CategoryDistrictKeySerde categoryDistrictKey() {
+        return new CategoryDistrictKeySerde();
+    }
+
+    public static MonthlyAggregateKeySerde monthlyAggregateKey() {
+        return new MonthlyAggregateKeySerde();
+    }
+
+    /**
+     * v1: flagi (arrest, domestic, obecność lat/lon), pola tekstowe, współrzędne jako double.
+     */
+    static class CrimeRecordCodec implements CompactSerde.Codec<CrimeRecord> {
+        private static final int ARREST = 1;
+        private static final int DOMESTIC = 1 << 1;
+        private static final int HAS_LATITUDE = 1 << 2;
+        private static final int HAS_LONGITUDE = 1 << 3;
+
+        @Override
+        public byte version() { return 1; }
+
+        @Override
+        public void write(CrimeRecord crime, CompactSerde.Output out) {
+            int flags = 0;
+            if (crime.isArrest()) flags |= ARREST;
+            if (crime.isDomestic()) flags |= DOMESTIC;
+            if (crime.getLatitude() != null) flags |= HAS_LATITUDE;
+            if (crime.getLongitude() != null) flags |= HAS_LONGITUDE;
+
+            out.writeByte(flags);
+            out.writeString(crime.getId());
+            out.writeString(crime.getDate());
+            out.writeString(crime.getIucr());
+            out.writeString(crime.getDistrict());
+            out.writeString(crime.getComArea());
+            if (crime.getLatitude() != null) out.writeDouble(crime.getLatitude());
+            if (crime.getLongitude() != null) out.writeDouble(crime.getLongitude());
+        }
+
+        @Override
+        public CrimeRecord read(CompactSerde.Input in, byte version) {
+            int flags = in.readByte();
+            String id = in.readString();
+            String date = in.readString();
+            String iucr = in.readString();
+            String district = in.readString();
+            String comArea = in.readString();
+            Double latitude = (flags & HAS_LATITUDE) != 0 ? in.readDouble() : null;
+            Double longitude = (flags & HAS_LONGITUDE) != 0 ? in.readDouble() : null;
+            return new CrimeRecord(id, date, iucr, (flags & ARREST) != 0, (flags & DOMESTIC) != 0,
+                    district, comArea, latitude, longitude);
+        }
+    }
+
+    /**
+     * v1: yearMonth, primaryDescription, district, a następnie cztery liczniki long.
+     */
+    static class CrimeAggregateCodec implements CompactSerde.Codec<CrimeAggregate> {
+        @Override
+        public byte version() { return 1; }
+
+        @Override
+        public void write(CrimeAggregate aggregate, CompactSerde.Output out) {
+            out.writeString(aggregate.getYearMonth());
+            out.writeString(aggregate.getPrimaryDescription());
+            out.writeString(aggregate.getDistrict());
+            out.writeLong(aggregate.getTotalCrimes());
+            out.writeLong(aggregate.getArrestCount());
+            out.writeLong(aggregate.getDomesticCount());
+            out.writeLong(aggregate.getFbiIndexCount());
+        }
+
+        @Override
+        public CrimeAggregate read(CompactSerde.Input in, byte version) {
+            CrimeAggregate aggregate = new CrimeAggregate(in.readString(), in.readString(), in.readString());
+            aggregate.setTotalCrimes(in.readLong());
+            aggregate.setArrestCount(in.readLong());
+            aggregate.setDomesticCount(in.readLong());
+            aggregate.setFbiIndexCount(in.readLong());
+            return aggregate;
+        }
+    }
+
+    /**
+     * v1: totalCrimes, fbiIndexCrimes.
+     */
+    static class DistrictCrimeCountsCodec implements CompactSerde.Codec<DistrictCrimeCounts> {
+        @Override
+        public byte version() { return 1; }
+
+        @Override
+        public void write(DistrictCrimeCounts counts, CompactSerde.Output out) {
+            out.writeLong(counts.getTotalCrimes());
+            out.writeLong(counts.getFbiIndexCrimes());
+        }
+
+        @Override
+        public DistrictCrimeCounts read(CompactSerde.Input in, byte version) {
+            long total = in.readLong();
+            long fbiIndex = in.readLong();
+            return new DistrictCrimeCounts(total, fbiIndex);
+        }
+    }
+
+    /**
+     * v1: headDay, liczba długości okien (varint), a następnie pary total/fbiIndex.
+     */
+    static class SlidingWindowSumsCodec implements CompactSerde.Codec<SlidingWindowSums> {
+        @Override
+        public byte version() { return 1; }
+
+        @Override
+        public void write(SlidingWindowSums sums, CompactSerde.Output out) {
+            out.writeLong(sums.getHeadDay());
+            out.writeVarint(sums.lengthCount());
+            for (int i = 0; i < sums.lengthCount(); i++) {
+                out.writeLong(sums.getTotal(i));
+                out.writeLong(sums.getFbiIndex(i));
+            }
+        }
+
+        @Override
+        public SlidingWindowSums read(CompactSerde.Input in, byte version) {
+            long headDay = in.readLong();
+            int count = in.readVarint();
+            long[] totals = new long[count];
+            long[] fbiIndex = new long[count];
+            for (int i = 0; i < count; i++) {
+                totals[i] = in.readLong();
+                fbiIndex[i] = in.readLong();
+            }
+            return new SlidingWindowSums(headDay, totals, fbiIndex);
+        }
+    }
+}
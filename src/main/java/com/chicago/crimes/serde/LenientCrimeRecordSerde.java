@@ -0,0 +1,31 @@
+package com.chicago.crimes.serde;
+
+import com.chicago.crimes.model.CrimeRecord;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+/**
+ * Serde tematu wejściowego: niepoprawny JSON nie kończy się wyjątkiem, tylko rekordem
+ * {@link CrimeRecord#unparseable} z surowymi bajtami i opisem błędu
+ */
+public class LenientCrimeRecordSerde extends JsonSerde<CrimeRecord> {
+
+    public LenientCrimeRecordSerde() {
+        super(CrimeRecord.class);
+    }
+
+    @Override
+    public Deserializer<CrimeRecord> deserializer() {
+        return (topic, data) -> {
+            if (data == null) return null;
+            try {
+                return objectMapper.readValue(data, CrimeRecord.class);
+            } catch (JsonProcessingException e) {
+                // Bez fragmentu wejścia i pozycji, które Jackson dokleja do getMessage()
+                return CrimeRecord.unparseable(data, e.getOriginalMessage());
+            } catch (Exception e) {
+                return CrimeRecord.unparseable(data, e.getMessage());
+            }
+        };
+    }
+}
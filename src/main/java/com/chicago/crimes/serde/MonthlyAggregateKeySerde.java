@@ -0,0 +1,42 @@
+package com.chicago.crimes.serde;
+
+import com.chicago.crimes.model.MonthlyAggregateKey;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import static com.chicago.crimes.serde.CategoryDistrictKeySerde.checkSize;
+import static com.chicago.crimes.serde.CategoryDistrictKeySerde.districtName;
+import static com.chicago.crimes.serde.CategoryDistrictKeySerde.readInt;
+import static com.chicago.crimes.serde.CategoryDistrictKeySerde.withDistrictName;
+import static com.chicago.crimes.serde.CategoryDistrictKeySerde.writeInt;
+
+/**
+ * 12 bajtów: yearMonth, categoryId, districtId jako int big-endian, bez bajtu wersji, a dla dzielnicy
+ * nienumerycznej dodatkowo jej nazwa w UTF-8 (jak w CategoryDistrictKeySerde). yearMonth i categoryId
+ * są nieujemne, więc porządek bajtów magazynu to porządek miesięcy.
+ */
+public class MonthlyAggregateKeySerde implements Serde<MonthlyAggregateKey> {
+    static final int SIZE = 12;
+
+    @Override
+    public Serializer<MonthlyAggregateKey> serializer() {
+        return (topic, key) -> {
+            if (key == null) return null;
+            byte[] bytes = withDistrictName(SIZE, key.getDistrictId(), key.getDistrict());
+            writeInt(bytes, 0, key.getYearMonth());
+            writeInt(bytes, 4, key.getCategoryId());
+            writeInt(bytes, 8, key.getDistrictId());
+            return bytes;
+        };
+    }
+
+    @Override
+    public Deserializer<MonthlyAggregateKey> deserializer() {
+        return (topic, bytes) -> {
+            if (bytes == null) return null;
+            int districtId = checkSize(bytes, SIZE, "MonthlyAggregateKey");
+            return new MonthlyAggregateKey(readInt(bytes, 0), readInt(bytes, 4), districtId, districtName(bytes, SIZE, districtId));
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.chicago.crimes.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Argumenty wiersza poleceń: parametry pozycyjne oraz opcjonalne przełączniki w postaci
+ * --nazwa=wartość (samo --nazwa oznacza true).
+ */
+public class CommandLineOptions {
+    private final List<String> positional = new ArrayList<>();
+    private final Map<String, String> options = new HashMap<>();
+
+    public static CommandLineOptions parse(String[] args) {
+        CommandLineOptions result = new CommandLineOptions();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                int eq = arg.indexOf('=');
+                if (eq < 0) {
+                    result.options.put(arg.substring(2), "true");
+                } else {
+                    result.options.put(arg.substring(2, eq), arg.substring(eq + 1));
+                }
+            } else {
+                result.positional.add(arg);
+            }
+        }
+        return result;
+    }
+
+    public int positionalCount() {
+        return positional.size();
+    }
+
+    public String positional(int index) {
+        return positional.get(index);
+    }
+
+    public String positional(int index, String defaultValue) {
+        return index < positional.size() ? positional.get(index) : defaultValue;
+    }
+
+    public boolean has(String name) {
+        return options.containsKey(name);
+    }
+
+    public String get(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        String value = options.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = options.get(name);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = options.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String value = options.get(name);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
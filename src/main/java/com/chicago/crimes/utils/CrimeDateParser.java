@@ -0,0 +1,137 @@
+package com.chicago.crimes.utils;
+
+/**
+ * Parser dat w stałym formacie "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'" (UTC), liczący czas epoch
+ * i spakowany rok-miesiąc bezpośrednio ze znaków, bez tworzenia obiektów pośrednich.
+ */
+public final class CrimeDateParser {
+
+    /** Wartość zwracana przez {@link #parseEpochMillis} dla niepoprawnej daty. */
+    public static final long INVALID_TIME = Long.MIN_VALUE;
+
+    /** Wartość zwracana przez {@link #parseYearMonth} dla niepoprawnej daty. */
+    public static final int INVALID_YEAR_MONTH = 0;
+
+    private static final int LENGTH = 24; // 2015-09-05T13:30:00.000Z
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+
+    private CrimeDateParser() {}
+
+    /**
+     * @return milisekundy od epoki (UTC) albo {@link #INVALID_TIME}
+     */
+    public static long parseEpochMillis(CharSequence s) {
+        if (!hasLayout(s)) {
+            return INVALID_TIME;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        int day = digits(s, 8, 2);
+        int hour = digits(s, 11, 2);
+        int minute = digits(s, 14, 2);
+        int second = digits(s, 17, 2);
+        int millis = digits(s, 20, 3);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59 || millis < 0) {
+            return INVALID_TIME;
+        }
+        return epochDay(year, month, day) * MILLIS_PER_DAY
+                + hour * 3_600_000L + minute * 60_000L + second * 1_000L + millis;
+    }
+
+    /**
+     * Sprawdza tylko układ daty oraz rok i miesiąc - pełną walidację daje {@link #parseEpochMillis}.
+     *
+     * @return rok * 100 + miesiąc (np. 201509) albo {@link #INVALID_YEAR_MONTH}
+     */
+    public static int parseYearMonth(CharSequence s) {
+        if (!hasLayout(s)) {
+            return INVALID_YEAR_MONTH;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 2);
+        if (year < 0 || month < 1 || month > 12) {
+            return INVALID_YEAR_MONTH;
+        }
+        return year * 100 + month;
+    }
+
+    /**
+     * Formatuje spakowany rok-miesiąc jako "yyyy-MM" (wywoływane tylko przy emisji wyników).
+     */
+    public static String formatYearMonth(int yearMonth) {
+        if (yearMonth == INVALID_YEAR_MONTH) {
+            return null;
+        }
+        int year = yearMonth / 100;
+        int month = yearMonth % 100;
+        char[] chars = {
+                (char) ('0' + year / 1000 % 10), (char) ('0' + year / 100 % 10),
+                (char) ('0' + year / 10 % 10), (char) ('0' + year % 10), '-',
+                (char) ('0' + month / 10), (char) ('0' + month % 10)
+        };
+        return new String(chars);
+    }
+
+    /**
+     * Początek miesiąca (UTC) dla spakowanego rok-miesiąc.
+     */
+    public static long monthStartMillis(int yearMonth) {
+        return epochDay(yearMonth / 100, yearMonth % 100, 1) * MILLIS_PER_DAY;
+    }
+
+    /**
+     * Spakowany rok-miesiąc następnego miesiąca.
+     */
+    public static int nextYearMonth(int yearMonth) {
+        return yearMonth % 100 == 12 ? (yearMonth / 100 + 1) * 100 + 1 : yearMonth + 1;
+    }
+
+    private static boolean hasLayout(CharSequence s) {
+        return s != null && s.length() == LENGTH
+                && s.charAt(4) == '-' && s.charAt(7) == '-' && s.charAt(10) == 'T'
+                && s.charAt(13) == ':' && s.charAt(16) == ':' && s.charAt(19) == '.'
+                && s.charAt(23) == 'Z';
+    }
+
+    /**
+     * @return wartość liczby dziesiętnej albo -1, jeśli zawiera znak niebędący cyfrą
+     */
+    private static int digits(CharSequence s, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) {
+                return -1;
+            }
+            value = value * 10 + d;
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4: case 6: case 9: case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Liczba dni od 1970-01-01 dla daty kalendarza gregoriańskiego (algorytm "days from civil")
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097L + doe - 719_468;
+    }
+}
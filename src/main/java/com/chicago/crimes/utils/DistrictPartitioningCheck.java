@@ -0,0 +1,114 @@
+package com.chicago.crimes.utils;
+
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.serde.JsonSerde;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Sprawdzenie przy starcie, że topic wejściowy jest partycjonowany po dzielnicy: z końca każdej
+ * partycji czytana jest próbka rekordów, a każdy musi mieć klucz równy polu District i żadna
+ * dzielnica nie może występować w więcej niż jednej partycji. Bez tego topologia bez repartycji
+ * liczyłaby tę samą dzielnicę w kilku zadaniach.
+ */
+public final class DistrictPartitioningCheck {
+
+    private static final int MAX_EXAMPLES = 5;
+
+    private DistrictPartitioningCheck() {}
+
+    /**
+     * @throws IllegalStateException jeśli próbka zawiera rekordy niepartycjonowane po dzielnicy
+     */
+    public static void verify(String bootstrapServers, String topic, int samplePerPartition, Duration timeout) {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Math.max(samplePerPartition, 500));
+
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(props,
+                new StringDeserializer(), new StringDeserializer())) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            List<PartitionInfo> infos = consumer.partitionsFor(topic, timeout);
+            if (infos == null || infos.isEmpty()) {
+                System.out.println("Topic " + topic + " nie istnieje - pomijam sprawdzenie partycjonowania");
+                return;
+            }
+            for (PartitionInfo info : infos) {
+                partitions.add(new TopicPartition(topic, info.partition()));
+            }
+            consumer.assign(partitions);
+
+            Map<TopicPartition, Long> beginning = consumer.beginningOffsets(partitions, timeout);
+            Map<TopicPartition, Long> end = consumer.endOffsets(partitions, timeout);
+            long expected = 0;
+            for (TopicPartition partition : partitions) {
+                long from = Math.max(beginning.get(partition), end.get(partition) - samplePerPartition);
+                consumer.seek(partition, from);
+                expected += end.get(partition) - from;
+            }
+
+            Map<String, Integer> districtPartitions = new HashMap<>();
+            List<String> violations = new ArrayList<>();
+            long checked = 0;
+            long violationCount = 0;
+            long deadline = System.currentTimeMillis() + timeout.toMillis();
+            while (checked < expected && System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(200))) {
+                    if (record.offset() >= end.get(new TopicPartition(topic, record.partition()))) {
+                        continue;
+                    }
+                    checked++;
+                    String district = districtOf(record.value());
+                    if (district == null) {
+                        continue; // pomijane przez topologię
+                    }
+                    String problem = null;
+                    if (!district.equals(record.key())) {
+                        problem = "klucz \"" + record.key() + "\" != District \"" + district + "\"";
+                    } else {
+                        Integer previous = districtPartitions.putIfAbsent(district, record.partition());
+                        if (previous != null && previous != record.partition()) {
+                            problem = "dzielnica " + district + " w partycjach " + previous + " i " + record.partition();
+                        }
+                    }
+                    if (problem != null && violationCount++ < MAX_EXAMPLES) {
+                        violations.add(record.partition() + "@" + record.offset() + ": " + problem);
+                    }
+                }
+            }
+
+            System.out.println("Sprawdzono partycjonowanie " + checked + " rekordów z " + partitions.size() +
+                    " partycji topicu " + topic + ": " + districtPartitions.size() + " dzielnic, " +
+                    violationCount + " niezgodności");
+            if (violationCount > 0) {
+                throw new IllegalStateException("Input topic " + topic + " is not partitioned by district (" +
+                        violationCount + " of " + checked + " sampled records), e.g. " + violations +
+                        ". Use --partitioning=repartition or reproduce the topic with district keys.");
+            }
+        }
+    }
+
+    private static String districtOf(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return JsonSerde.objectMapper.readValue(json, CrimeRecord.class).getDistrict();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
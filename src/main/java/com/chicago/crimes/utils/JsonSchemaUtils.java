@@ -1,79 +1,112 @@
 package com.chicago.crimes.utils;
 
 import com.chicago.crimes.model.*;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Wiadomości w kopercie Kafka Connect (schema + payload) dla JDBC sink.
+ * Stała część "schema" jest serializowana raz przy ładowaniu klasy, a dla każdej wiadomości
+ * JsonGenerator dopisuje tylko pola payload do bufora wielokrotnego użytku.
+ */
 public class JsonSchemaUtils {
-    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
-    public static String createAggregateMessage(CrimeAggregate aggregate, String key) {
-        ObjectNode message = JsonNodeFactory.instance.objectNode();
+    // Schema dla agregatów
+    private static final SerializableString AGGREGATE_SCHEMA = createSchema(
+            createField("year_month", "string"),
+            createField("primary_description", "string"),
+            createField("district", "string"),
+            createField("total_crimes", "int32"),
+            createField("arrest_count", "int32"),
+            createField("domestic_count", "int32"),
+            createField("fbi_index_count", "int32"));
 
-        // Schema dla agregatów
-        ObjectNode schema = JsonNodeFactory.instance.objectNode();
-        schema.put("type", "struct");
-        schema.put("optional", false);
-        schema.put("version", 1);
+    // Schema dla anomalii
+    private static final SerializableString ANOMALY_SCHEMA = createSchema(
+            createField("window_start", "string"),
+            createField("window_end", "string"),
+            createField("district", "string"),
+            createField("fbi_index_crimes", "int64"),
+            createField("total_crimes", "int64"),
+            createField("fbi_percentage", "float"));
 
-        ArrayNode fields = schema.putArray("fields");
-        fields.add(createField("year_month", "string"));
-        fields.add(createField("primary_description", "string"));
-        fields.add(createField("district", "string"));
-        fields.add(createField("total_crimes", "int32"));
-        fields.add(createField("arrest_count", "int32"));
-        fields.add(createField("domestic_count", "int32"));
-        fields.add(createField("fbi_index_count", "int32"));
+    // Każdy wątek strumienia ma własny bufor - wiadomość jest kopiowana z niego tylko raz
+    private static final ThreadLocal<ByteArrayBuilder> BUFFER =
+            ThreadLocal.withInitial(() -> new ByteArrayBuilder(1024));
 
-        // Payload dla agregatów
-        ObjectNode payload = JsonNodeFactory.instance.objectNode();
-        payload.put("year_month", aggregate.getYearMonth());
-        payload.put("primary_description", aggregate.getPrimaryDescription());
-        payload.put("district", aggregate.getDistrict());
-        payload.put("total_crimes", aggregate.getTotalCrimes());
-        payload.put("arrest_count", aggregate.getArrestCount());
-        payload.put("domestic_count", aggregate.getDomesticCount());
-        payload.put("fbi_index_count", aggregate.getFbiIndexCount());
+    public static byte[] createAggregateMessage(CrimeAggregate aggregate, String key) {
+        ByteArrayBuilder buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator gen = startMessage(buffer, AGGREGATE_SCHEMA)) {
+            // Payload dla agregatów
+            gen.writeStringField("year_month", aggregate.getYearMonth());
+            gen.writeStringField("primary_description", aggregate.getPrimaryDescription());
+            gen.writeStringField("district", aggregate.getDistrict());
+            gen.writeNumberField("total_crimes", aggregate.getTotalCrimes());
+            gen.writeNumberField("arrest_count", aggregate.getArrestCount());
+            gen.writeNumberField("domestic_count", aggregate.getDomesticCount());
+            gen.writeNumberField("fbi_index_count", aggregate.getFbiIndexCount());
+            endMessage(gen);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing aggregate message", e);
+        }
+        return buffer.toByteArray();
+    }
 
-        message.set("schema", schema);
-        message.set("payload", payload);
+    public static byte[] createAnomalyMessage(AnomalyAlert alert, String key) {
+        ByteArrayBuilder buffer = BUFFER.get();
+        buffer.reset();
+        try (JsonGenerator gen = startMessage(buffer, ANOMALY_SCHEMA)) {
+            // Payload dla anomalii
+            gen.writeStringField("window_start", alert.getWindowStart());
+            gen.writeStringField("window_end", alert.getWindowEnd());
+            gen.writeStringField("district", alert.getDistrict());
+            gen.writeNumberField("fbi_index_crimes", alert.getFbiIndexCrimes());
+            gen.writeNumberField("total_crimes", alert.getTotalCrimes());
+            gen.writeNumberField("fbi_percentage", alert.getFbiPercentage());
+            endMessage(gen);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing anomaly message", e);
+        }
+        return buffer.toByteArray();
+    }
 
-        return message.toString();
+    private static JsonGenerator startMessage(ByteArrayBuilder buffer, SerializableString schema) throws IOException {
+        JsonGenerator gen = JSON_FACTORY.createGenerator(buffer);
+        gen.writeStartObject();
+        gen.writeFieldName("schema");
+        gen.writeRawValue(schema);
+        gen.writeFieldName("payload");
+        gen.writeStartObject();
+        return gen;
     }
 
-    public static String createAnomalyMessage(AnomalyAlert alert, String key) {
-        ObjectNode message = JsonNodeFactory.instance.objectNode();
+    private static void endMessage(JsonGenerator gen) throws IOException {
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
 
-        // Schema dla anomalii
+    private static SerializableString createSchema(ObjectNode... fieldDescriptors) {
         ObjectNode schema = JsonNodeFactory.instance.objectNode();
         schema.put("type", "struct");
         schema.put("optional", false);
         schema.put("version", 1);
 
         ArrayNode fields = schema.putArray("fields");
-        fields.add(createField("window_start", "string"));
-        fields.add(createField("window_end", "string"));
-        fields.add(createField("district", "string"));
-        fields.add(createField("fbi_index_crimes", "int64"));
-        fields.add(createField("total_crimes", "int64"));
-        fields.add(createField("fbi_percentage", "float"));
-
-        // Payload dla anomalii
-        ObjectNode payload = JsonNodeFactory.instance.objectNode();
-        payload.put("window_start", alert.getWindowStart());
-        payload.put("window_end", alert.getWindowEnd());
-        payload.put("district", alert.getDistrict());
-        payload.put("fbi_index_crimes", alert.getFbiIndexCrimes());
-        payload.put("total_crimes", alert.getTotalCrimes());
-        payload.put("fbi_percentage", alert.getFbiPercentage());
-
-        message.set("schema", schema);
-        message.set("payload", payload);
-
-        return message.toString();
+        for (ObjectNode field : fieldDescriptors) {
+            fields.add(field);
+        }
+        return new SerializedString(schema.toString());
     }
 
     private static ObjectNode createField(String fieldName, String type) {
@@ -0,0 +1,237 @@
+package com.chicago.crimes;
+
+import com.chicago.crimes.metrics.AppCounters;
+import com.chicago.crimes.metrics.DeadLetterQueue;
+import com.chicago.crimes.utils.CommandLineOptions;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cała topologia aplikacji na TopologyTestDriver - bez brokera.
+ */
+class ChicagoCrimesTopologyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Instant WALL_CLOCK = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver(String delayMode, String... options) {
+        return driver(delayMode, 60.0, options);
+    }
+
+    private TopologyTestDriver driver(String delayMode, double anomalyPercentage, String... options) {
+        StreamsBuilder builder = new StreamsBuilder();
+        ChicagoCrimesStreamsApp.buildTopology(builder, 7, anomalyPercentage, delayMode, CommandLineOptions.parse(options));
+        Properties props = ChicagoCrimesStreamsApp.createProperties("localhost:9092", delayMode);
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        return new TopologyTestDriver(builder.build(), props, WALL_CLOCK);
+    }
+
+    private static TestInputTopic<String, String> input(TopologyTestDriver driver) {
+        return driver.createInputTopic("crimes-input", new StringSerializer(), new StringSerializer());
+    }
+
+    private static TestOutputTopic<String, byte[]> output(TopologyTestDriver driver, String topic) {
+        return driver.createOutputTopic(topic, new StringDeserializer(), new ByteArrayDeserializer());
+    }
+
+    private static String crime(String id, String date, String district) {
+        return "{\"ID\":\"" + id + "\",\"Date\":\"" + date + "\",\"IUCR\":\"0486\",\"Arrest\":true," +
+                "\"Domestic\":false,\"District\":" + (district == null ? "null" : "\"" + district + "\"") + "}";
+    }
+
+    private static JsonNode payload(byte[] message) {
+        try {
+            return MAPPER.readTree(message).get("payload");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<JsonNode> payloads(TestOutputTopic<String, byte[]> topic) {
+        return topic.readValuesToList().stream().map(ChicagoCrimesTopologyTest::payload).collect(Collectors.toList());
+    }
+
+    private static double appCounter(TopologyTestDriver driver, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> metric : driver.metrics().entrySet()) {
+            if (metric.getKey().group().equals(AppCounters.GROUP) && metric.getKey().name().equals(name)) {
+                return ((Number) metric.getValue().metricValue()).doubleValue();
+            }
+        }
+        throw new AssertionError("Missing metric " + name);
+    }
+
+    private static String header(TestRecord<String, byte[]> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void calendarMonthEmitsFinalResultAfterGraceInModeC() {
+        try (TopologyTestDriver driver = driver("C")) {
+            TestInputTopic<String, String> in = input(driver);
+            TestOutputTopic<String, byte[]> aggregates = output(driver, "crimes-aggregates");
+
+            in.pipeInput("007", crime("1", "2024-01-02T10:00:00.000Z", "007"));
+            in.pipeInput("007", crime("2", "2024-01-31T23:59:59.999Z", "007"));
+            // Koniec stycznia, ale jeszcze w okresie grace (1 dzień)
+            in.pipeInput("007", crime("3", "2024-02-01T12:00:00.000Z", "007"));
+            assertTrue(aggregates.isEmpty());
+
+            in.pipeInput("007", crime("4", "2024-02-02T00:00:00.000Z", "007"));
+            List<JsonNode> results = payloads(aggregates);
+            assertEquals(1, results.size());
+            assertEquals("2024-01", results.get(0).get("year_month").asText());
+            assertEquals("007", results.get(0).get("district").asText());
+            assertEquals(2, results.get(0).get("total_crimes").asLong());
+            assertEquals(2, results.get(0).get("arrest_count").asLong());
+        }
+    }
+
+    @Test
+    void calendarMonthEmitsEveryUpdateInModeA() {
+        try (TopologyTestDriver driver = driver("A")) {
+            TestInputTopic<String, String> in = input(driver);
+            in.pipeInput("007", crime("1", "2024-01-02T10:00:00.000Z", "007"));
+            in.pipeInput("007", crime("2", "2024-01-03T10:00:00.000Z", "007"));
+
+            List<Long> totals = payloads(output(driver, "crimes-aggregates")).stream()
+                    .map(payload -> payload.get("total_crimes").asLong()).collect(Collectors.toList());
+            assertEquals(List.of(1L, 2L), totals);
+        }
+    }
+
+    @Test
+    void lateRecordForClosedMonthIsDroppedAndCounted() {
+        try (TopologyTestDriver driver = driver("C")) {
+            TestInputTopic<String, String> in = input(driver);
+            TestOutputTopic<String, byte[]> aggregates = output(driver, "crimes-aggregates");
+            in.pipeInput("007", crime("1", "2024-01-02T10:00:00.000Z", "007"));
+            in.pipeInput("007", crime("2", "2024-02-05T00:00:00.000Z", "007"));
+            assertEquals(1, aggregates.readValuesToList().size());
+
+            double late = appCounter(driver, "late-record-total");
+            in.pipeInput("007", crime("3", "2024-01-20T10:00:00.000Z", "007"));
+            in.pipeInput("007", crime("4", "2024-03-05T00:00:00.000Z", "007"));
+
+            List<JsonNode> results = payloads(aggregates);
+            assertEquals(1, results.size());
+            assertEquals("2024-02", results.get(0).get("year_month").asText());
+            assertEquals(late + 1, appCounter(driver, "late-record-total"));
+        }
+    }
+
+    @Test
+    void nonNumericDistrictIsAggregated() {
+        try (TopologyTestDriver driver = driver("A")) {
+            TestInputTopic<String, String> in = input(driver);
+            in.pipeInput("x", crime("1", "2024-01-02T10:00:00.000Z", "ABC"));
+            in.pipeInput("x", crime("2", "2024-01-03T10:00:00.000Z", "12345678"));
+            in.pipeInput("x", crime("3", "2024-01-04T10:00:00.000Z", "ABC"));
+
+            Map<String, Long> totals = payloads(output(driver, "crimes-aggregates")).stream().collect(Collectors.toMap(
+                    payload -> payload.get("district").asText(), payload -> payload.get("total_crimes").asLong(),
+                    Math::max));
+            assertEquals(Map.of("ABC", 2L, "12345678", 1L), totals);
+        }
+    }
+
+    @Test
+    void rejectedRecordsGoToDeadLetterTopicWithReason() {
+        try (TopologyTestDriver driver = driver("A")) {
+            TestInputTopic<String, String> in = input(driver);
+            // Pierwszy rekord bez daty na świeżej partycji - czas zastępczy nie może być ujemny
+            in.pipeInput("k1", crime("1", "bad", "007"));
+            in.pipeInput("k2", "{not json");
+            in.pipeInput("k3", crime("3", "2024-01-02T10:00:00.000Z", null));
+            in.pipeInput("k4", crime("4", "2024-01-02T10:00:00.000Z", "007"));
+
+            List<TestRecord<String, byte[]>> deadLetters = output(driver, "crimes-dead-letter").readRecordsToList();
+            assertEquals(List.of("k1", "k2", "k3"),
+                    deadLetters.stream().map(TestRecord::key).collect(Collectors.toList()));
+            assertEquals(List.of(DeadLetterQueue.Reason.INVALID_DATE.name(), DeadLetterQueue.Reason.PARSE_ERROR.name(),
+                    DeadLetterQueue.Reason.NULL_DISTRICT.name()), deadLetters.stream()
+                    .map(record -> header(record, DeadLetterQueue.REASON_HEADER)).collect(Collectors.toList()));
+            assertEquals("crimes-input-0@1", header(deadLetters.get(1), DeadLetterQueue.SOURCE_HEADER));
+            assertNotNull(header(deadLetters.get(1), DeadLetterQueue.ERROR_HEADER));
+            // Niepoprawny JSON w postaci, w jakiej został odczytany
+            assertEquals("{not json", new String(deadLetters.get(1).value(), StandardCharsets.UTF_8));
+            // Czas odrzucenia, nie czas zdarzenia
+            assertEquals(WALL_CLOCK, deadLetters.get(2).getRecordTime());
+
+            assertEquals(1, output(driver, "crimes-aggregates").readValuesToList().size());
+        }
+    }
+
+    @Test
+    void deadLetterTopicCanBeDisabledWithoutRenamingStores() {
+        Set<String> withTopic;
+        try (TopologyTestDriver driver = driver("C")) {
+            withTopic = new HashSet<>(driver.getAllStateStores().keySet());
+        }
+        try (TopologyTestDriver driver = driver("C", "--dead-letter-topic=none")) {
+            input(driver).pipeInput("k1", "{not json");
+            assertFalse(driver.producedTopicNames().contains("crimes-dead-letter"));
+            assertEquals(withTopic, driver.getAllStateStores().keySet());
+        }
+    }
+
+    // Silnik dense liczy w tablicach to samo co magazyny DSL; próg -1% - każde zamknięte okno jest anomalią
+    @Test
+    void denseEngineMatchesDslResults() {
+        String[][] inputs = {
+                {"007", "2024-01-02T10:00:00.000Z"}, {"007", "2024-01-05T10:00:00.000Z"},
+                {"011", "2024-01-06T10:00:00.000Z"}, {"ABC", "2024-01-20T10:00:00.000Z"},
+                {"007", "2024-02-03T10:00:00.000Z"}, {"011", "2024-02-10T10:00:00.000Z"},
+                {"007", "2024-03-15T10:00:00.000Z"},
+        };
+        Map<String, Set<String>> dsl = results("--engine=dsl", inputs);
+        assertFalse(dsl.get("aggregates").isEmpty());
+        assertFalse(dsl.get("anomalies").isEmpty());
+        assertEquals(dsl, results("--engine=dense", inputs));
+    }
+
+    private Map<String, Set<String>> results(String engine, String[][] inputs) {
+        try (TopologyTestDriver driver = driver("C", -1.0, engine)) {
+            TestInputTopic<String, String> in = input(driver);
+            for (int i = 0; i < inputs.length; i++) {
+                in.pipeInput(inputs[i][0], crime(String.valueOf(i), inputs[i][1], inputs[i][0]));
+            }
+            return Map.of(
+                    "aggregates", payloads(output(driver, "crimes-aggregates")).stream()
+                            .map(JsonNode::toString).collect(Collectors.toSet()),
+                    "anomalies", payloads(output(driver, "crimes-anomalies")).stream()
+                            .map(JsonNode::toString).collect(Collectors.toSet()));
+        }
+    }
+}
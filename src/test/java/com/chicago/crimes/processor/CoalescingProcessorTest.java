@@ -0,0 +1,122 @@
+package com.chicago.crimes.processor;
+
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.MockProcessorContext.CapturedForward;
+import org.apache.kafka.streams.processor.api.MockProcessorContext.CapturedPunctuator;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingProcessorTest {
+
+    private static final Duration INTERVAL = Duration.ofSeconds(5);
+
+    private MockProcessorContext<String, byte[]> context;
+    private KeyValueStore<String, byte[]> buffer;
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setUp() {
+        context = new MockProcessorContext<>();
+        context.setCurrentSystemTimeMs(10_000);
+        StoreBuilder builder = CoalescingProcessor.supplier("out", INTERVAL, 3).stores().iterator().next();
+        buffer = (KeyValueStore<String, byte[]>) builder.withLoggingDisabled().build();
+        buffer.init(context.getStateStoreContext(), buffer);
+        context.addStateStore((StateStore) buffer);
+    }
+
+    private Processor<String, byte[], String, byte[]> processor(int maxKeys) {
+        ProcessorSupplier<String, byte[], String, byte[]> supplier = CoalescingProcessor.supplier("out", INTERVAL, maxKeys);
+        Processor<String, byte[], String, byte[]> processor = supplier.get();
+        processor.init(context);
+        return processor;
+    }
+
+    private static Record<String, byte[]> record(String key, String value, long timestamp) {
+        return new Record<>(key, value.getBytes(StandardCharsets.UTF_8), timestamp);
+    }
+
+    private void punctuate() {
+        for (CapturedPunctuator punctuator : context.scheduledPunctuators()) {
+            assertEquals(PunctuationType.WALL_CLOCK_TIME, punctuator.getType());
+            assertEquals(INTERVAL, punctuator.getInterval());
+            punctuator.getPunctuator().punctuate(context.currentSystemTimeMs());
+        }
+    }
+
+    private Map<String, String> forwarded() {
+        return context.forwarded().stream().map(CapturedForward::record).collect(Collectors.toMap(
+                Record::key, record -> new String(record.value(), StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void sendsOnlyTheLatestUpdatePerKeyEachInterval() {
+        Processor<String, byte[], String, byte[]> processor = processor(100);
+        context.setCurrentStreamTimeMs(1_000);
+        processor.process(record("a", "a1", 1_000));
+        processor.process(record("a", "a2", 1_000));
+        processor.process(record("b", "b1", 1_000));
+        processor.process(record("a", "a3", 1_000));
+        assertTrue(context.forwarded().isEmpty());
+
+        punctuate();
+        assertEquals(Map.of("a", "a3", "b", "b1"), forwarded());
+        assertEquals(0, buffer.approximateNumEntries());
+
+        // Pusty bufor - nic do wysłania
+        context.resetForwards();
+        punctuate();
+        assertTrue(context.forwarded().isEmpty());
+    }
+
+    @Test
+    void flushesEarlyWhenKeyLimitIsReached() {
+        Processor<String, byte[], String, byte[]> processor = processor(2);
+        context.setCurrentStreamTimeMs(1_000);
+        processor.process(record("a", "a1", 1_000));
+        processor.process(record("a", "a2", 1_000));
+        assertTrue(context.forwarded().isEmpty());
+
+        processor.process(record("b", "b1", 1_000));
+        assertEquals(Map.of("a", "a2", "b", "b1"), forwarded());
+    }
+
+    @Test
+    void recordsWithoutKeyPassThrough() {
+        Processor<String, byte[], String, byte[]> processor = processor(100);
+        processor.process(record(null, "x", 1_000));
+        assertEquals(1, context.forwarded().size());
+        assertEquals(0, buffer.approximateNumEntries());
+    }
+
+    // Po restarcie bufor jest odtworzony z changelogu, ale czas strumienia jest nieznany aż do pierwszego rekordu
+    @Test
+    void restoredBufferWaitsForStreamTime() {
+        buffer.put("a", "restored".getBytes(StandardCharsets.UTF_8));
+        context.setCurrentStreamTimeMs(-1);
+        Processor<String, byte[], String, byte[]> processor = processor(100);
+
+        punctuate();
+        assertTrue(context.forwarded().isEmpty());
+        assertEquals(1, buffer.approximateNumEntries());
+
+        context.setCurrentStreamTimeMs(2_000);
+        processor.process(record("b", "b1", 2_000));
+        punctuate();
+        assertEquals(Map.of("a", "restored", "b", "b1"), forwarded());
+        context.forwarded().forEach(forward -> assertEquals(2_000, forward.record().timestamp()));
+    }
+}
@@ -0,0 +1,179 @@
+package com.chicago.crimes.processor;
+
+import com.chicago.crimes.ChicagoCrimesStreamsApp.DistrictCrimeCounts;
+import com.chicago.crimes.model.CategoryDistrictKey;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.model.MonthlyAggregateKey;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Windowed;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.MockProcessorContext.CapturedForward;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorSupplier;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Liczniki silnika dense: zapis do magazynu punktów kontrolnych przy każdym rekordzie i odtworzenie
+ * tablic z magazynu po restarcie (magazyn z changelogu podany nowej instancji procesora).
+ */
+class DenseProcessorsTest {
+
+    private static final long DAY_MS = 86_400_000L;
+
+    private static CrimeRecord crime(String id, String date, String district, boolean arrest) {
+        return new CrimeRecord(id, date, "0486", arrest, false, district, null, null, null);
+    }
+
+    private static long time(String date) {
+        return Instant.parse(date).toEpochMilli();
+    }
+
+    // Świeże zadanie: czas strumienia jeszcze nieznany
+    private static <K, V> MockProcessorContext<K, V> context() {
+        MockProcessorContext<K, V> context = new MockProcessorContext<>();
+        context.setCurrentStreamTimeMs(-1);
+        return context;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> KeyValueStore<K, V> store(ProcessorSupplier<?, ?, ?, ?> supplier,
+                                                    MockProcessorContext<?, ?> context) {
+        StoreBuilder builder = supplier.stores().iterator().next();
+        KeyValueStore<K, V> store = (KeyValueStore<K, V>) builder.withCachingDisabled().withLoggingDisabled().build();
+        store.init(context.getStateStoreContext(), store);
+        context.addStateStore((StateStore) store);
+        return store;
+    }
+
+    private static <K, V> void copy(KeyValueStore<K, V> from, KeyValueStore<K, V> to) {
+        for (KeyValue<K, V> entry : CounterCheckpointStore.entries(from)) {
+            to.put(entry.key, entry.value);
+        }
+    }
+
+    private static <K, V> void process(Processor<String, CrimeRecord, K, V> processor, MockProcessorContext<K, V> context,
+                                       CrimeRecord crime) {
+        long timestamp = time(crime.getDate());
+        context.setCurrentStreamTimeMs(Math.max(context.currentStreamTimeMs(), timestamp));
+        processor.process(new Record<>(crime.getDistrict(), crime, timestamp));
+    }
+
+    private static ProcessorSupplier<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> monthly(boolean onClose) {
+        return DenseMonthlyProcessor.supplier(1, onClose, crime -> false, crime -> 2, category -> "THEFT");
+    }
+
+    private static Map<String, Long> totalsByDistrict(MockProcessorContext<MonthlyAggregateKey, CrimeAggregate> context) {
+        return context.forwarded().stream().map(CapturedForward::record).collect(Collectors.toMap(
+                record -> record.key().getYearMonth() + "/" + record.value().getDistrict(),
+                record -> record.value().getTotalCrimes(), Math::max));
+    }
+
+    @Test
+    void monthlyCountersAreCheckpointedOnEveryRecord() {
+        MockProcessorContext<MonthlyAggregateKey, CrimeAggregate> context = context();
+        ProcessorSupplier<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> supplier = monthly(true);
+        KeyValueStore<MonthlyAggregateKey, CrimeAggregate> store = store(supplier, context);
+        Processor<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> processor = supplier.get();
+        processor.init(context);
+
+        process(processor, context, crime("1", "2024-01-02T10:00:00.000Z", "007", true));
+        process(processor, context, crime("2", "2024-01-03T10:00:00.000Z", "007", false));
+        process(processor, context, crime("3", "2024-01-04T10:00:00.000Z", "ABC", false));
+
+        // Bez punktuacji - stan jest w magazynie od razu
+        assertTrue(context.scheduledPunctuators().isEmpty());
+        CrimeAggregate numeric = store.get(new MonthlyAggregateKey(202401, CategoryDistrictKey.of(2, "007")));
+        assertEquals(2, numeric.getTotalCrimes());
+        assertEquals(1, numeric.getArrestCount());
+        assertEquals(1, store.get(new MonthlyAggregateKey(202401, CategoryDistrictKey.of(2, "ABC"))).getTotalCrimes());
+    }
+
+    @Test
+    void monthlyCountersContinueAfterRestore() {
+        MockProcessorContext<MonthlyAggregateKey, CrimeAggregate> before = context();
+        ProcessorSupplier<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> supplier = monthly(false);
+        KeyValueStore<MonthlyAggregateKey, CrimeAggregate> beforeStore = store(supplier, before);
+        Processor<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> first = supplier.get();
+        first.init(before);
+        process(first, before, crime("1", "2024-01-02T10:00:00.000Z", "007", false));
+        process(first, before, crime("2", "2024-01-03T10:00:00.000Z", "007", false));
+        process(first, before, crime("3", "2024-01-04T10:00:00.000Z", "ABC", false));
+
+        MockProcessorContext<MonthlyAggregateKey, CrimeAggregate> after = context();
+        copy(beforeStore, store(supplier, after));
+        Processor<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> second = supplier.get();
+        second.init(after);
+        process(second, after, crime("4", "2024-01-05T10:00:00.000Z", "007", false));
+        process(second, after, crime("5", "2024-01-06T10:00:00.000Z", "ABC", false));
+
+        assertEquals(Map.of("202401/007", 3L, "202401/ABC", 2L), totalsByDistrict(after));
+    }
+
+    // Miesiąc odtworzony z magazynu, który zamknął się w czasie przestoju, jest emitowany przy pierwszym rekordzie
+    @Test
+    void restoredMonthClosesOnFirstLaterRecord() {
+        MockProcessorContext<MonthlyAggregateKey, CrimeAggregate> context = context();
+        ProcessorSupplier<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> supplier = monthly(true);
+        KeyValueStore<MonthlyAggregateKey, CrimeAggregate> store = store(supplier, context);
+        CrimeAggregate restored = new CrimeAggregate();
+        restored.setTotalCrimes(4);
+        store.put(new MonthlyAggregateKey(202401, CategoryDistrictKey.of(2, "007")), restored);
+
+        Processor<String, CrimeRecord, MonthlyAggregateKey, CrimeAggregate> processor = supplier.get();
+        processor.init(context);
+        process(processor, context, crime("1", "2024-03-05T10:00:00.000Z", "007", false));
+
+        List<Record<? extends MonthlyAggregateKey, ? extends CrimeAggregate>> emitted = context.forwarded().stream()
+                .map(CapturedForward::record).collect(Collectors.toList());
+        assertEquals(1, emitted.size());
+        assertEquals("2024-01", emitted.get(0).value().getYearMonth());
+        assertEquals("007", emitted.get(0).value().getDistrict());
+        assertEquals(4, emitted.get(0).value().getTotalCrimes());
+        // Zamknięty miesiąc znika z magazynu, otwarty marzec zostaje
+        assertNull(store.get(new MonthlyAggregateKey(202401, CategoryDistrictKey.of(2, "007"))));
+        assertEquals(1, store.get(new MonthlyAggregateKey(202403, CategoryDistrictKey.of(2, "007"))).getTotalCrimes());
+
+        // Spóźniony rekord dla zamkniętego miesiąca nie wraca do liczników
+        context.resetForwards();
+        process(processor, context, crime("2", "2024-01-20T10:00:00.000Z", "007", false));
+        assertTrue(context.forwarded().isEmpty());
+        assertNull(store.get(new MonthlyAggregateKey(202401, CategoryDistrictKey.of(2, "007"))));
+    }
+
+    @Test
+    void anomalyWindowsContinueAfterRestore() {
+        ProcessorSupplier<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> supplier =
+                DenseAnomalyProcessor.supplier(7, 1, false, crime -> crime.isArrest());
+        MockProcessorContext<Windowed<String>, DistrictCrimeCounts> before = context();
+        KeyValueStore<Windowed<String>, DistrictCrimeCounts> beforeStore = store(supplier, before);
+        Processor<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> first = supplier.get();
+        first.init(before);
+        process(first, before, crime("1", "2024-01-02T10:00:00.000Z", "007", true));
+        process(first, before, crime("2", "2024-01-03T10:00:00.000Z", "007", false));
+
+        MockProcessorContext<Windowed<String>, DistrictCrimeCounts> after = context();
+        copy(beforeStore, store(supplier, after));
+        Processor<String, CrimeRecord, Windowed<String>, DistrictCrimeCounts> second = supplier.get();
+        second.init(after);
+        process(second, after, crime("3", "2024-01-03T12:00:00.000Z", "007", true));
+
+        Record<? extends Windowed<String>, ? extends DistrictCrimeCounts> last = after.forwarded().get(0).record();
+        assertEquals("007", last.key().key());
+        long windowStart = time("2024-01-03T12:00:00.000Z") - Math.floorMod(time("2024-01-03T12:00:00.000Z"), 7 * DAY_MS);
+        assertEquals(windowStart, last.key().window().start());
+        assertEquals(3, last.value().getTotalCrimes());
+        assertEquals(2, last.value().getFbiIndexCrimes());
+    }
+}
@@ -0,0 +1,133 @@
+package com.chicago.crimes.serde;
+
+import com.chicago.crimes.ChicagoCrimesStreamsApp.DistrictCrimeCounts;
+import com.chicago.crimes.model.CategoryDistrictKey;
+import com.chicago.crimes.model.CrimeAggregate;
+import com.chicago.crimes.model.CrimeRecord;
+import com.chicago.crimes.model.MonthlyAggregateKey;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.utils.Bytes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactSerdesTest {
+
+    private static <T> T roundTrip(Serde<T> serde, T value) {
+        return serde.deserializer().deserialize("t", serde.serializer().serialize("t", value));
+    }
+
+    private static <T> byte[] bytes(Serde<T> serde, T value) {
+        return serde.serializer().serialize("t", value);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "7", "007", "025", "1234567"})
+    void numericDistrictKeysKeepFixedWidth(String district) {
+        CategoryDistrictKey key = CategoryDistrictKey.of(3, district);
+        assertNotEquals(CategoryDistrictKey.INVALID_DISTRICT, key.getDistrictId());
+
+        assertEquals(8, bytes(CompactSerdes.categoryDistrictKey(), key).length);
+        CategoryDistrictKey read = roundTrip(CompactSerdes.categoryDistrictKey(), key);
+        assertEquals(key, read);
+        assertEquals(district, read.getDistrict());
+
+        MonthlyAggregateKey monthly = new MonthlyAggregateKey(202401, key);
+        assertEquals(12, bytes(CompactSerdes.monthlyAggregateKey(), monthly).length);
+        MonthlyAggregateKey readMonthly = roundTrip(CompactSerdes.monthlyAggregateKey(), monthly);
+        assertEquals(monthly, readMonthly);
+        assertEquals(district, readMonthly.getDistrict());
+    }
+
+    // Dzielnice, których nie da się zakodować liczbowo, są przenoszone w kluczu jako tekst
+    @ParameterizedTest
+    @ValueSource(strings = {"ABC", "12345678", "0A1", "\u015Ar\u00F3dmie\u015Bcie"})
+    void nonEncodableDistrictKeysCarryTheirName(String district) {
+        CategoryDistrictKey key = CategoryDistrictKey.of(3, district);
+        assertEquals(CategoryDistrictKey.INVALID_DISTRICT, key.getDistrictId());
+
+        CategoryDistrictKey read = roundTrip(CompactSerdes.categoryDistrictKey(), key);
+        assertEquals(key, read);
+        assertEquals(district, read.getDistrict());
+
+        MonthlyAggregateKey monthly = new MonthlyAggregateKey(202401, key);
+        MonthlyAggregateKey readMonthly = roundTrip(CompactSerdes.monthlyAggregateKey(), monthly);
+        assertEquals(monthly, readMonthly);
+        assertEquals(district, readMonthly.getDistrict());
+    }
+
+    @Test
+    void distinctNonEncodableDistrictsStayDistinct() {
+        CategoryDistrictKey abc = CategoryDistrictKey.of(3, "ABC");
+        CategoryDistrictKey abd = CategoryDistrictKey.of(3, "ABD");
+        assertNotEquals(abc, abd);
+        assertFalse(Arrays.equals(bytes(CompactSerdes.categoryDistrictKey(), abc),
+                bytes(CompactSerdes.categoryDistrictKey(), abd)));
+    }
+
+    // Serwer zapytań czyta zakres miesięcy po bajtach klucza: rok-miesiąc decyduje o kolejności,
+    // a dzielnice tekstowe (districtId = -1) leżą na końcu swojego miesiąca i kategorii
+    @Test
+    void monthlyKeysSortByYearMonthThenCategory() {
+        Serde<MonthlyAggregateKey> serde = CompactSerdes.monthlyAggregateKey();
+        Bytes january = Bytes.wrap(bytes(serde, new MonthlyAggregateKey(202401, CategoryDistrictKey.of(9, "025"))));
+        Bytes januaryText = Bytes.wrap(bytes(serde, new MonthlyAggregateKey(202401, CategoryDistrictKey.of(9, "ABC"))));
+        Bytes februaryFirst = Bytes.wrap(bytes(serde, new MonthlyAggregateKey(202402, CategoryDistrictKey.of(0, "001"))));
+        // Górna granica zakresu w CrimesQueryServer
+        Bytes januaryUpperBound = Bytes.wrap(bytes(serde,
+                new MonthlyAggregateKey(202401, Integer.MAX_VALUE, Integer.MAX_VALUE)));
+
+        assertTrue(january.compareTo(januaryText) < 0);
+        assertTrue(januaryText.compareTo(februaryFirst) < 0);
+        assertTrue(januaryText.compareTo(januaryUpperBound) <= 0);
+        assertTrue(januaryUpperBound.compareTo(februaryFirst) < 0);
+    }
+
+    @Test
+    void rejectsTruncatedKeys() {
+        byte[] key = bytes(CompactSerdes.monthlyAggregateKey(), new MonthlyAggregateKey(202401, 1, 7));
+        assertThrows(SerializationException.class, () -> CompactSerdes.monthlyAggregateKey().deserializer()
+                .deserialize("t", Arrays.copyOf(key, key.length - 1)));
+    }
+
+    @Test
+    void crimeRecordRoundTrip() {
+        CrimeRecord crime = new CrimeRecord("11", "2024-01-02T10:00:00.000Z", "0486", true, false,
+                "007", "42", 41.8, null);
+        CrimeRecord read = roundTrip(CompactSerdes.crimeRecord(), crime);
+
+        assertEquals(crime.getId(), read.getId());
+        assertEquals(crime.getDate(), read.getDate());
+        assertEquals(crime.getIucr(), read.getIucr());
+        assertEquals(crime.getDistrict(), read.getDistrict());
+        assertEquals(crime.getComArea(), read.getComArea());
+        assertTrue(read.isArrest());
+        assertFalse(read.isDomestic());
+        assertEquals(41.8, read.getLatitude());
+        assertNull(read.getLongitude());
+        assertEquals(202401, read.getYearMonthPacked());
+    }
+
+    @Test
+    void countersRoundTrip() {
+        CrimeAggregate aggregate = new CrimeAggregate();
+        aggregate.setTotalCrimes(5_000_000_000L);
+        aggregate.setArrestCount(3);
+        aggregate.setDomesticCount(2);
+        aggregate.setFbiIndexCount(1);
+        CrimeAggregate read = roundTrip(CompactSerdes.crimeAggregate(), aggregate);
+        assertEquals(5_000_000_000L, read.getTotalCrimes());
+        assertEquals(3, read.getArrestCount());
+        assertEquals(2, read.getDomesticCount());
+        assertEquals(1, read.getFbiIndexCount());
+
+        DistrictCrimeCounts counts = roundTrip(CompactSerdes.districtCrimeCounts(), new DistrictCrimeCounts(12, 5));
+        assertEquals(12, counts.getTotalCrimes());
+        assertEquals(5, counts.getFbiIndexCrimes());
+    }
+}